@@ -0,0 +1,62 @@
+package ru.vydrenkova.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.utils.constraints.Constraints;
+import ru.vydrenkova.utils.specifications.SockSpecification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the latency and the allocation of an amount query grow with the number of matching rows on
+ * PostgreSQL in Testcontainers. The {@code findAllAndSum} baseline loads the matching entities and sums them in
+ * the JVM, as {@code getSocksAmount} did before, and {@code sumAmount} computes the sum in the database.
+ * The filter matches every row, so that more rows can match than the 101 positions of one color.
+ * Allocation per operation is reported by the {@code gc} profiler as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AmountSumBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int rows;
+
+    private BenchmarkContext context;
+    private SockRepository sockRepository;
+    private Specification<Sock> allRows;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(false);
+        sockRepository = context.getBean(SockRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("DELETE FROM socks");
+        jdbcTemplate.update("INSERT INTO socks (color, cotton_percentage, amount) " +
+                        "SELECT 'color' || (n / ?), n % ?, 1 + n % 100 FROM generate_series(0, ?) n",
+                Constraints.MAX_COTTON_PERCENTAGE + 1, Constraints.MAX_COTTON_PERCENTAGE + 1, rows - 1);
+        jdbcTemplate.execute("ANALYZE socks");
+        allRows = SockSpecification.hasCottonPercentage(Constraints.LESS_THAN_OPERATION_NAME,
+                Constraints.MAX_COTTON_PERCENTAGE + 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long findAllAndSum() {
+        return sockRepository.findAll(allRows).stream().mapToLong(Sock::getAmount).sum();
+    }
+
+    @Benchmark
+    public long sumAmount() {
+        return sockRepository.sumAmount(allRows);
+    }
+}
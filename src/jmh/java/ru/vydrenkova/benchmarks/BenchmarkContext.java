@@ -0,0 +1,83 @@
+package ru.vydrenkova.benchmarks;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.vydrenkova.Application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application against a PostgreSQL container for end-to-end benchmarks. The statements of the service
+ * are PostgreSQL-specific, so an in-memory database would measure different queries. Caches, indexes and
+ * idempotency are disabled and the service logs only warnings, so every call reaches the database.
+ */
+final class BenchmarkContext implements AutoCloseable {
+
+    static final int COLORS = 100;
+    static final int INITIAL_AMOUNT = 1_000_000;
+
+    private final PostgreSQLContainer<?> postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkContext(PostgreSQLContainer<?> postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    /**
+     * Starts the database and the application, and stores {@value #INITIAL_AMOUNT} socks for every color
+     * {@code color0..color99} and cotton percentage.
+     *
+     * @param web        Whether the HTTP server is started on a random port.
+     * @param properties Additional properties in the form {@code name=value}.
+     * @return The started context.
+     */
+    static BenchmarkContext start(boolean web, String... properties) {
+        PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+                .withCommand("postgres", "-c", "max_connections=200");
+        postgres.start();
+
+        List<String> allProperties = new ArrayList<>(List.of(
+                "spring.datasource.url=" + postgres.getJdbcUrl(),
+                "spring.datasource.username=" + postgres.getUsername(),
+                "spring.datasource.password=" + postgres.getPassword(),
+                "spring.datasource.driver-class-name=" + postgres.getDriverClassName(),
+                "spring.jpa.hibernate.ddl-auto=validate",
+                "spring.jpa.open-in-view=false",
+                "spring.jpa.show-sql=false",
+                "spring.main.web-application-type=" + (web ? "servlet" : "none"),
+                "server.port=0",
+                "socks.cache.enabled=false",
+                "socks.index.enabled=false",
+                "socks.idempotency.enabled=false",
+                "logging.level.ru.vydrenkova=warn"));
+        allProperties.addAll(List.of(properties));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .properties(allProperties.toArray(String[]::new))
+                .run();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO socks (color, cotton_percentage, amount) " +
+                "SELECT 'color' || c, p, ? FROM generate_series(0, ?) c, generate_series(0, 100) p",
+                INITIAL_AMOUNT, COLORS - 1);
+        jdbcTemplate.execute("ANALYZE socks");
+        return new BenchmarkContext(postgres, context);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    int port() {
+        return Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        postgres.stop();
+    }
+}
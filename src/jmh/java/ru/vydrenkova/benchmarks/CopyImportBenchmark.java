@@ -0,0 +1,73 @@
+package ru.vydrenkova.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.services.FileService;
+import ru.vydrenkova.services.batch.ImportProgress;
+import ru.vydrenkova.services.impl.CopyFileServiceImpl;
+import ru.vydrenkova.services.impl.FileServiceImpl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time a spooled CSV file takes per row from the file to committed positions on PostgreSQL in
+ * Testcontainers. The {@code batch} loader parses the file in the application and writes the aggregated positions
+ * with multi-row upserts, the {@code copy} loader streams it into a staging table and merges it with one statement.
+ * Half of the positions of the file already exist, the other half are created by the first import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class CopyImportBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    @Param({"batch", "copy"})
+    private String loader;
+
+    @Param({"0", "10"})
+    private int invalidPercent;
+
+    private BenchmarkContext context;
+    private FileService fileService;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start(false, "socks.import.loader=copy", "socks.import.parallelism=4");
+        fileService = loader.equals("copy")
+                ? context.getBean(CopyFileServiceImpl.class)
+                : context.getBean(FileServiceImpl.class);
+
+        Random random = new Random(42);
+        file = Files.createTempFile("socks-copy-", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("color,cottonPercentage,amount\n");
+            for (int i = 0; i < ROWS; i++) {
+                String amount = random.nextInt(100) < invalidPercent ? "x" : Integer.toString(1 + random.nextInt(10));
+                writer.write("color" + random.nextInt(2 * BenchmarkContext.COLORS) + ',' + random.nextInt(101) + ','
+                        + amount + '\n');
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportSummary importPerRow() {
+        return fileService.importSocksFile(file, ImportProgress.NONE);
+    }
+}
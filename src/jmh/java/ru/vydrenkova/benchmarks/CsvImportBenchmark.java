@@ -0,0 +1,123 @@
+package ru.vydrenkova.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.vydrenkova.config.ImportProperties;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.services.batch.ImportMetrics;
+import ru.vydrenkova.services.batch.ImportProgress;
+import ru.vydrenkova.services.batch.ParallelCsvParser;
+import ru.vydrenkova.services.batch.SockAggregator;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.impl.FileServiceImpl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many CSV rows per second {@link FileServiceImpl} imports from a generated file of
+ * {@value #ROWS} lines, from reading the file to the aggregated chunks. The writer only counts the positions,
+ * so the database is not part of the measurement. {@code stream} parses the upload with commons-csv on the calling
+ * thread, {@code mapped} parses memory-mapped ranges of the spooled file on 1, 2, 4 and 8 workers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class CsvImportBenchmark {
+
+    private static final int ROWS = 4_000_000;
+    private static final int COLORS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class StreamState {
+
+        @Param({"0", "10"})
+        private int invalidPercent;
+
+        private FileServiceImpl fileService;
+        private MockMultipartFile file;
+
+        @Setup
+        public void setUp() throws IOException {
+            ImportProperties properties = new ImportProperties();
+            properties.setParallelThresholdBytes(Long.MAX_VALUE);
+            fileService = fileService(properties);
+            Path generated = generate(invalidPercent);
+            try {
+                file = new MockMultipartFile("file", "socks.csv", "text/csv", Files.readAllBytes(generated));
+            } finally {
+                Files.deleteIfExists(generated);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MappedState {
+
+        @Param({"1", "2", "4", "8"})
+        private int workers;
+
+        @Param({"0", "10"})
+        private int invalidPercent;
+
+        private FileServiceImpl fileService;
+        private Path file;
+
+        @Setup
+        public void setUp() throws IOException {
+            ImportProperties properties = new ImportProperties();
+            properties.setParallelism(workers);
+            fileService = fileService(properties);
+            file = generate(invalidPercent);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportSummary stream(StreamState state) {
+        return state.fileService.importSocksBatch(state.file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportSummary mapped(MappedState state) {
+        return state.fileService.importSocksFile(state.file, ImportProgress.NONE);
+    }
+
+    private static FileServiceImpl fileService(ImportProperties properties) {
+        SockBatchWriter countingWriter = new SockBatchWriter(null, null, Optional.empty()) {
+            @Override
+            public ChunkResult write(SockAggregator aggregator) {
+                return new ChunkResult(aggregator.positions(), aggregator.rows() - aggregator.positions());
+            }
+        };
+        return new FileServiceImpl(countingWriter, properties, new ParallelCsvParser(),
+                new ImportMetrics(new SimpleMeterRegistry()), Optional.empty());
+    }
+
+    private static Path generate(int invalidPercent) throws IOException {
+        Random random = new Random(42);
+        Path file = Files.createTempFile("socks-import-", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("color,cottonPercentage,amount\n");
+            for (int i = 0; i < ROWS; i++) {
+                String amount = random.nextInt(100) < invalidPercent ? "x" : Integer.toString(1 + random.nextInt(100));
+                writer.write("color" + random.nextInt(COLORS) + ',' + random.nextInt(101) + ',' + amount + '\n');
+            }
+        }
+        return file;
+    }
+}
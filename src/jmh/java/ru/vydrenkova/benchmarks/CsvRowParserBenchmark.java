@@ -0,0 +1,122 @@
+package ru.vydrenkova.benchmarks;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.*;
+import ru.vydrenkova.exceptions.InvalidCsvRowException;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.services.batch.MappedCsvRangeParser;
+import ru.vydrenkova.services.batch.ParallelCsvParser;
+import ru.vydrenkova.services.batch.SockAggregator;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the rows per second of {@link MappedCsvRangeParser} and of the commons-csv path of the streaming import
+ * ({@code CSVRecord}, {@code Integer.parseInt}, {@link SockRowValidator} and a {@link Sock} per row) on one thread
+ * over the same {@value #ROWS} lines. The mapped parser reads a direct buffer, like a mapping of the spooled file.
+ * Both aggregate the valid rows, so they do the same work apart from parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CsvRowParserBenchmark {
+
+    private static final int ROWS = 1_000_000;
+    private static final int COLORS = 1000;
+    private static final String HEADER = "color,cottonPercentage,amount\n";
+    private static final CSVFormat HEADER_FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .build();
+    private static final int[] ROLES = {
+            MappedCsvRangeParser.COLOR, MappedCsvRangeParser.COTTON_PERCENTAGE, MappedCsvRangeParser.AMOUNT};
+
+    @Param({"0", "10"})
+    private int invalidPercent;
+
+    private byte[] csv;
+    private ByteBuffer data;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(ROWS * 20).append(HEADER);
+        for (int i = 0; i < ROWS; i++) {
+            String amount = random.nextInt(100) < invalidPercent ? "x" : Integer.toString(1 + random.nextInt(100));
+            builder.append("color").append(random.nextInt(COLORS)).append(',')
+                    .append(random.nextInt(101)).append(',')
+                    .append(amount).append('\n');
+        }
+        csv = builder.toString().getBytes(StandardCharsets.UTF_8);
+        data = ByteBuffer.allocateDirect(csv.length - HEADER.length());
+        data.put(csv, HEADER.length(), data.capacity()).flip();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ParallelCsvParser.ParseResult mapped() {
+        return new MappedCsvRangeParser(ROLES).parse(data.duplicate());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public SockAggregator commonsCsv() throws IOException {
+        SockAggregator aggregator = new SockAggregator();
+        try (CSVParser csvParser = new CSVParser(new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(csv), StandardCharsets.UTF_8)), HEADER_FORMAT)) {
+            for (CSVRecord csvRecord : csvParser) {
+                try {
+                    Sock sock = processRecord(csvRecord, csvParser.getCurrentLineNumber());
+                    aggregator.add(sock.getColor(), sock.getCottonPercentage(), sock.getAmount());
+                } catch (InvalidCsvRowException e) {
+                    // counted as rejected by the import
+                }
+            }
+        }
+        return aggregator;
+    }
+
+    /**
+     * The checks of {@code FileServiceImpl.processRecord}.
+     */
+    private static Sock processRecord(CSVRecord csvRecord, long line) {
+        if (!csvRecord.isConsistent()) {
+            throw new InvalidCsvRowException(line, SockRowValidator.WRONG_COLUMNS);
+        }
+        String color = csvRecord.get(Constraints.COLOR_CSV_HEADER_NAME);
+        int cottonPercentage = parseNumber(csvRecord.get(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME), line,
+                SockRowValidator.INVALID_COTTON_PERCENTAGE);
+        int amount = parseNumber(csvRecord.get(Constraints.AMOUNT_CSV_HEADER_NAME), line,
+                SockRowValidator.INVALID_AMOUNT);
+        String reason = SockRowValidator.validate(color, cottonPercentage, amount);
+        if (reason != null) {
+            throw new InvalidCsvRowException(line, reason);
+        }
+        return Sock.builder()
+                .color(color)
+                .cottonPercentage(cottonPercentage)
+                .amount(amount)
+                .build();
+    }
+
+    private static int parseNumber(String value, long line, String reason) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidCsvRowException(line, reason);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.vydrenkova.benchmarks;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import org.openjdk.jmh.annotations.*;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.utils.logging.SamplingTurboFilter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the log call that follows a page of socks on a request thread: the whole page or only its
+ * size, written by a synchronous appender or handed to the asynchronous one, with or without sampling. The appenders
+ * write to a temporary file and flush every event, like the console appender does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class LoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss} %-5level %logger{36} - %msg%n";
+
+    @Param({"sync", "async"})
+    private String appender;
+
+    @Param({"payload", "size"})
+    private String message;
+
+    @Param({"1", "100"})
+    private int keepOneIn;
+
+    private LoggerContext context;
+    private Logger logger;
+    private Path file;
+    private SocksList socksList;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("socks-logging-", ".log");
+        context = new LoggerContext();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.toString());
+        fileAppender.setAppend(false);
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        Appender<ILoggingEvent> rootAppender = fileAppender;
+        if (appender.equals("async")) {
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.addAppender(fileAppender);
+            asyncAppender.start();
+            rootAppender = asyncAppender;
+        }
+        SamplingTurboFilter filter = new SamplingTurboFilter();
+        filter.setContext(context);
+        filter.setLoggerName("ru.vydrenkova.controllers");
+        filter.setKeepOneIn(keepOneIn);
+        filter.start();
+        context.addTurboFilter(filter);
+
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(rootAppender);
+        logger = context.getLogger("ru.vydrenkova.controllers.SockController");
+
+        List<SockResponse> socks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            socks.add(new SockResponse((long) i + 1, "color" + i % 100, i % 101, 1 + i));
+        }
+        socksList = SocksList.builder().sockList(socks).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.stop();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void logPage() {
+        if (message.equals("payload")) {
+            logger.info("Socks sorted by filter retrieved successfully: {}", socksList);
+        } else {
+            logger.info("Socks sorted by filter retrieved successfully: {} socks, nextCursor={}",
+                    socksList.getSockList().size(), socksList.getNextCursor());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.vydrenkova.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@code POST /api/socks/movements} over HTTP for batches of different sizes.
+ * The primary score counts requests; the {@code movements} counter reports the movements applied per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MovementEndpointBenchmark {
+
+    private static final int BODIES = 64;
+
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    @Param({"income", "outcome"})
+    private String direction;
+
+    private BenchmarkContext context;
+    private HttpClient httpClient;
+    private URI uri;
+    private String[] bodies;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(true);
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        uri = URI.create("http://localhost:" + context.port() + "/api/socks/movements?direction=" + direction
+                + "&mode=best-effort");
+
+        Random random = new Random(42);
+        bodies = new String[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            StringBuilder body = new StringBuilder(batchSize * 60).append('[');
+            for (int j = 0; j < batchSize; j++) {
+                body.append(j == 0 ? "" : ",")
+                        .append("{\"color\":\"color").append(random.nextInt(BenchmarkContext.COLORS))
+                        .append("\",\"cottonPercentage\":").append(random.nextInt(101))
+                        .append(",\"amount\":1}");
+            }
+            bodies[i] = body.append(']').toString();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        httpClient.close();
+        context.close();
+    }
+
+    /**
+     * The number of applied movements per thread, reported by JMH as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long movements;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            movements = 0;
+        }
+    }
+
+    @Benchmark
+    public int applyMovements(Counters counters) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(bodies[counters.next++ % BODIES]))
+                .build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        counters.movements += batchSize;
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,87 @@
+package ru.vydrenkova.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksColumns;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.utils.sorts.SockCursor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mapping of stored socks to responses and the encoding and decoding of a page with the object mappers
+ * configured like the ones of the application: JSON, and CBOR in the columnar form of {@link SocksColumns}.
+ * The payload sizes of both encodings are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private List<Sock> socks;
+    private SocksList socksList;
+    private byte[] json;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        socks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            socks.add(Sock.builder()
+                    .id((long) i + 1)
+                    .color("color" + i % 100)
+                    .cottonPercentage(i % 101)
+                    .amount(1 + i)
+                    .version(0L)
+                    .build());
+        }
+        socksList = SocksList.builder()
+                .sockList(toResponses())
+                .nextCursor(SockCursor.of(socks.get(size - 1)).encode())
+                .build();
+        json = serializeSocksList();
+        cbor = serializeSocksColumnsCbor();
+        System.out.printf("Payload of %d socks: JSON %d bytes, CBOR columns %d bytes%n", size, json.length, cbor.length);
+    }
+
+    @Benchmark
+    public List<SockResponse> toResponses() {
+        return socks.stream().map(SockResponse::toResponse).toList();
+    }
+
+    @Benchmark
+    public byte[] serializeSocksList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(socksList);
+    }
+
+    @Benchmark
+    public byte[] serializeSocksColumnsCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(SocksColumns.of(socksList));
+    }
+
+    @Benchmark
+    public SocksList deserializeSocksList() throws IOException {
+        return objectMapper.readValue(json, SocksList.class);
+    }
+
+    @Benchmark
+    public SocksList deserializeSocksColumnsCbor() throws IOException {
+        return cborMapper.readValue(cbor, SocksColumns.class).toSocksList();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.vydrenkova.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.services.SockService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of service calls end to end, including the transaction and the database round trips,
+ * on random positions of {@link BenchmarkContext#COLORS} colors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SockServiceBenchmark {
+
+    private BenchmarkContext context;
+    private SockService sockService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(false);
+        sockService = context.getBean(SockService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AmountResponse getSocksAmount() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return sockService.getSocksAmount(randomColor(random), "moreThan", random.nextInt(101));
+    }
+
+    @Benchmark
+    public SockResponse addSocks() {
+        return sockService.addSocks(randomRequest());
+    }
+
+    @Benchmark
+    public SockResponse removeSocks() {
+        return sockService.removeSocks(randomRequest());
+    }
+
+    @Benchmark
+    public SocksList getSocksByFilterSorted() {
+        int from = ThreadLocalRandom.current().nextInt(91);
+        return sockService.getSocksByFilterSorted(from, from + 10, "color", 100, null);
+    }
+
+    private static SockRequest randomRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new SockRequest(randomColor(random), random.nextInt(101), 1);
+    }
+
+    private static String randomColor(ThreadLocalRandom random) {
+        return "color" + random.nextInt(BenchmarkContext.COLORS);
+    }
+}
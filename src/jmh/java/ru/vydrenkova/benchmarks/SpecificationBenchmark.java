@@ -0,0 +1,72 @@
+package ru.vydrenkova.benchmarks;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.domain.Specification;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.utils.sorts.SockCursor;
+import ru.vydrenkova.utils.specifications.SockSpecification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the criteria queries of the amount and the keyset page queries from
+ * {@link SockSpecification}. Hibernate is started without a database, so no SQL is executed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SpecificationBenchmark {
+
+    private SessionFactory sessionFactory;
+    private CriteriaBuilder criteriaBuilder;
+    private SockCursor cursor;
+
+    @Setup
+    public void setUp() {
+        sessionFactory = new MetadataSources(new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting("hibernate.boot.allow_jdbc_metadata_access", false)
+                .build())
+                .addAnnotatedClass(Sock.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        criteriaBuilder = sessionFactory.getCriteriaBuilder();
+        cursor = new SockCursor(5000L, 70, "color50");
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Predicate amountPredicate() {
+        Specification<Sock> spec = Specification
+                .where(SockSpecification.hasColor("color50"))
+                .and(SockSpecification.hasCottonPercentage("moreThan", 70));
+        return toPredicate(spec, criteriaBuilder.createQuery(Long.class));
+    }
+
+    @Benchmark
+    public Predicate keysetPredicate() {
+        Specification<Sock> spec = SockSpecification.cottonPercentageBetween(20, 80)
+                .and(SockSpecification.after("color", cursor));
+        return toPredicate(spec, criteriaBuilder.createQuery(Sock.class));
+    }
+
+    private Predicate toPredicate(Specification<Sock> spec, CriteriaQuery<?> query) {
+        Root<Sock> root = query.from(Sock.class);
+        return spec.toPredicate(root, query, criteriaBuilder);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.vydrenkova.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.exceptions.ConcurrentUpdateException;
+import ru.vydrenkova.services.SockService;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link SockService#updateSocks} when several threads update the same few positions,
+ * so that the optimistic version check fails and updates are retried. Updates that gave up after all attempts
+ * are reported by the {@code conflicts} counter. The number of threads can be changed with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+public class UpdateContentionBenchmark {
+
+    @Param({"1", "8", "64"})
+    private int hotPositions;
+
+    private BenchmarkContext context;
+    private SockService sockService;
+    private Long[] ids;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(false);
+        sockService = context.getBean(SockService.class);
+        List<Long> hotIds = context.getBean(JdbcTemplate.class)
+                .queryForList("SELECT id FROM socks ORDER BY id LIMIT ?", Long.class, hotPositions);
+        ids = hotIds.toArray(Long[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * The number of updates per thread that were refused because of concurrent writes, reported by JMH as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+        }
+    }
+
+    @Benchmark
+    public Object updateSocks(Counters counters) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            return sockService.updateSocks(ids[random.nextInt(ids.length)],
+                    new SockRequest(null, null, 1 + random.nextInt(BenchmarkContext.INITIAL_AMOUNT)));
+        } catch (ConcurrentUpdateException e) {
+            counters.conflicts++;
+            return e;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package ru.vydrenkova;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+// The R2DBC connection factory is created by ReactiveConfig only in the reactive profile,
+// otherwise it would replace the JDBC data source of the servlet stack
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class Application {
 
     public static void main(String[] args) {
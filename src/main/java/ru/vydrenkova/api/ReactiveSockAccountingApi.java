@@ -0,0 +1,180 @@
+package ru.vydrenkova.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+
+/**
+ * The ReactiveSockAccountingApi interface defines the non-blocking REST API endpoints of the reactive profile.
+ * The endpoints have the same paths, parameters and responses as their counterparts in {@link SockAccountingApi},
+ * so that both implementations can be benchmarked with the same client.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Schema(description = "Non-blocking service for managing socks inventory in a store")
+@RequestMapping("/api/socks")
+public interface ReactiveSockAccountingApi {
+
+    /**
+     * Registers the arrival of socks in the inventory.
+     *
+     * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @return A ResponseEntity containing the details of the added socks.
+     */
+    @Operation(summary = "Register the arrival of socks")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Socks arrival registered successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SockResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @PostMapping("/income")
+    Mono<ResponseEntity<SockResponse>> addSocks(@RequestBody SockRequest sockRequest);
+
+
+    /**
+     * Registers the release of socks from the inventory.
+     *
+     * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @return A ResponseEntity containing the details of the removed socks.
+     */
+    @Operation(summary = "Register the release of socks")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Socks release registered successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SockResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Socks not found", content = @Content)
+    })
+    @PostMapping("/outcome")
+    Mono<ResponseEntity<SockResponse>> removeSocks(@RequestBody SockRequest sockRequest);
+
+
+    /**
+     * Retrieves the total quantity of socks based on filtering criteria.
+     *
+     * @param color     The color of the socks.
+     * @param operation The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cotton    The cotton percentage to filter socks.
+     * @return A ResponseEntity containing the total quantity of socks that match the criteria.
+     */
+    @Operation(summary = "Get the total quantity of socks with filtering")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Total quantity of socks retrieved successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = AmountResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @GetMapping
+    Mono<ResponseEntity<AmountResponse>> getSocks(@Parameter(description = "The color of the socks") @RequestParam String color,
+                                                  @Parameter(description = "The operation to filter socks (moreThan, lessThan, or equal)")
+                                                  @RequestParam @Pattern(
+                                                          regexp = "moreThan|lessThan|equal",
+                                                          message = "Invalid operation value")
+                                                  String operation,
+                                                  @Parameter(description = "The cotton percentage of the socks") @RequestParam Integer cotton);
+
+    /**
+     * Updates the details of socks in the inventory.
+     *
+     * @param id          The ID of the socks to be updated.
+     * @param sockRequest The request containing the updated details of the socks.
+     * @return A ResponseEntity containing the updated details of the socks.
+     */
+    @Operation(summary = "Update the details of socks")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Socks details updated successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SockResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Socks not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Socks are being changed by concurrent requests", content = @Content)
+    })
+    @PutMapping("/{id}")
+    Mono<ResponseEntity<SockResponse>> updateSock(@Parameter(description = "The ID of the socks") @PathVariable("id") Long id,
+                                                  @RequestBody SockRequest sockRequest);
+
+    /**
+     * Imports a batch of socks from a CSV file while it is being uploaded and returns a compact summary.
+     * Invalid rows are skipped, and the first of them are listed in the summary with their line number and reason.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return A ResponseEntity containing the import summary.
+     */
+    @Operation(summary = "Import a batch of socks from a CSV file in chunks")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "File imported successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ImportSummary.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @PostMapping(value = "/batch/stream", consumes = "multipart/form-data")
+    Mono<ResponseEntity<ImportSummary>> importFile(@RequestPart("file") @Parameter(description = "The CSV file for importing socks",
+            content = @Content(mediaType = "text/csv")) FilePart file);
+
+    /**
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @param size      The maximum number of socks on the page.
+     * @param cursor    The cursor returned with the previous page.
+     * @return A ResponseEntity containing the page of filtered and sorted socks and the cursor of the next page.
+     */
+    @Operation(summary = "Get a page of socks filtered by cotton percentage range and sorted by a specified field")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "List of socks retrieved and sorted successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SocksList.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @GetMapping("/filter-by-cotton")
+    Mono<ResponseEntity<SocksList>> getSocksSorted(@Parameter(description = "The minimum cotton percentage") @RequestParam Integer from,
+                                                   @Parameter(description = "The maximum cotton percentage") @RequestParam Integer to,
+                                                   @Parameter(description = "The field to sort the socks by (color or cotton)") @RequestParam(required = false)
+                                                   @Pattern(
+                                                           regexp = "color|cotton",
+                                                           message = "Invalid sorting field value") String sortedBy,
+                                                   @Parameter(description = "The maximum number of socks on the page") @RequestParam(required = false)
+                                                   @Min(1) @Max(Constraints.MAX_PAGE_SIZE) Integer size,
+                                                   @Parameter(description = "The cursor returned with the previous page") @RequestParam(required = false)
+                                                   String cursor);
+
+    /**
+     * Streams all socks filtered by cotton percentage range and sorted by a specified field as newline-delimited JSON.
+     * Rows are read from the database only as fast as the client receives them.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @return The socks, written as one JSON object per line.
+     */
+    @Operation(summary = "Stream socks filtered by cotton percentage range and sorted by a specified field as NDJSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Socks streamed successfully",
+                    content = {@Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = SockResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @GetMapping(value = "/filter-by-cotton/stream", produces = "application/x-ndjson")
+    Flux<SockResponse> streamSocksSorted(@Parameter(description = "The minimum cotton percentage") @RequestParam Integer from,
+                                         @Parameter(description = "The maximum cotton percentage") @RequestParam Integer to,
+                                         @Parameter(description = "The field to sort the socks by (color or cotton)") @RequestParam(required = false)
+                                         @Pattern(
+                                                 regexp = "color|cotton",
+                                                 message = "Invalid sorting field value") String sortedBy);
+}
@@ -9,12 +9,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.vydrenkova.dto.requests.SockRequest;
 import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.ImportJobResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.MovementBatchResult;
 import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksColumns;
 import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.utils.constraints.Constraints;
 
-import javax.validation.constraints.Pattern;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import java.util.List;
 
 /**
  * The SockAccountingApi interface defines the REST API endpoints for managing socks inventory in a store.
@@ -32,23 +42,30 @@ public interface SockAccountingApi {
     /**
      * Registers the arrival of socks in the inventory.
      *
-     * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @param sockRequest    The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @param idempotencyKey The key that makes retries of the request replay the first response.
      * @return A ResponseEntity containing the details of the added socks.
      */
     @Operation(summary = "Register the arrival of socks")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Socks arrival registered successfully",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SockResponse.class))}),
-            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is in progress", content = @Content),
+            @ApiResponse(responseCode = "422", description = "The idempotency key was used for a different request", content = @Content)
     })
     @PostMapping("/income")
-    ResponseEntity<SockResponse> addSocks(@RequestBody SockRequest sockRequest);
+    ResponseEntity<SockResponse> addSocks(@RequestBody SockRequest sockRequest,
+                                          @Parameter(description = "The key that makes retries replay the first response")
+                                          @RequestHeader(value = Constraints.IDEMPOTENCY_KEY_HEADER_NAME, required = false)
+                                          @Size(max = Constraints.MAX_IDEMPOTENCY_KEY_LENGTH) String idempotencyKey);
 
 
     /**
      * Registers the release of socks from the inventory.
      *
-     * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @param sockRequest    The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @param idempotencyKey The key that makes retries of the request replay the first response.
      * @return A ResponseEntity containing the details of the removed socks.
      */
     @Operation(summary = "Register the release of socks")
@@ -56,10 +73,51 @@ public interface SockAccountingApi {
             @ApiResponse(responseCode = "200", description = "Socks release registered successfully",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SockResponse.class))}),
             @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content),
-            @ApiResponse(responseCode = "404", description = "Socks not found", content = @Content)
+            @ApiResponse(responseCode = "404", description = "Socks not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is in progress", content = @Content),
+            @ApiResponse(responseCode = "422", description = "The idempotency key was used for a different request", content = @Content)
     })
     @PostMapping("/outcome")
-    ResponseEntity<SockResponse> removeSocks(@RequestBody SockRequest sockRequest);
+    ResponseEntity<SockResponse> removeSocks(@RequestBody SockRequest sockRequest,
+                                             @Parameter(description = "The key that makes retries replay the first response")
+                                             @RequestHeader(value = Constraints.IDEMPOTENCY_KEY_HEADER_NAME, required = false)
+                                             @Size(max = Constraints.MAX_IDEMPOTENCY_KEY_LENGTH) String idempotencyKey);
+
+
+    /**
+     * Registers a batch of arrivals or releases of socks in one request.
+     *
+     * @param direction The direction of the movements (income or outcome).
+     * @param mode      The mode of the batch (all-or-nothing or best-effort).
+     * @param movements The movements, each containing the color, cotton percentage, and amount of the socks.
+     * @param idempotencyKey The key that makes retries of the request replay the first response.
+     * @return A ResponseEntity containing the result of every movement.
+     */
+    @Operation(summary = "Register a batch of arrivals or releases of socks")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch applied, rejected movements are listed in the results",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = MovementBatchResult.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is in progress", content = @Content),
+            @ApiResponse(responseCode = "422", description = "All-or-nothing batch not applied because of rejected movements, " +
+                    "or the idempotency key was used for a different request",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = MovementBatchResult.class))})
+    })
+    @PostMapping("/movements")
+    ResponseEntity<MovementBatchResult> applyMovements(@Parameter(description = "The direction of the movements (income or outcome)")
+                                                       @RequestParam @Pattern(
+                                                               regexp = "income|outcome",
+                                                               message = "Invalid direction value") String direction,
+                                                       @Parameter(description = "The mode of the batch (all-or-nothing or best-effort)")
+                                                       @RequestParam(required = false, defaultValue = Constraints.ALL_OR_NOTHING_MODE_NAME)
+                                                       @Pattern(
+                                                               regexp = "all-or-nothing|best-effort",
+                                                               message = "Invalid mode value") String mode,
+                                                       @RequestBody @Size(min = 1, max = Constraints.MAX_MOVEMENTS_PER_BATCH)
+                                                       List<SockRequest> movements,
+                                                       @Parameter(description = "The key that makes retries replay the first response")
+                                                       @RequestHeader(value = Constraints.IDEMPOTENCY_KEY_HEADER_NAME, required = false)
+                                                       @Size(max = Constraints.MAX_IDEMPOTENCY_KEY_LENGTH) String idempotencyKey);
 
 
     /**
@@ -105,7 +163,7 @@ public interface SockAccountingApi {
 
 
     /**
-     * Uploads a batch of socks from a CSV file.
+     * Uploads a batch of socks from a CSV file. Nothing is saved if any row of the file is invalid.
      *
      * @param file The CSV file containing the details of the socks to be uploaded.
      * @return A ResponseEntity containing the list of uploaded socks.
@@ -114,24 +172,92 @@ public interface SockAccountingApi {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "File uploaded successfully",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SocksList.class))}),
-            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+            @ApiResponse(responseCode = "400", description = "Invalid request or an invalid row in the file", content = @Content)
     })
     @PostMapping(value = "/batch", consumes = "multipart/form-data")
     ResponseEntity<SocksList> uploadFile(@RequestParam("file") @Parameter(description = "The CSV file for uploading socks",
             content = @Content(mediaType = "text/csv")) MultipartFile file);
 
     /**
-     * Retrieves a list of socks filtered by cotton percentage range and sorted by a specified field.
+     * Imports a batch of socks from a CSV file in chunks and returns a compact summary instead of the imported socks.
+     * Invalid rows are skipped, and the first of them are listed in the summary with their line number and reason.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return A ResponseEntity containing the import summary.
+     */
+    @Operation(summary = "Import a batch of socks from a CSV file in chunks")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "File imported successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ImportSummary.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @PostMapping(value = "/batch/stream", consumes = "multipart/form-data")
+    ResponseEntity<ImportSummary> importFile(@RequestParam("file") @Parameter(description = "The CSV file for importing socks",
+            content = @Content(mediaType = "text/csv")) MultipartFile file);
+
+    /**
+     * Accepts a CSV file for asynchronous import and returns immediately.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return A ResponseEntity containing the queued import job.
+     */
+    @Operation(summary = "Submit a CSV file for asynchronous import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Import job accepted",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ImportJobResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content),
+            @ApiResponse(responseCode = "429", description = "Too many import jobs", content = @Content)
+    })
+    @PostMapping(value = "/batch/jobs", consumes = "multipart/form-data")
+    ResponseEntity<ImportJobResponse> submitImportJob(@RequestParam("file") @Parameter(description = "The CSV file for importing socks",
+            content = @Content(mediaType = "text/csv")) MultipartFile file);
+
+    /**
+     * Retrieves the progress or the result of an import job.
+     *
+     * @param id The ID of the import job.
+     * @return A ResponseEntity containing the state of the import job.
+     */
+    @Operation(summary = "Get the progress of an import job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import job state retrieved successfully",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ImportJobResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Import job not found", content = @Content)
+    })
+    @GetMapping("/batch/jobs/{id}")
+    ResponseEntity<ImportJobResponse> getImportJob(@Parameter(description = "The ID of the import job") @PathVariable("id") String id);
+
+    /**
+     * Cancels an import job.
+     *
+     * @param id The ID of the import job.
+     * @return A ResponseEntity containing the state of the import job.
+     */
+    @Operation(summary = "Cancel an import job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cancellation requested",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ImportJobResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Import job not found", content = @Content)
+    })
+    @DeleteMapping("/batch/jobs/{id}")
+    ResponseEntity<ImportJobResponse> cancelImportJob(@Parameter(description = "The ID of the import job") @PathVariable("id") String id);
+
+    /**
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
+     * Callers that accept {@code application/cbor} receive the page in the columnar form of {@link SocksColumns}.
      *
      * @param from      The minimum cotton percentage.
      * @param to        The maximum cotton percentage.
      * @param sortedBy  The field to sort the socks by (color or cotton).
-     * @return A ResponseEntity containing the list of filtered and sorted socks.
+     * @param size      The maximum number of socks on the page.
+     * @param cursor    The cursor returned with the previous page.
+     * @return A ResponseEntity containing the page of filtered and sorted socks and the cursor of the next page.
      */
-    @Operation(summary = "Get a list of socks filtered by cotton percentage range and sorted by a specified field")
+    @Operation(summary = "Get a page of socks filtered by cotton percentage range and sorted by a specified field")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "List of socks retrieved and sorted successfully",
-                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = AmountResponse.class))}),
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SocksList.class)),
+                            @Content(mediaType = "application/cbor", schema = @Schema(implementation = SocksColumns.class))}),
             @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
     })
     @GetMapping("/filter-by-cotton")
@@ -140,5 +266,54 @@ public interface SockAccountingApi {
                                              @Parameter(description = "The field to sort the socks by (color or cotton)") @RequestParam(required = false)
                                              @Pattern(
                                                      regexp = "color|cotton",
-                                                     message = "Invalid sorting field value") String sortedBy);
+                                                     message = "Invalid sorting field value") String sortedBy,
+                                             @Parameter(description = "The maximum number of socks on the page") @RequestParam(required = false)
+                                             @Min(1) @Max(Constraints.MAX_PAGE_SIZE) Integer size,
+                                             @Parameter(description = "The cursor returned with the previous page") @RequestParam(required = false)
+                                             String cursor);
+
+    /**
+     * Streams all socks filtered by cotton percentage range and sorted by a specified field as newline-delimited JSON.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @return A ResponseEntity writing one JSON object per sock and line.
+     */
+    @Operation(summary = "Stream socks filtered by cotton percentage range and sorted by a specified field as NDJSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Socks streamed successfully",
+                    content = {@Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = SockResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @GetMapping(value = "/filter-by-cotton/stream", produces = "application/x-ndjson")
+    ResponseEntity<StreamingResponseBody> streamSocksSorted(@Parameter(description = "The minimum cotton percentage") @RequestParam Integer from,
+                                                            @Parameter(description = "The maximum cotton percentage") @RequestParam Integer to,
+                                                            @Parameter(description = "The field to sort the socks by (color or cotton)") @RequestParam(required = false)
+                                                            @Pattern(
+                                                                    regexp = "color|cotton",
+                                                                    message = "Invalid sorting field value") String sortedBy);
+
+    /**
+     * Exports all socks in the three-column format of CSV imports, optionally compressed with gzip.
+     *
+     * @param format The format of the export (csv or ndjson).
+     * @param gzip   Whether the export is compressed with gzip.
+     * @return A ResponseEntity writing the export while it is read from the database.
+     */
+    @Operation(summary = "Export all socks as CSV or NDJSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Socks exported successfully", content = {
+                    @Content(mediaType = "text/csv"),
+                    @Content(mediaType = "application/x-ndjson"),
+                    @Content(mediaType = "application/gzip")}),
+            @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content)
+    })
+    @GetMapping(value = "/export", produces = {"text/csv", "application/x-ndjson", "application/gzip"})
+    ResponseEntity<StreamingResponseBody> exportSocks(@Parameter(description = "The format of the export (csv or ndjson)") @RequestParam(defaultValue = Constraints.CSV_EXPORT_FORMAT)
+                                                      @Pattern(
+                                                              regexp = Constraints.CSV_EXPORT_FORMAT + "|" + Constraints.NDJSON_EXPORT_FORMAT,
+                                                              message = "Invalid export format value") String format,
+                                                      @Parameter(description = "Whether the export is compressed with gzip") @RequestParam(defaultValue = "false")
+                                                      boolean gzip);
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package ru.vydrenkova.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the in-process cache of socks amount queries.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socks.cache")
+public class AmountCacheProperties {
+    /**
+     * Whether results of amount queries are cached.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximal number of cached (color, operation, cotton percentage) combinations.
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * Time in seconds after which an entry is reloaded even if no write on this node invalidated it.
+     * It bounds the staleness caused by writes on other nodes.
+     */
+    private long expireAfterWriteSeconds = 300;
+
+    /**
+     * Number of version counters that colors are hashed to. A write to a color also invalidates
+     * the colors sharing its counter.
+     */
+    private int stripes = 1024;
+}
@@ -0,0 +1,33 @@
+package ru.vydrenkova.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.vydrenkova.utils.encoding.SocksCborHttpMessageConverter;
+
+import java.util.List;
+
+/**
+ * Adds CBOR to the encodings negotiated with the Accept header. The converter takes the place of the default
+ * CBOR converter, which comes after the JSON one, so callers that accept any type still get JSON.
+ */
+@Configuration
+@Profile("!reactive")
+public class BinaryEncodingConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        SocksCborHttpMessageConverter cborConverter =
+                new SocksCborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor().build());
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2CborHttpMessageConverter) {
+                converters.set(i, cborConverter);
+                return;
+            }
+        }
+        converters.add(cborConverter);
+    }
+}
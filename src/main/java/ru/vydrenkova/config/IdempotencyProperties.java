@@ -0,0 +1,33 @@
+package ru.vydrenkova.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the Idempotency-Key support of the movement endpoints.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socks.idempotency")
+public class IdempotencyProperties {
+    /**
+     * Whether the Idempotency-Key header is honoured. If disabled, the header is ignored.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Time in minutes during which a retry with the same key replays the stored response.
+     */
+    private long ttlMinutes = 1440;
+
+    /**
+     * Maximal number of recent responses kept in memory in addition to the database.
+     */
+    private long maximumSize = 100000;
+
+    /**
+     * Minimal interval in minutes between deletions of expired keys from the database.
+     */
+    private long cleanupIntervalMinutes = 10;
+}
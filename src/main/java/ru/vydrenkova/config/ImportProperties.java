@@ -0,0 +1,64 @@
+package ru.vydrenkova.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the streaming CSV import.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socks.import")
+public class ImportProperties {
+    /**
+     * Number of distinct positions aggregated in memory before they are persisted in one transaction.
+     */
+    private int chunkSize = 10000;
+
+    /**
+     * Number of threads used to parse spooled files.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Minimal size of a file in bytes to be spooled to disk and parsed from a memory-mapped copy.
+     * Smaller files are streamed through commons-csv on the request thread.
+     */
+    private long parallelThresholdBytes = 64L * 1024 * 1024;
+
+    /**
+     * Maximal number of rejected rows reported with their line number and reason. All rejected rows are counted.
+     */
+    private int maxReportedErrors = 100;
+
+    /**
+     * Loader of imported files: {@code batch} parses them in the application and writes aggregated positions with
+     * multi-row upserts, {@code copy} streams them into PostgreSQL with {@code COPY FROM STDIN} and merges them
+     * with one set-based statement.
+     */
+    private String loader = "batch";
+
+    /**
+     * Settings of asynchronous import jobs.
+     */
+    private Jobs jobs = new Jobs();
+
+    @Data
+    public static class Jobs {
+        /**
+         * Number of import jobs running at the same time on this node.
+         */
+        private int maxConcurrent = 2;
+
+        /**
+         * Number of accepted jobs waiting for a free slot. Further uploads are rejected.
+         */
+        private int queueCapacity = 10;
+
+        /**
+         * Time in minutes for which finished jobs can be polled.
+         */
+        private long retentionMinutes = 60;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.vydrenkova.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the in-memory cotton histogram index.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socks.index")
+public class IndexProperties {
+    /**
+     * Whether amount queries are answered by the in-memory index.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Interval in seconds between rebuilds of the index from the database. Rebuilds bound the drift caused by
+     * writes on other nodes and by writes outside of the service. Zero disables them, which is only correct
+     * for a single node that is the only writer of the database.
+     */
+    private long refreshIntervalSeconds = 60;
+}
@@ -0,0 +1,43 @@
+package ru.vydrenkova.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vydrenkova.repositories.LedgerCheckpointRepository;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.index.CottonHistogramIndex;
+import ru.vydrenkova.services.ledger.LedgerJournal;
+import ru.vydrenkova.services.ledger.SockLedger;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+@Configuration
+@ConditionalOnProperty(prefix = "socks.ledger", name = "enabled", havingValue = "true")
+@Profile("!reactive")
+public class LedgerConfig {
+
+    @Bean(destroyMethod = "stop")
+    public SockLedger sockLedger(LedgerProperties properties,
+                                 SockRepository sockRepository,
+                                 LedgerCheckpointRepository checkpointRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 AmountCache amountCache,
+                                 Optional<CottonHistogramIndex> cottonIndex) {
+        SockLedger ledger = new SockLedger(
+                sockRepository,
+                checkpointRepository,
+                new TransactionTemplate(transactionManager),
+                new LedgerJournal(Path.of(properties.getJournalPath()), properties.isFsync()),
+                amountCache,
+                cottonIndex,
+                properties.getStripes(),
+                properties.getFlushThreshold());
+        ledger.start(properties.getFlushIntervalMs());
+        return ledger;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.vydrenkova.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the write-behind ledger used for income and outcome movements.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socks.ledger")
+public class LedgerProperties {
+    /**
+     * Whether income and outcome movements are accepted by the in-memory ledger.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Path of the append-only journal replayed at startup.
+     */
+    private String journalPath = "socks-ledger.journal";
+
+    /**
+     * Whether every journal append is forced to the storage device before acknowledging.
+     */
+    private boolean fsync = true;
+
+    /**
+     * Interval between periodic flushes in milliseconds.
+     */
+    private long flushIntervalMs = 1000;
+
+    /**
+     * Number of accepted movements that triggers an early flush.
+     */
+    private int flushThreshold = 1000;
+
+    /**
+     * Number of lock stripes guarding stock positions.
+     */
+    private int stripes = 64;
+}
@@ -0,0 +1,33 @@
+package ru.vydrenkova.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the R2DBC connection pool of the reactive profile.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socks.reactive")
+public class ReactiveProperties {
+    /**
+     * R2DBC URL of the database, for example {@code r2dbc:postgresql://localhost:5432/socks}.
+     */
+    private String url;
+
+    /**
+     * Login username of the database, if it is not part of the URL.
+     */
+    private String username;
+
+    /**
+     * Login password of the database, if it is not part of the URL.
+     */
+    private String password;
+
+    /**
+     * Maximal number of open connections.
+     */
+    private int poolSize = 20;
+}
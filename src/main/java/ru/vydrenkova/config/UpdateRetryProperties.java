@@ -0,0 +1,28 @@
+package ru.vydrenkova.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the retries of socks updates that lost a race with a concurrent write.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socks.update.retry")
+public class UpdateRetryProperties {
+    /**
+     * Maximal number of attempts of an update, including the first one.
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Pause in milliseconds before the second attempt. Every next pause is twice as long.
+     */
+    private long initialBackoffMs = 5;
+
+    /**
+     * Maximal pause in milliseconds between attempts.
+     */
+    private long maxBackoffMs = 100;
+}
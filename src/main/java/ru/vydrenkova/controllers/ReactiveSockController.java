@@ -0,0 +1,139 @@
+package ru.vydrenkova.controllers;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vydrenkova.api.ReactiveSockAccountingApi;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.services.ReactiveFileService;
+import ru.vydrenkova.services.ReactiveSockService;
+
+/**
+ * The ReactiveSockController class is a REST controller that implements the ReactiveSockAccountingApi interface.
+ * It replaces {@link SockController} in the reactive profile and returns publishers, so the event loop is never
+ * blocked while a request waits for the database.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@Validated
+@Profile("reactive")
+public class ReactiveSockController implements ReactiveSockAccountingApi {
+
+    private final ReactiveSockService sockService;
+    private final ReactiveFileService fileService;
+
+    /**
+     * Registers the arrival of socks in the inventory.
+     *
+     * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @return A ResponseEntity containing the details of the added socks.
+     */
+    @Override
+    public Mono<ResponseEntity<SockResponse>> addSocks(SockRequest sockRequest) {
+        log.info("Received request to add socks: {}", sockRequest);
+        return sockService.addSocks(sockRequest)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Registers the release of socks from the inventory.
+     *
+     * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @return A ResponseEntity containing the details of the removed socks.
+     */
+    @Override
+    public Mono<ResponseEntity<SockResponse>> removeSocks(SockRequest sockRequest) {
+        log.info("Received request to remove socks: {}", sockRequest);
+        return sockService.removeSocks(sockRequest)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the total quantity of socks based on filtering criteria.
+     *
+     * @param color     The color of the socks.
+     * @param operation The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cotton    The cotton percentage to filter socks.
+     * @return A ResponseEntity containing the total quantity of socks that match the criteria.
+     */
+    @Override
+    public Mono<ResponseEntity<AmountResponse>> getSocks(String color, String operation, Integer cotton) {
+        log.debug("Received request to get socks amount for color={}, operation={}, cotton={}", color, operation, cotton);
+        return sockService.getSocksAmount(color, operation, cotton)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Updates the details of socks in the inventory.
+     *
+     * @param id          The ID of the socks to be updated.
+     * @param sockRequest The request containing the updated details of the socks.
+     * @return A ResponseEntity containing the updated details of the socks.
+     */
+    @Override
+    public Mono<ResponseEntity<SockResponse>> updateSock(Long id, SockRequest sockRequest) {
+        log.info("Received request to update sock with id={}, request={}", id, sockRequest);
+        return sockService.updateSocks(id, sockRequest)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Imports a batch of socks from a CSV file while it is being uploaded.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return A ResponseEntity containing the import summary.
+     */
+    @Override
+    public Mono<ResponseEntity<ImportSummary>> importFile(FilePart file) {
+        log.info("Received request to import file: {}", file.filename());
+        return fileService.importSocksBatch(file)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @param size      The maximum number of socks on the page.
+     * @param cursor    The cursor returned with the previous page.
+     * @return A ResponseEntity containing the page of filtered and sorted socks and the cursor of the next page.
+     */
+    @Override
+    public Mono<ResponseEntity<SocksList>> getSocksSorted(Integer from, Integer to, String sortedBy, Integer size, String cursor) {
+        log.info("Received request to get socks sorted by filter: from={}, to={}, sortedBy={}, size={}, cursor={}",
+                from, to, sortedBy, size, cursor);
+        return sockService.getSocksByFilterSorted(from, to, sortedBy, size, cursor)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Streams all socks filtered by cotton percentage range and sorted by a specified field as newline-delimited JSON.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @return The socks, written as one JSON object per line.
+     */
+    @Override
+    public Flux<SockResponse> streamSocksSorted(Integer from, Integer to, String sortedBy) {
+        log.info("Received request to stream socks sorted by filter: from={}, to={}, sortedBy={}", from, to, sortedBy);
+        return sockService.streamSocksByFilterSorted(from, to, sortedBy);
+    }
+}
@@ -1,18 +1,37 @@
 package ru.vydrenkova.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.vydrenkova.api.SockAccountingApi;
 import ru.vydrenkova.dto.requests.SockRequest;
 import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.ImportJobResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.MovementBatchResult;
 import ru.vydrenkova.dto.responses.SockResponse;
 import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.services.ExportService;
 import ru.vydrenkova.services.FileService;
+import ru.vydrenkova.services.ImportJobService;
 import ru.vydrenkova.services.SockService;
+import ru.vydrenkova.services.idempotency.IdempotencyStore;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * The SockController class is a REST controller that implements the SockAccountingApi interface.
@@ -27,40 +46,70 @@ import ru.vydrenkova.services.SockService;
 @RequiredArgsConstructor
 @RestController
 @Validated
+@Profile("!reactive")
 public class SockController implements SockAccountingApi {
 
     private final SockService sockService;
     private final FileService fileService;
+    private final ImportJobService importJobService;
+    private final ExportService exportService;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore idempotencyStore;
 
 
     /**
-     * Registers the arrival of socks in the inventory.
+     * Registers the arrival of socks in the inventory. A retry with the same idempotency key replays the first response.
      *
-     * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @param sockRequest    The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @param idempotencyKey The key that makes retries of the request replay the first response.
      * @return A ResponseEntity containing the details of the added socks.
      */
     @Override
-    public ResponseEntity<SockResponse> addSocks(SockRequest sockRequest) {
-        log.info("Received request to add socks: {}", sockRequest);
-        SockResponse response = sockService.addSocks(sockRequest);
+    public ResponseEntity<SockResponse> addSocks(SockRequest sockRequest, String idempotencyKey) {
+        log.info("Received request to add socks: {}, idempotencyKey={}", sockRequest, idempotencyKey);
+        SockResponse response = idempotencyStore.execute(idempotencyKey, Constraints.INCOME_DIRECTION_NAME, sockRequest,
+                SockResponse.class, () -> sockService.addSocks(sockRequest));
         log.info("Socks added successfully: {}", response);
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Registers the release of socks from the inventory.
+     * Registers the release of socks from the inventory. A retry with the same idempotency key replays the first response.
      *
-     * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @param sockRequest    The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @param idempotencyKey The key that makes retries of the request replay the first response.
      * @return A ResponseEntity containing the details of the removed socks.
      */
     @Override
-    public ResponseEntity<SockResponse> removeSocks(SockRequest sockRequest) {
-        log.info("Received request to remove socks: {}", sockRequest);
-        SockResponse response = sockService.removeSocks(sockRequest);
+    public ResponseEntity<SockResponse> removeSocks(SockRequest sockRequest, String idempotencyKey) {
+        log.info("Received request to remove socks: {}, idempotencyKey={}", sockRequest, idempotencyKey);
+        SockResponse response = idempotencyStore.execute(idempotencyKey, Constraints.OUTCOME_DIRECTION_NAME, sockRequest,
+                SockResponse.class, () -> sockService.removeSocks(sockRequest));
         log.info("Socks removed successfully: {}", response);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Registers a batch of arrivals or releases of socks.
+     *
+     * @param direction The direction of the movements (income or outcome).
+     * @param mode      The mode of the batch (all-or-nothing or best-effort).
+     * @param movements The movements, each containing the color, cotton percentage, and amount of the socks.
+     * @param idempotencyKey The key that makes retries of the request replay the first response.
+     * @return A ResponseEntity containing the result of every movement, with status 422 if the batch was not applied.
+     */
+    @Override
+    public ResponseEntity<MovementBatchResult> applyMovements(String direction, String mode, List<SockRequest> movements,
+                                                              String idempotencyKey) {
+        log.info("Received request to apply {} {} movements in {} mode, idempotencyKey={}",
+                movements.size(), direction, mode, idempotencyKey);
+        MovementBatchResult response = idempotencyStore.execute(idempotencyKey, "movements/" + direction + "/" + mode,
+                movements, MovementBatchResult.class, () -> sockService.applyMovements(direction, mode, movements));
+        log.info("Movement batch processed: applied={}, rejected={}", response.getApplied(), response.getRejected());
+        HttpStatus status = response.getRolledBack() ? HttpStatus.UNPROCESSABLE_ENTITY : HttpStatus.OK;
+        return ResponseEntity.status(status).body(response);
+    }
+
     /**
      * Retrieves the total quantity of socks based on filtering criteria.
      *
@@ -71,9 +120,9 @@ public class SockController implements SockAccountingApi {
      */
     @Override
     public ResponseEntity<AmountResponse> getSocks(String color, String operation, Integer cotton) {
-        log.info("Received request to get socks amount for color={}, operation={}, cotton={}", color, operation, cotton);
+        log.debug("Received request to get socks amount for color={}, operation={}, cotton={}", color, operation, cotton);
         AmountResponse response = sockService.getSocksAmount(color, operation, cotton);
-        log.info("Socks amount retrieved successfully: {}", response);
+        log.debug("Socks amount retrieved successfully: {}", response);
         return ResponseEntity.ok(response);
     }
 
@@ -102,23 +151,142 @@ public class SockController implements SockAccountingApi {
     public ResponseEntity<SocksList> uploadFile(MultipartFile file) {
         log.info("Received request to upload file: {}", file.getOriginalFilename());
         SocksList response = fileService.processSocksBatch(file);
-        log.info("File processed successfully: {}", response);
+        log.info("File processed successfully: {} socks", response.getSockList().size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Imports a batch of socks from a CSV file in chunks.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return A ResponseEntity containing the import summary.
+     */
+    @Override
+    public ResponseEntity<ImportSummary> importFile(MultipartFile file) {
+        log.info("Received request to import file: {}", file.getOriginalFilename());
+        ImportSummary response = fileService.importSocksBatch(file);
+        log.info("File imported successfully: rowsRead={}, rejected={}, durationMs={}",
+                response.getRowsRead(), response.getRejected(), response.getDurationMs());
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Retrieves a list of socks filtered by cotton percentage range and sorted by a specified field.
+     * Accepts a CSV file for asynchronous import.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return A ResponseEntity containing the queued import job.
+     */
+    @Override
+    public ResponseEntity<ImportJobResponse> submitImportJob(MultipartFile file) {
+        log.info("Received request to submit import job for file: {}", file.getOriginalFilename());
+        ImportJobResponse response = importJobService.submit(file);
+        log.info("Import job submitted successfully: {}", response.getId());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * Retrieves the progress or the result of an import job.
+     *
+     * @param id The ID of the import job.
+     * @return A ResponseEntity containing the state of the import job.
+     */
+    @Override
+    public ResponseEntity<ImportJobResponse> getImportJob(String id) {
+        log.debug("Received request to get import job: {}", id);
+        return ResponseEntity.ok(importJobService.getJob(id));
+    }
+
+    /**
+     * Cancels an import job.
+     *
+     * @param id The ID of the import job.
+     * @return A ResponseEntity containing the state of the import job.
+     */
+    @Override
+    public ResponseEntity<ImportJobResponse> cancelImportJob(String id) {
+        log.info("Received request to cancel import job: {}", id);
+        return ResponseEntity.ok(importJobService.cancel(id));
+    }
+
+    /**
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
      *
      * @param from      The minimum cotton percentage.
      * @param to        The maximum cotton percentage.
      * @param sortedBy  The field to sort the socks by (color or cotton).
-     * @return A ResponseEntity containing the list of filtered and sorted socks.
+     * @param size      The maximum number of socks on the page.
+     * @param cursor    The cursor returned with the previous page.
+     * @return A ResponseEntity containing the page of filtered and sorted socks and the cursor of the next page.
      */
     @Override
-    public ResponseEntity<SocksList> getSocksSorted(Integer from, Integer to, String sortedBy) {
-        log.info("Received request to get socks sorted by filter: from={}, to={}, sortedBy={}", from, to, sortedBy);
-        SocksList response = sockService.getSocksByFilterSorted(from, to, sortedBy);
-        log.info("Socks sorted by filter retrieved successfully: {}", response);
+    public ResponseEntity<SocksList> getSocksSorted(Integer from, Integer to, String sortedBy, Integer size, String cursor) {
+        log.info("Received request to get socks sorted by filter: from={}, to={}, sortedBy={}, size={}, cursor={}",
+                from, to, sortedBy, size, cursor);
+        SocksList response = sockService.getSocksByFilterSorted(from, to, sortedBy, size, cursor);
+        log.info("Socks sorted by filter retrieved successfully: {} socks, nextCursor={}",
+                response.getSockList().size(), response.getNextCursor());
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams all socks filtered by cotton percentage range and sorted by a specified field as newline-delimited JSON.
+     * The socks are written while they are read from the database, so the response is never held in memory.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @return A ResponseEntity writing one JSON object per sock and line.
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> streamSocksSorted(Integer from, Integer to, String sortedBy) {
+        log.info("Received request to stream socks sorted by filter: from={}, to={}, sortedBy={}", from, to, sortedBy);
+        ObjectWriter writer = objectMapper.writerFor(SockResponse.class);
+        StreamingResponseBody body = outputStream -> {
+            try {
+                sockService.streamSocksByFilterSorted(from, to, sortedBy, sock -> {
+                    try {
+                        outputStream.write(writer.writeValueAsBytes(sock));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Exports all socks in the three-column format of CSV imports, optionally compressed with gzip.
+     * The export is written while it is read from the database, so the response is never held in memory.
+     *
+     * @param format The format of the export (csv or ndjson).
+     * @param gzip   Whether the export is compressed with gzip.
+     * @return A ResponseEntity writing the export as an attachment.
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportSocks(String format, boolean gzip) {
+        log.info("Received request to export socks: format={}, gzip={}", format, gzip);
+        StreamingResponseBody body = outputStream -> {
+            if (!gzip) {
+                exportService.exportSocks(format, outputStream);
+                return;
+            }
+            GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, 1 << 16);
+            exportService.exportSocks(format, gzipStream);
+            gzipStream.finish();
+        };
+        String fileName = "socks." + format + (gzip ? ".gz" : "");
+        MediaType contentType = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : Constraints.NDJSON_EXPORT_FORMAT.equals(format) ? MediaType.APPLICATION_NDJSON : MediaType.parseMediaType("text/csv");
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+}
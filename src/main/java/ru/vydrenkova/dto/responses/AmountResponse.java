@@ -13,5 +13,5 @@ import lombok.NoArgsConstructor;
 @Schema(description = "Информация о количестве носков на складе")
 public class AmountResponse {
     @Schema(description = "Количество носков на складе")
-    private Integer amount;
+    private Long amount;
 }
@@ -0,0 +1,47 @@
+package ru.vydrenkova.dto.responses;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Состояние задачи загрузки партии носков")
+public class ImportJobResponse {
+    @Schema(description = "ID задачи")
+    private String id;
+
+    @Schema(description = "Статус задачи", allowableValues = {"QUEUED", "RUNNING", "COMPLETED", "FAILED", "CANCELLED"})
+    private String status;
+
+    @Schema(description = "Имя загруженного файла")
+    private String fileName;
+
+    @Schema(description = "Размер файла в байтах")
+    private Long totalBytes;
+
+    @Schema(description = "Количество обработанных байтов")
+    private Long bytesProcessed;
+
+    @Schema(description = "Количество обработанных строк")
+    private Long rowsProcessed;
+
+    @Schema(description = "Количество отклоненных строк")
+    private Long rejected;
+
+    @Schema(description = "Скорость обработки в строках в секунду")
+    private Long rowsPerSecond;
+
+    @Schema(description = "Оценка оставшегося времени в секундах")
+    private Long etaSeconds;
+
+    @Schema(description = "Итоги загрузки, если задача завершена")
+    private ImportSummary result;
+
+    @Schema(description = "Описание ошибки, если задача завершилась неудачно")
+    private String error;
+}
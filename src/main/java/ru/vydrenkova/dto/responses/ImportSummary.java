@@ -0,0 +1,40 @@
+package ru.vydrenkova.dto.responses;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Итоги загрузки партии носков")
+public class ImportSummary {
+    @Schema(description = "Количество прочитанных строк")
+    private Long rowsRead;
+
+    @Schema(description = "Количество записанных в базу позиций (уникальных сочетаний цвета и процента хлопка)")
+    private Long positionsWritten;
+
+    @Schema(description = "Количество строк, создавших новые позиции")
+    private Long inserted;
+
+    @Schema(description = "Количество строк, объединенных с существующими позициями")
+    private Long merged;
+
+    @Schema(description = "Количество отклоненных строк")
+    private Long rejected;
+
+    @Schema(description = "Длительность загрузки в миллисекундах")
+    private Long durationMs;
+
+    @Schema(description = "Первые отклоненные строки с номерами и причинами")
+    private List<RowError> errors;
+
+    @Schema(description = "Признак того, что в списке ошибок перечислены не все отклоненные строки")
+    private Boolean errorsTruncated;
+}
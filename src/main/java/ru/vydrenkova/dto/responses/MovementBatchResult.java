@@ -0,0 +1,34 @@
+package ru.vydrenkova.dto.responses;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Итоги проведения пакета движений носков")
+public class MovementBatchResult {
+    @Schema(description = "Количество проведенных движений")
+    private Integer applied;
+
+    @Schema(description = "Количество отклоненных движений")
+    private Integer rejected;
+
+    @Schema(description = "Признак того, что пакет не проведен целиком из-за отклоненных движений")
+    private Boolean rolledBack;
+
+    @Schema(description = "Результаты движений в порядке их следования в пакете")
+    private List<MovementResult> results;
+
+    public static MovementBatchResult of(List<MovementResult> results, boolean rolledBack) {
+        int applied = (int) results.stream().filter(result -> MovementResult.APPLIED.equals(result.getStatus())).count();
+        int rejected = (int) results.stream().filter(result -> MovementResult.REJECTED.equals(result.getStatus())).count();
+        return new MovementBatchResult(applied, rejected, rolledBack, results);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.vydrenkova.dto.responses;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Результат одного движения из пакета")
+public class MovementResult {
+    public static final String APPLIED = "APPLIED";
+    public static final String REJECTED = "REJECTED";
+    public static final String SKIPPED = "SKIPPED";
+
+    @Schema(description = "Номер движения в пакете, начиная с 0")
+    private Integer index;
+
+    @Schema(description = "Статус движения: APPLIED - проведено, REJECTED - отклонено, " +
+            "SKIPPED - не проведено из-за отклонения другого движения пакета")
+    private String status;
+
+    @Schema(description = "Носки после проведения пакета, если движение проведено")
+    private SockResponse sock;
+
+    @Schema(description = "Причина отклонения движения")
+    private String error;
+
+    public static MovementResult applied(int index, SockResponse sock) {
+        return new MovementResult(index, APPLIED, sock, null);
+    }
+
+    public static MovementResult rejected(int index, String error) {
+        return new MovementResult(index, REJECTED, null, error);
+    }
+
+    public static MovementResult skipped(int index) {
+        return new MovementResult(index, SKIPPED, null, null);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.vydrenkova.dto.responses;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Отклоненная строка файла")
+public class RowError {
+    @Schema(description = "Номер строки в файле, строка заголовков имеет номер 1")
+    private Long line;
+
+    @Schema(description = "Причина отклонения строки")
+    private String reason;
+}
@@ -13,7 +13,7 @@ import ru.vydrenkova.models.Sock;
 @Builder
 @Schema(description = "Полученная информация о носках")
 public class SockResponse {
-    @Schema(description = "ID носков")
+    @Schema(description = "ID носков; в режиме журнала отсутствует у новой позиции, пока её движения не записаны в базу")
     private Long id;
 
     @Schema(description = "Цвет")
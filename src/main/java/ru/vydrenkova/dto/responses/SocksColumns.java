@@ -0,0 +1,88 @@
+package ru.vydrenkova.dto.responses;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columnar form of a {@link SocksList} used by binary encodings: every color is stored once in a dictionary,
+ * and the socks are stored as parallel arrays of primitive values. Fields are only ever added to this schema,
+ * so older callers can keep decoding newer responses.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonPropertyOrder({"colors", "colorIndexes", "cottonPercentages", "amounts", "ids", "nextCursor", "totalAmount"})
+@Schema(description = "Список носков по столбцам")
+public class SocksColumns {
+    @Schema(description = "Словарь цветов в порядке первого появления")
+    private List<String> colors;
+
+    @Schema(description = "Номер цвета каждых носков в словаре")
+    private int[] colorIndexes;
+
+    @Schema(description = "Процентное содержание хлопка каждых носков")
+    private int[] cottonPercentages;
+
+    @Schema(description = "Количество каждых носков")
+    private int[] amounts;
+
+    @Schema(description = "ID каждых носков")
+    private long[] ids;
+
+    @Schema(description = "Курсор следующей страницы, отсутствует на последней странице")
+    private String nextCursor;
+
+    @Schema(description = "Общее количество носков в диапазоне, если включён индекс по содержанию хлопка")
+    private Long totalAmount;
+
+    public static SocksColumns of(SocksList socksList) {
+        List<SockResponse> socks = socksList.getSockList();
+        List<String> colors = new ArrayList<>();
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] colorIndexes = new int[socks.size()];
+        int[] cottonPercentages = new int[socks.size()];
+        int[] amounts = new int[socks.size()];
+        long[] ids = new long[socks.size()];
+        for (int i = 0; i < socks.size(); i++) {
+            SockResponse sock = socks.get(i);
+            colorIndexes[i] = dictionary.computeIfAbsent(sock.getColor(), color -> {
+                colors.add(color);
+                return colors.size() - 1;
+            });
+            cottonPercentages[i] = sock.getCottonPercentage();
+            amounts[i] = sock.getAmount();
+            ids[i] = sock.getId();
+        }
+        return SocksColumns.builder()
+                .colors(colors)
+                .colorIndexes(colorIndexes)
+                .cottonPercentages(cottonPercentages)
+                .amounts(amounts)
+                .ids(ids)
+                .nextCursor(socksList.getNextCursor())
+                .totalAmount(socksList.getTotalAmount())
+                .build();
+    }
+
+    public SocksList toSocksList() {
+        List<SockResponse> socks = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            socks.add(new SockResponse(ids[i], colors.get(colorIndexes[i]), cottonPercentages[i], amounts[i]));
+        }
+        return SocksList.builder()
+                .sockList(socks)
+                .nextCursor(nextCursor)
+                .totalAmount(totalAmount)
+                .build();
+    }
+}
@@ -16,4 +16,10 @@ import java.util.List;
 public class SocksList {
     @Schema(description = "Список загруженных носков")
     private List<SockResponse> sockList;
+
+    @Schema(description = "Курсор следующей страницы, отсутствует на последней странице")
+    private String nextCursor;
+
+    @Schema(description = "Общее количество носков в диапазоне, если включён индекс по содержанию хлопка")
+    private Long totalAmount;
 }
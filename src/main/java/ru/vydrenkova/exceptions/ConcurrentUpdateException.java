@@ -0,0 +1,7 @@
+package ru.vydrenkova.exceptions;
+
+public class ConcurrentUpdateException extends RuntimeException {
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.vydrenkova.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class InvalidCsvRowException extends RuntimeException{
+    private final long line;
+    private final String reason;
+
+    public InvalidCsvRowException(long line, String reason) {
+        super("Ошибка в строке " + line + ": " + reason);
+        this.line = line;
+        this.reason = reason;
+    }
+}
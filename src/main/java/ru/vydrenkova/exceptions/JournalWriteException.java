@@ -0,0 +1,7 @@
+package ru.vydrenkova.exceptions;
+
+public class JournalWriteException extends RuntimeException{
+    public JournalWriteException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.vydrenkova.exceptions;
+
+public class NoSuchImportJobException extends RuntimeException{
+    public NoSuchImportJobException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.vydrenkova.exceptions;
+
+public class TooManyImportJobsException extends RuntimeException{
+    public TooManyImportJobsException(String message) {
+        super(message);
+    }
+}
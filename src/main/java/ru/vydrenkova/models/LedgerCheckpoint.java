@@ -0,0 +1,22 @@
+package ru.vydrenkova.models;
+
+import lombok.*;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "ledger_checkpoints")
+public class LedgerCheckpoint {
+    public static final long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    private Long lastSequence;
+}
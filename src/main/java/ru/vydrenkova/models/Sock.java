@@ -2,7 +2,7 @@ package ru.vydrenkova.models;
 
 import lombok.*;
 
-import javax.persistence.*;
+import jakarta.persistence.*;
 
 @Data
 @AllArgsConstructor
@@ -20,4 +20,7 @@ public class Sock {
     private String color;
     private Integer cottonPercentage;
     private Integer amount;
+
+    @Version
+    private Long version;
 }
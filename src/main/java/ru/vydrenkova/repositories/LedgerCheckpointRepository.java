@@ -0,0 +1,7 @@
+package ru.vydrenkova.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.vydrenkova.models.LedgerCheckpoint;
+
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, Long> {
+}
@@ -0,0 +1,116 @@
+package ru.vydrenkova.repositories;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.utils.sorts.SockCursor;
+
+import java.util.Map;
+
+/**
+ * The ReactiveSockRepository interface is the non-blocking equivalent of {@link SockRepository} for the reactive
+ * profile. Every change of the amount is a single atomic statement, and writes that depend on a previously read
+ * state are checked against its version.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+public interface ReactiveSockRepository {
+
+    /**
+     * @param id The ID of the socks.
+     * @return The socks, or an empty Mono if there are none.
+     */
+    Mono<Sock> findById(Long id);
+
+    /**
+     * @param color            The color of the socks.
+     * @param cottonPercentage The cotton percentage of the socks.
+     * @return The socks, or an empty Mono if there are none.
+     */
+    Mono<Sock> findByColorAndCottonPercentage(String color, Integer cottonPercentage);
+
+    /**
+     * Adds socks to a position, creating the position if it does not exist yet.
+     *
+     * @return The stored state of the position.
+     */
+    Mono<Sock> increaseAmount(String color, Integer cottonPercentage, Integer amount);
+
+    /**
+     * Subtracts socks from a position if it holds at least the given amount.
+     *
+     * @return The stored state of the position, or an empty Mono if the position does not exist or holds fewer socks.
+     */
+    Mono<Sock> decreaseAmount(String color, Integer cottonPercentage, Integer amount);
+
+    /**
+     * Deletes the socks if they have no amount left.
+     *
+     * @param id The ID of the socks.
+     * @return The number of deleted rows.
+     */
+    Mono<Long> deleteIfEmpty(Long id);
+
+    /**
+     * Deletes the socks if they have not been changed since they were read.
+     *
+     * @param sock The socks as they were read.
+     * @return An empty Mono, or an OptimisticLockingFailureException if the socks were changed or deleted.
+     */
+    Mono<Void> delete(Sock sock);
+
+    /**
+     * Writes new values of the socks if they have not been changed since they were read.
+     *
+     * @param sock The socks as they were read, with the new color, cotton percentage and amount.
+     * @return The stored state of the socks, or an OptimisticLockingFailureException if the socks were changed or deleted.
+     */
+    Mono<Sock> update(Sock sock);
+
+    /**
+     * Calculates the total amount of socks of a color with a single SUM query.
+     *
+     * @param color            The color of the socks.
+     * @param operation        The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cottonPercentage The cotton percentage to filter socks.
+     * @return The sum of amounts of matching socks, or 0 if nothing matches.
+     */
+    Mono<Long> sumAmount(String color, String operation, Integer cottonPercentage);
+
+    /**
+     * Retrieves the socks in a cotton percentage range that follow the cursor in keyset order.
+     *
+     * @param from     The minimum cotton percentage.
+     * @param to       The maximum cotton percentage.
+     * @param sortedBy The field to sort the socks by (color or cotton), or null to sort by id.
+     * @param cursor   The position of the last sock of the previous page, or null for the first page.
+     * @param limit    The maximum number of socks.
+     * @return The socks in the given order.
+     */
+    Flux<Sock> findSlice(Integer from, Integer to, String sortedBy, SockCursor cursor, int limit);
+
+    /**
+     * Streams the socks in a cotton percentage range, fetching the given number of rows at a time.
+     * Rows are only fetched as fast as the subscriber requests them.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton), or null to sort by id.
+     * @param fetchSize The number of rows fetched from the database at once.
+     * @return The socks in the given order.
+     */
+    Flux<Sock> streamAll(Integer from, Integer to, String sortedBy, int fetchSize);
+
+    /**
+     * Adds amounts to the stored positions with multi-row statements in {@link SockKey#ORDER},
+     * creating the positions that do not exist yet.
+     *
+     * @param amounts The amount to be added per position.
+     * @return The stored state of every written position.
+     */
+    Flux<SockBatchWriter.UpsertedRow> upsert(Map<SockKey, Integer> amounts);
+}
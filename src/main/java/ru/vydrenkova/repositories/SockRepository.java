@@ -2,14 +2,38 @@ package ru.vydrenkova.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.vydrenkova.models.Sock;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface SockRepository extends JpaRepository<Sock, Long>, JpaSpecificationExecutor<Sock> {
+public interface SockRepository extends JpaRepository<Sock, Long>, JpaSpecificationExecutor<Sock>,
+        SockRepositoryCustom {
     Optional<Sock> findByColorAndCottonPercentage(String color, Integer colorPercentage);
 
     List<Sock> findAllByCottonPercentageBetween(Integer from, Integer to);
 
+    /**
+     * @return The ID of the inserted or updated socks.
+     */
+    @Transactional
+    @Query(value = "INSERT INTO socks (color, cotton_percentage, amount) " +
+            "VALUES (:color, :cottonPercentage, :amount) " +
+            "ON CONFLICT (color, cotton_percentage) DO UPDATE SET amount = socks.amount + EXCLUDED.amount, " +
+            "version = socks.version + 1 " +
+            "RETURNING id",
+            nativeQuery = true)
+    Long increaseAmount(@Param("color") String color,
+                       @Param("cottonPercentage") Integer cottonPercentage,
+                       @Param("amount") Integer amount);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Sock s WHERE s.amount <= 0")
+    int deleteEmpty();
+
 }
@@ -0,0 +1,51 @@
+package ru.vydrenkova.repositories;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.vydrenkova.models.Sock;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The SockRepositoryCustom interface declares repository operations that cannot be expressed
+ * with derived queries and are implemented manually with the JPA Criteria API.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+public interface SockRepositoryCustom {
+
+    /**
+     * Calculates the total amount of socks matching the specification on the database side.
+     * No entities are loaded into the persistence context.
+     *
+     * @param spec The specification used to filter socks, may be null.
+     * @return The sum of amounts of matching socks, or 0 if nothing matches.
+     */
+    long sumAmount(Specification<Sock> spec);
+
+    /**
+     * Retrieves the first socks matching the specification without counting all matching rows,
+     * as a page request would do.
+     *
+     * @param spec  The specification used to filter socks, may be null.
+     * @param sort  The order of the socks.
+     * @param limit The maximum number of socks.
+     * @return The first socks in the given order.
+     */
+    List<Sock> findSlice(Specification<Sock> spec, Sort sort, int limit);
+
+    /**
+     * Streams the socks matching the specification from a database cursor. Every sock is detached from the
+     * persistence context after it is read, so memory does not grow with the number of rows.
+     * The stream must be consumed inside a transaction and closed afterwards.
+     *
+     * @param spec      The specification used to filter socks, may be null.
+     * @param sort      The order of the socks.
+     * @param fetchSize The number of rows fetched from the database at once.
+     * @return The matching socks in the given order.
+     */
+    Stream<Sock> streamAll(Specification<Sock> spec, Sort sort, int fetchSize);
+}
@@ -0,0 +1,233 @@
+package ru.vydrenkova.repositories.impl;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.ReactiveSockRepository;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.utils.constraints.Constraints;
+import ru.vydrenkova.utils.sorts.SockCursor;
+import ru.vydrenkova.utils.sorts.SockSort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The ReactiveSockRepositoryImpl class is the implementation of the ReactiveSockRepository interface.
+ * It runs the same statements as the servlet stack through a {@link DatabaseClient}, so no thread waits for the database.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Repository
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveSockRepositoryImpl implements ReactiveSockRepository {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String COLUMNS = "id, color, cotton_percentage, amount, version";
+    private static final String FIND_BY_ID = "SELECT " + COLUMNS + " FROM socks WHERE id = $1";
+    private static final String FIND_BY_KEY = "SELECT " + COLUMNS + " FROM socks WHERE color = $1 AND cotton_percentage = $2";
+    private static final String INCREASE = "INSERT INTO socks (color, cotton_percentage, amount) VALUES ($1, $2, $3) " +
+            "ON CONFLICT (color, cotton_percentage) DO UPDATE SET amount = socks.amount + EXCLUDED.amount, " +
+            "version = socks.version + 1 RETURNING " + COLUMNS;
+    private static final String DECREASE = "UPDATE socks SET amount = amount - $3, version = version + 1 " +
+            "WHERE color = $1 AND cotton_percentage = $2 AND amount >= $3 RETURNING " + COLUMNS;
+    private static final String DELETE_IF_EMPTY = "DELETE FROM socks WHERE id = $1 AND amount = 0";
+    private static final String DELETE = "DELETE FROM socks WHERE id = $1 AND version = $2";
+    private static final String UPDATE = "UPDATE socks SET color = $1, cotton_percentage = $2, amount = $3, " +
+            "version = version + 1 WHERE id = $4 AND version = $5 RETURNING " + COLUMNS;
+    private static final String SUM_AMOUNT = "SELECT COALESCE(SUM(amount), 0) FROM socks " +
+            "WHERE color = $1 AND cotton_percentage %s $2";
+    private static final String UPSERT_PREFIX = "INSERT INTO socks (color, cotton_percentage, amount) VALUES ";
+    private static final String UPSERT_SUFFIX = " ON CONFLICT (color, cotton_percentage) " +
+            "DO UPDATE SET amount = socks.amount + EXCLUDED.amount, version = socks.version + 1 " +
+            "RETURNING " + COLUMNS + ", (xmax = 0) AS inserted";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Sock> findById(Long id) {
+        return databaseClient.sql(FIND_BY_ID)
+                .bind(0, id)
+                .map(ReactiveSockRepositoryImpl::toSock)
+                .one();
+    }
+
+    @Override
+    public Mono<Sock> findByColorAndCottonPercentage(String color, Integer cottonPercentage) {
+        return databaseClient.sql(FIND_BY_KEY)
+                .bind(0, color)
+                .bind(1, cottonPercentage)
+                .map(ReactiveSockRepositoryImpl::toSock)
+                .one();
+    }
+
+    @Override
+    public Mono<Sock> increaseAmount(String color, Integer cottonPercentage, Integer amount) {
+        return databaseClient.sql(INCREASE)
+                .bind(0, color)
+                .bind(1, cottonPercentage)
+                .bind(2, amount)
+                .map(ReactiveSockRepositoryImpl::toSock)
+                .one();
+    }
+
+    @Override
+    public Mono<Sock> decreaseAmount(String color, Integer cottonPercentage, Integer amount) {
+        return databaseClient.sql(DECREASE)
+                .bind(0, color)
+                .bind(1, cottonPercentage)
+                .bind(2, amount)
+                .map(ReactiveSockRepositoryImpl::toSock)
+                .one();
+    }
+
+    @Override
+    public Mono<Long> deleteIfEmpty(Long id) {
+        return databaseClient.sql(DELETE_IF_EMPTY)
+                .bind(0, id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Void> delete(Sock sock) {
+        return databaseClient.sql(DELETE)
+                .bind(0, sock.getId())
+                .bind(1, sock.getVersion())
+                .fetch()
+                .rowsUpdated()
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new OptimisticLockingFailureException("Socks with id=" + sock.getId() + " were changed"))
+                        : Mono.empty());
+    }
+
+    @Override
+    public Mono<Sock> update(Sock sock) {
+        return databaseClient.sql(UPDATE)
+                .bind(0, sock.getColor())
+                .bind(1, sock.getCottonPercentage())
+                .bind(2, sock.getAmount())
+                .bind(3, sock.getId())
+                .bind(4, sock.getVersion())
+                .map(ReactiveSockRepositoryImpl::toSock)
+                .one()
+                .switchIfEmpty(Mono.error(() ->
+                        new OptimisticLockingFailureException("Socks with id=" + sock.getId() + " were changed")));
+    }
+
+    @Override
+    public Mono<Long> sumAmount(String color, String operation, Integer cottonPercentage) {
+        return databaseClient.sql(String.format(SUM_AMOUNT, comparison(operation)))
+                .bind(0, color)
+                .bind(1, cottonPercentage)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    @Override
+    public Flux<Sock> findSlice(Integer from, Integer to, String sortedBy, SockCursor cursor, int limit) {
+        String column = sortColumn(sortedBy);
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM socks WHERE cotton_percentage BETWEEN $1 AND $2");
+        if (!Objects.equals(cursor, null)) {
+            // A row comparison is answered by the index on (column, id) starting at the cursor
+            sql.append(Objects.equals(column, null) ? " AND id > $3" : " AND (" + column + ", id) > ($3, $4)");
+        }
+        sql.append(orderBy(column)).append(" LIMIT ").append(limit);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+                .bind(0, from)
+                .bind(1, to);
+        if (!Objects.equals(cursor, null)) {
+            if (Objects.equals(column, null)) {
+                spec = spec.bind(2, cursor.id());
+            } else {
+                spec = spec.bind(2, column.equals("color") ? cursor.color() : cursor.cottonPercentage())
+                        .bind(3, cursor.id());
+            }
+        }
+        return spec.map(ReactiveSockRepositoryImpl::toSock).all();
+    }
+
+    @Override
+    public Flux<Sock> streamAll(Integer from, Integer to, String sortedBy, int fetchSize) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM socks WHERE cotton_percentage BETWEEN $1 AND $2"
+                        + orderBy(sortColumn(sortedBy)))
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .bind(0, from)
+                .bind(1, to)
+                .map(ReactiveSockRepositoryImpl::toSock)
+                .all();
+    }
+
+    @Override
+    public Flux<SockBatchWriter.UpsertedRow> upsert(Map<SockKey, Integer> amounts) {
+        List<SockKey> keys = new ArrayList<>(amounts.keySet());
+        keys.sort(SockKey.ORDER);
+        List<List<SockKey>> statements = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += MAX_ROWS_PER_STATEMENT) {
+            statements.add(keys.subList(from, Math.min(keys.size(), from + MAX_ROWS_PER_STATEMENT)));
+        }
+        return Flux.fromIterable(statements).concatMap(statementKeys -> {
+            StringBuilder sql = new StringBuilder(UPSERT_PREFIX);
+            for (int i = 0; i < statementKeys.size(); i++) {
+                sql.append(i == 0 ? "" : ", ")
+                        .append("($").append(3 * i + 1).append(", $").append(3 * i + 2).append(", $").append(3 * i + 3).append(")");
+            }
+            DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.append(UPSERT_SUFFIX).toString());
+            int index = 0;
+            for (SockKey key : statementKeys) {
+                spec = spec.bind(index++, key.color())
+                        .bind(index++, key.cottonPercentage())
+                        .bind(index++, amounts.get(key));
+            }
+            return spec.map(row -> new SockBatchWriter.UpsertedRow(toSock(row), row.get("inserted", Boolean.class)))
+                    .all();
+        });
+    }
+
+    private static Sock toSock(Readable row) {
+        return Sock.builder()
+                .id(row.get("id", Long.class))
+                .color(row.get("color", String.class))
+                .cottonPercentage(row.get("cotton_percentage", Integer.class))
+                .amount(row.get("amount", Integer.class))
+                .version(row.get("version", Long.class))
+                .build();
+    }
+
+    /**
+     * @return The column to sort by before the id, or null to sort by id only.
+     */
+    private static String sortColumn(String sortedBy) {
+        if (Objects.equals(sortedBy, null)) {
+            return null;
+        }
+        return SockSort.fieldName(sortedBy).equals(Constraints.COLOR_FIELD_NAME) ? "color" : "cotton_percentage";
+    }
+
+    private static String orderBy(String column) {
+        return Objects.equals(column, null) ? " ORDER BY id" : " ORDER BY " + column + ", id";
+    }
+
+    private static String comparison(String operation) {
+        return switch (operation) {
+            case Constraints.MORE_THAN_OPERATION_NAME -> ">";
+            case Constraints.LESS_THAN_OPERATION_NAME -> "<";
+            case Constraints.EQUAL_OPERATION_NAME -> "=";
+            default -> throw new IllegalArgumentException("Неподдерживаемый оператор: " + operation);
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package ru.vydrenkova.repositories.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepositoryCustom;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * The SockRepositoryCustomImpl class is the implementation of the SockRepositoryCustom interface.
+ * It builds aggregate and bounded queries from the existing specifications so that only the needed rows are transferred.
+ * The number of rows returned by every query is recorded in the {@code socks.repository.rows} summary; the latency
+ * of the repository methods is timed by Spring Data as {@code spring.data.repository.invocations}.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+public class SockRepositoryCustomImpl implements SockRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final DistributionSummary sliceRows;
+    private final DistributionSummary streamRows;
+
+    public SockRepositoryCustomImpl(MeterRegistry meterRegistry) {
+        this.sliceRows = rowsSummary(meterRegistry, "findSlice");
+        this.streamRows = rowsSummary(meterRegistry, "streamAll");
+    }
+
+    /**
+     * Calculates the total amount of socks matching the specification with a single SUM query.
+     *
+     * @param spec The specification used to filter socks, may be null.
+     * @return The sum of amounts of matching socks, or 0 if nothing matches.
+     */
+    @Override
+    public long sumAmount(Specification<Sock> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Sock> root = query.from(Sock.class);
+
+        query.select(criteriaBuilder.coalesce(
+                criteriaBuilder.sumAsLong(root.<Integer>get(Constraints.AMOUNT_FIELD_NAME)), 0L));
+        applySpecification(spec, root, query, criteriaBuilder);
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    /**
+     * Retrieves the first socks matching the specification with a LIMIT query.
+     *
+     * @param spec  The specification used to filter socks, may be null.
+     * @param sort  The order of the socks.
+     * @param limit The maximum number of socks.
+     * @return The first socks in the given order.
+     */
+    @Override
+    public List<Sock> findSlice(Specification<Sock> spec, Sort sort, int limit) {
+        List<Sock> socks = entityManager.createQuery(selectSocks(spec, sort))
+                .setMaxResults(limit)
+                .getResultList();
+        sliceRows.record(socks.size());
+        return socks;
+    }
+
+    /**
+     * Streams the socks matching the specification, fetching the given number of rows at a time.
+     *
+     * @param spec      The specification used to filter socks, may be null.
+     * @param sort      The order of the socks.
+     * @param fetchSize The number of rows fetched from the database at once.
+     * @return The matching socks in the given order.
+     */
+    @Override
+    public Stream<Sock> streamAll(Specification<Sock> spec, Sort sort, int fetchSize) {
+        LongAdder rows = new LongAdder();
+        return entityManager.createQuery(selectSocks(spec, sort))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .peek(entityManager::detach)
+                .peek(sock -> rows.increment())
+                .onClose(() -> streamRows.record(rows.sum()));
+    }
+
+    private static DistributionSummary rowsSummary(MeterRegistry meterRegistry, String method) {
+        return DistributionSummary.builder("socks.repository.rows")
+                .description("Rows returned by a query of the socks repository")
+                .tag("method", method)
+                .register(meterRegistry);
+    }
+
+    private CriteriaQuery<Sock> selectSocks(Specification<Sock> spec, Sort sort) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Sock> query = criteriaBuilder.createQuery(Sock.class);
+        Root<Sock> root = query.from(Sock.class);
+
+        query.select(root);
+        applySpecification(spec, root, query, criteriaBuilder);
+        query.orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+        return query;
+    }
+
+    private void applySpecification(Specification<Sock> spec, Root<Sock> root,
+                                    CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder) {
+        if (!Objects.equals(spec, null)) {
+            Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+            if (!Objects.equals(predicate, null)) {
+                query.where(predicate);
+            }
+        }
+    }
+}
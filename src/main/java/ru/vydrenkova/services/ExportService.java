@@ -0,0 +1,23 @@
+package ru.vydrenkova.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The ExportService interface defines the service layer for full exports of the socks inventory.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+public interface ExportService {
+
+    /**
+     * Writes all stored socks to the output stream in the three-column format of CSV imports.
+     *
+     * @param format       The format of the export (csv or ndjson).
+     * @param outputStream The stream the export is written to. It is flushed but not closed.
+     * @throws IOException if the output stream cannot be written.
+     */
+    void exportSocks(String format, OutputStream outputStream) throws IOException;
+}
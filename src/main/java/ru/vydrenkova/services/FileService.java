@@ -1,7 +1,11 @@
 package ru.vydrenkova.services;
 
 import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.dto.responses.ImportSummary;
 import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.services.batch.ImportProgress;
+
+import java.nio.file.Path;
 
 /**
  * The FileService interface defines the service layer for processing CSV files containing socks data.
@@ -20,4 +24,29 @@ public interface FileService {
      * @return A SocksList containing the list of processed socks.
      */
     SocksList processSocksBatch(MultipartFile file);
+
+    /**
+     * Imports a batch of socks from a CSV file in fixed-size chunks without keeping the whole file in memory.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
+     */
+    ImportSummary importSocksBatch(MultipartFile file);
+
+    /**
+     * Validates a CSV file and copies it to a temporary file that outlives the request.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return The path of the temporary file. The caller is responsible for deleting it.
+     */
+    Path spoolSocksBatch(MultipartFile file);
+
+    /**
+     * Imports a batch of socks from a spooled CSV file, reporting progress while parsing.
+     *
+     * @param file     The spooled CSV file with valid headers.
+     * @param progress The receiver of progress notifications, which may also cancel the import.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
+     */
+    ImportSummary importSocksFile(Path file, ImportProgress progress);
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package ru.vydrenkova.services;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.dto.responses.ImportJobResponse;
+
+/**
+ * The ImportJobService interface defines the service layer for asynchronous imports of CSV files.
+ * An upload is accepted immediately, processed in the background, and its progress can be polled.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+public interface ImportJobService {
+
+    /**
+     * Validates and spools a CSV file and queues it for import.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return An ImportJobResponse with the ID of the queued job.
+     */
+    ImportJobResponse submit(MultipartFile file);
+
+    /**
+     * Retrieves the state and progress of an import job.
+     *
+     * @param id The ID of the job.
+     * @return An ImportJobResponse with the current state of the job.
+     */
+    ImportJobResponse getJob(String id);
+
+    /**
+     * Cancels an import job.
+     *
+     * @param id The ID of the job.
+     * @return An ImportJobResponse with the state of the job after cancellation was requested.
+     */
+    ImportJobResponse cancel(String id);
+}
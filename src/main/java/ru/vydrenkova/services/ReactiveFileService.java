@@ -0,0 +1,23 @@
+package ru.vydrenkova.services;
+
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Mono;
+import ru.vydrenkova.dto.responses.ImportSummary;
+
+/**
+ * The ReactiveFileService interface defines the non-blocking import of CSV files of the reactive profile.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+public interface ReactiveFileService {
+
+    /**
+     * Imports a batch of socks from a CSV file while it is being uploaded, in fixed-size chunks.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
+     */
+    Mono<ImportSummary> importSocksBatch(FilePart file);
+}
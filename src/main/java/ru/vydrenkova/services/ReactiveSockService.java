@@ -0,0 +1,77 @@
+package ru.vydrenkova.services;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+
+/**
+ * The ReactiveSockService interface defines the non-blocking service layer of the reactive profile.
+ * It mirrors {@link SockService}, returning publishers instead of values.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+public interface ReactiveSockService {
+
+    /**
+     * Retrieves the total quantity of socks based on filtering criteria.
+     *
+     * @param color            The color of the socks.
+     * @param operation        The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cottonPercentage The cotton percentage to filter socks.
+     * @return An AmountResponse containing the total quantity of socks that match the criteria.
+     */
+    Mono<AmountResponse> getSocksAmount(String color, String operation, Integer cottonPercentage);
+
+    /**
+     * Adds a new batch of socks to the inventory.
+     *
+     * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @return A SockResponse containing the details of the added socks.
+     */
+    Mono<SockResponse> addSocks(SockRequest sockRequest);
+
+    /**
+     * Removes a batch of socks from the inventory.
+     *
+     * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @return A SockResponse containing the details of the removed socks.
+     */
+    Mono<SockResponse> removeSocks(SockRequest sockRequest);
+
+    /**
+     * Updates the details of socks in the inventory.
+     *
+     * @param id          The ID of the socks to be updated.
+     * @param sockRequest The request containing the updated details of the socks.
+     * @return A SockResponse containing the updated details of the socks.
+     */
+    Mono<SockResponse> updateSocks(Long id, SockRequest sockRequest);
+
+    /**
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @param size      The maximum number of socks on the page.
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @return A SocksList containing the page of filtered and sorted socks and the cursor of the next page.
+     */
+    Mono<SocksList> getSocksByFilterSorted(Integer from, Integer to, String sortedBy, Integer size, String cursor);
+
+    /**
+     * Streams all socks filtered by cotton percentage range and sorted by a specified field.
+     * Rows are read from the database only as fast as the subscriber consumes them.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @return The filtered and sorted socks.
+     */
+    Flux<SockResponse> streamSocksByFilterSorted(Integer from, Integer to, String sortedBy);
+}
@@ -2,9 +2,13 @@ package ru.vydrenkova.services;
 
 import ru.vydrenkova.dto.requests.SockRequest;
 import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.MovementBatchResult;
 import ru.vydrenkova.dto.responses.SockResponse;
 import ru.vydrenkova.dto.responses.SocksList;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * The SockService interface defines the service layer for managing socks inventory in a store.
  * It provides methods for retrieving, adding, removing, updating, and filtering socks,
@@ -42,6 +46,17 @@ public interface SockService {
      */
     SockResponse removeSocks(SockRequest sockRequest);
 
+    /**
+     * Applies a batch of income or outcome movements. In the all-or-nothing mode nothing is applied if any movement
+     * is rejected; in the best-effort mode the other movements are applied.
+     *
+     * @param direction The direction of the movements (income or outcome).
+     * @param mode      The mode of the batch (all-or-nothing or best-effort).
+     * @param movements The movements, each containing the color, cotton percentage, and amount of the socks.
+     * @return A MovementBatchResult containing the result of every movement.
+     */
+    MovementBatchResult applyMovements(String direction, String mode, List<SockRequest> movements);
+
     /**
      * Updates the details of socks in the inventory.
      *
@@ -52,12 +67,25 @@ public interface SockService {
     SockResponse updateSocks(Long id, SockRequest sockRequest);
 
     /**
-     * Retrieves a list of socks filtered by cotton percentage range and sorted by a specified field.
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @param size      The maximum number of socks on the page.
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @return A SocksList containing the page of filtered and sorted socks and the cursor of the next page.
+     */
+    SocksList getSocksByFilterSorted(Integer from, Integer to, String sortedBy, Integer size, String cursor);
+
+    /**
+     * Passes all socks filtered by cotton percentage range and sorted by a specified field to the consumer
+     * one by one, without loading them into memory at once.
      *
      * @param from      The minimum cotton percentage.
      * @param to        The maximum cotton percentage.
      * @param sortedBy  The field to sort the socks by (color or cotton).
-     * @return A SocksList containing the list of filtered and sorted socks.
+     * @param consumer  The receiver of the socks.
      */
-    SocksList getSocksByFilterSorted(Integer from, Integer to, String sortedBy);
+    void streamSocksByFilterSorted(Integer from, Integer to, String sortedBy, Consumer<SockResponse> consumer);
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package ru.vydrenkova.services.batch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.vydrenkova.dto.responses.ImportSummary;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The ImportMetrics class records the meters of CSV imports. Rows are counted when their chunk has been written,
+ * so the rate of {@code socks.import.rows} is the import throughput in rows per second. The meters are created once,
+ * and a meter disabled with {@code management.metrics.enable.socks=false} costs no more than a no-op call.
+ */
+@Component
+public class ImportMetrics {
+
+    public static final String STREAM_MODE = "stream";
+    public static final String MAPPED_MODE = "mapped";
+    public static final String COPY_MODE = "copy";
+
+    private final Counter acceptedRows;
+    private final Counter rejectedRows;
+    private final Timer chunkTimer;
+    private final Timer streamImportTimer;
+    private final Timer mappedImportTimer;
+    private final Timer copyImportTimer;
+
+    public ImportMetrics(MeterRegistry meterRegistry) {
+        this.acceptedRows = Counter.builder("socks.import.rows")
+                .description("Rows of imported CSV files")
+                .tag("result", "accepted")
+                .register(meterRegistry);
+        this.rejectedRows = Counter.builder("socks.import.rows")
+                .description("Rows of imported CSV files")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("socks.import.chunk")
+                .description("Time to write a chunk of aggregated positions")
+                .register(meterRegistry);
+        this.streamImportTimer = importTimer(meterRegistry, STREAM_MODE);
+        this.mappedImportTimer = importTimer(meterRegistry, MAPPED_MODE);
+        this.copyImportTimer = importTimer(meterRegistry, COPY_MODE);
+    }
+
+    /**
+     * Writes a chunk and records its latency and rows.
+     *
+     * @param aggregator The positions of the chunk.
+     * @param write      The write of the chunk.
+     * @return The result of the write.
+     */
+    public SockBatchWriter.ChunkResult writeChunk(SockAggregator aggregator, Supplier<SockBatchWriter.ChunkResult> write) {
+        return writeChunk(aggregator.rows(), write);
+    }
+
+    /**
+     * Writes a chunk whose rows have been counted by the database and records its latency and rows.
+     *
+     * @param rows  The number of accepted rows of the chunk.
+     * @param write The write of the chunk.
+     * @return The result of the write.
+     */
+    public SockBatchWriter.ChunkResult writeChunk(long rows, Supplier<SockBatchWriter.ChunkResult> write) {
+        SockBatchWriter.ChunkResult result = chunkTimer.record(write);
+        acceptedRows.increment(rows);
+        return result;
+    }
+
+    /**
+     * Records the duration and the rejected rows of a finished import.
+     *
+     * @param mode    The parsing mode ({@value #STREAM_MODE}, {@value #MAPPED_MODE} or {@value #COPY_MODE}).
+     * @param summary The summary of the import.
+     */
+    public void recordImport(String mode, ImportSummary summary) {
+        rejectedRows.increment(summary.getRejected());
+        Timer timer = switch (mode) {
+            case MAPPED_MODE -> mappedImportTimer;
+            case COPY_MODE -> copyImportTimer;
+            default -> streamImportTimer;
+        };
+        timer.record(summary.getDurationMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Timer importTimer(MeterRegistry meterRegistry, String mode) {
+        return Timer.builder("socks.import")
+                .description("Duration of CSV imports")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,36 @@
+package ru.vydrenkova.services.batch;
+
+/**
+ * The ImportProgress interface receives progress notifications from a running import and tells it whether
+ * it has to stop.
+ */
+public interface ImportProgress {
+
+    /**
+     * Progress that is not tracked and is never cancelled.
+     */
+    ImportProgress NONE = new ImportProgress() {
+        @Override
+        public void rangeParsed(long bytes, long rows, long rejected) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Called from parsing threads when a range of the file has been parsed.
+     *
+     * @param bytes    The size of the range in bytes.
+     * @param rows     The number of rows read from the range.
+     * @param rejected The number of rejected rows in the range.
+     */
+    void rangeParsed(long bytes, long rows, long rejected);
+
+    /**
+     * @return Whether the import has to be stopped before its next step.
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,230 @@
+package ru.vydrenkova.services.batch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The MappedCsvRangeParser class parses unquoted lines of the three-column socks format directly from a
+ * (typically memory-mapped) byte buffer.
+ *
+ * <p>Numbers are parsed from bytes without creating strings, and colors are resolved through an intern table
+ * keyed by their bytes, so a row allocates nothing unless it contains a color that has not been seen before.
+ * Rows are accepted and rejected exactly like {@code Integer.parseInt} and {@link SockRowValidator} would do
+ * for the same values. The parser is not thread-safe; every range uses its own instance.</p>
+ */
+public class MappedCsvRangeParser {
+
+    public static final int COLOR = 0;
+    public static final int COTTON_PERCENTAGE = 1;
+    public static final int AMOUNT = 2;
+
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private final int columnCount;
+    private final int[] roles;
+    private final int errorLimit;
+    private final ColorTable colorTable = new ColorTable();
+
+    private String color;
+    private long cottonPercentage;
+    private long amount;
+
+    /**
+     * @param roles The role ({@link #COLOR}, {@link #COTTON_PERCENTAGE} or {@link #AMOUNT}) of every column.
+     */
+    public MappedCsvRangeParser(int[] roles) {
+        this(roles, 0);
+    }
+
+    /**
+     * @param roles      The role ({@link #COLOR}, {@link #COTTON_PERCENTAGE} or {@link #AMOUNT}) of every column.
+     * @param errorLimit The maximal number of rejected rows whose line number and reason are kept.
+     */
+    public MappedCsvRangeParser(int[] roles, int errorLimit) {
+        this.columnCount = roles.length;
+        this.roles = roles.clone();
+        this.errorLimit = errorLimit;
+    }
+
+    /**
+     * Parses all lines between the position and the limit of the buffer. Empty lines are skipped, but counted
+     * in the line numbers of rejected rows, which start with 1 at the position of the buffer.
+     *
+     * @param buffer The bytes of whole lines.
+     * @return The valid rows summed by position, the number of read rows and lines, and the rejected rows.
+     */
+    public ParallelCsvParser.ParseResult parse(ByteBuffer buffer) {
+        return parse(buffer, new SockAggregator());
+    }
+
+    /**
+     * Parses all lines between the position and the limit of the buffer into an existing aggregate, whose
+     * positions count towards the amount limit of the rows.
+     *
+     * @param buffer     The bytes of whole lines.
+     * @param aggregator The aggregate the valid rows are added to.
+     * @return The aggregate, the number of read rows and lines, and the rejected rows.
+     */
+    public ParallelCsvParser.ParseResult parse(ByteBuffer buffer, SockAggregator aggregator) {
+        RejectedRows rejectedRows = new RejectedRows(errorLimit);
+        long rowsRead = 0;
+        long lines = 0;
+        int position = buffer.position();
+        int limit = buffer.limit();
+        while (position < limit) {
+            lines++;
+            int lineEnd = position;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > position) {
+                rowsRead++;
+                String reason = parseLine(buffer, position, contentEnd);
+                if (reason == null && !aggregator.add(color, (int) cottonPercentage, (int) amount)) {
+                    reason = SockRowValidator.AMOUNT_OVERFLOW;
+                }
+                if (reason != null) {
+                    rejectedRows.reject(lines, reason);
+                }
+            }
+            position = lineEnd + 1;
+        }
+        return new ParallelCsvParser.ParseResult(aggregator, rowsRead, lines, rejectedRows);
+    }
+
+    /**
+     * @return The reason why the line is rejected, or null if it is valid.
+     */
+    private String parseLine(ByteBuffer buffer, int from, int to) {
+        int field = 0;
+        int fieldStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && buffer.get(i) != ',') {
+                continue;
+            }
+            if (field == columnCount) {
+                return SockRowValidator.WRONG_COLUMNS;
+            }
+            switch (roles[field]) {
+                case COLOR -> color = colorTable.intern(buffer, fieldStart, i);
+                case COTTON_PERCENTAGE -> cottonPercentage = parseInt(buffer, fieldStart, i);
+                default -> amount = parseInt(buffer, fieldStart, i);
+            }
+            field++;
+            fieldStart = i + 1;
+        }
+        if (field != columnCount) {
+            return SockRowValidator.WRONG_COLUMNS;
+        }
+        if (cottonPercentage == INVALID) {
+            return SockRowValidator.INVALID_COTTON_PERCENTAGE;
+        }
+        if (amount == INVALID) {
+            return SockRowValidator.INVALID_AMOUNT;
+        }
+        return SockRowValidator.validate(color, (int) cottonPercentage, (int) amount);
+    }
+
+    private static long parseInt(ByteBuffer buffer, int from, int to) {
+        if (from == to) {
+            return INVALID;
+        }
+        boolean negative = false;
+        int i = from;
+        byte first = buffer.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == to) {
+                return INVALID;
+            }
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return INVALID;
+            }
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? INVALID : value;
+    }
+
+    /**
+     * Open-addressing table from the UTF-8 bytes of a color to its canonical string.
+     */
+    private static class ColorTable {
+        private byte[][] keys = new byte[64][];
+        private String[] values = new String[64];
+        private int size;
+
+        String intern(ByteBuffer buffer, int from, int to) {
+            int hash = hash(buffer, from, to);
+            int mask = keys.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                byte[] key = keys[slot];
+                if (key == null) {
+                    return insert(slot, buffer, from, to);
+                }
+                if (matches(key, buffer, from, to)) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private String insert(int slot, ByteBuffer buffer, int from, int to) {
+            byte[] key = new byte[to - from];
+            buffer.get(from, key);
+            String value = new String(key, StandardCharsets.UTF_8);
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return value;
+        }
+
+        private void resize() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = Arrays.hashCode(oldKeys[i]) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(ByteBuffer buffer, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            return hash;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int from, int to) {
+            if (key.length != to - from) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package ru.vydrenkova.services.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.stereotype.Component;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The ParallelCsvParser class parses a spooled CSV upload on several cores.
+ *
+ * <p>The data after the header line is split into byte ranges that start and end on line boundaries.
+ * Every range is memory-mapped, parsed by a {@link MappedCsvRangeParser} and validated on a fork-join pool
+ * into its own {@link SockAggregator}, and the partial aggregates are merged at the end. A quoted value may span
+ * several lines, so a file containing quotes is split only at line breaks outside quoted values, found by one
+ * sequential scan, and its ranges are parsed by commons-csv on the same pool.</p>
+ */
+@Slf4j
+@Component
+public class ParallelCsvParser {
+
+    private static final int RANGES_PER_WORKER = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_MAPPED_RANGE = 1L << 30;
+    private static final int DEFAULT_ERROR_LIMIT = 100;
+    private static final int HEADER_LINES = 1;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    /**
+     * Reads the names of the columns from the first line of the file.
+     *
+     * @param file The CSV file.
+     * @return The header names.
+     * @throws IOException if the file cannot be read.
+     */
+    public List<String> readHeaders(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return parseHeaders(channel, headerEnd(channel));
+        }
+    }
+
+    /**
+     * Parses all data lines of the file.
+     *
+     * @param file    The CSV file with a valid header line.
+     * @param workers The number of threads used for parsing.
+     * @return The merged aggregate and the number of read and rejected rows.
+     * @throws IOException if the file cannot be read.
+     */
+    public ParseResult parse(Path file, int workers) throws IOException {
+        return parse(file, workers, ImportProgress.NONE);
+    }
+
+    /**
+     * Parses all data lines of the file, reporting every parsed range. Ranges that have not started yet are
+     * skipped once the progress is cancelled.
+     *
+     * @param file     The CSV file with a valid header line.
+     * @param workers  The number of threads used for parsing.
+     * @param progress The receiver of progress notifications.
+     * @return The merged aggregate and the number of read and rejected rows.
+     * @throws IOException           if the file cannot be read.
+     * @throws CancellationException if the progress was cancelled.
+     */
+    public ParseResult parse(Path file, int workers, ImportProgress progress) throws IOException {
+        return parse(file, workers, DEFAULT_ERROR_LIMIT, progress);
+    }
+
+    /**
+     * Parses all data lines of the file, reporting every parsed range and keeping the line number and the reason
+     * of the first rejected rows. Ranges that have not started yet are skipped once the progress is cancelled.
+     *
+     * @param file       The CSV file with a valid header line.
+     * @param workers    The number of threads used for parsing.
+     * @param errorLimit The maximal number of rejected rows whose line number and reason are kept.
+     * @param progress   The receiver of progress notifications.
+     * @return The merged aggregate, the number of read rows and the rejected rows.
+     * @throws IOException           if the file cannot be read.
+     * @throws CancellationException if the progress was cancelled.
+     */
+    public ParseResult parse(Path file, int workers, int errorLimit, ImportProgress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long dataStart = headerEnd(channel);
+            List<String> headers = parseHeaders(channel, dataStart);
+            int[] columns = {
+                    headers.indexOf(Constraints.COLOR_CSV_HEADER_NAME),
+                    headers.indexOf(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME),
+                    headers.indexOf(Constraints.AMOUNT_CSV_HEADER_NAME)
+            };
+            boolean quoted = containsQuotes(channel, dataStart);
+            long dataSize = channel.size() - dataStart;
+            int rangeCount = (int) Math.max(workers * RANGES_PER_WORKER, dataSize / MAX_MAPPED_RANGE + 1);
+            List<long[]> ranges = quoted
+                    ? splitQuoted(channel, dataStart, channel.size(), rangeCount)
+                    : split(channel, dataStart, channel.size(), rangeCount);
+            if (quoted) {
+                log.info("{} contains quotes, parsing {} ranges split outside quoted values with commons-csv on {} workers",
+                        file, ranges.size(), workers);
+            } else {
+                log.debug("Parsing {} in {} ranges on {} workers", file, ranges.size(), workers);
+            }
+
+            List<Callable<ParseResult>> tasks = new ArrayList<>();
+            for (long[] range : ranges) {
+                tasks.add(() -> {
+                    if (progress.isCancelled()) {
+                        throw new CancellationException("Import was cancelled");
+                    }
+                    ParseResult partial = parseRange(channel, range, quoted, headers, columns, errorLimit,
+                            new SockAggregator());
+                    progress.rangeParsed(range[1] - range[0], partial.rowsRead(), partial.rejected());
+                    return partial;
+                });
+            }
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                SockAggregator aggregator = new SockAggregator();
+                RejectedRows rejectedRows = new RejectedRows(errorLimit);
+                long rowsRead = 0;
+                long lines = 0;
+                List<Future<ParseResult>> futures = pool.invokeAll(tasks);
+                for (int i = 0; i < futures.size(); i++) {
+                    ParseResult partial = futures.get(i).get();
+                    // released once merged, so that only the merged aggregate stays on the heap
+                    futures.set(i, null);
+                    if (aggregator.canMerge(partial.aggregator())) {
+                        aggregator.merge(partial.aggregator());
+                    } else {
+                        // Rows of the range push a position past int together with the earlier ranges. The range
+                        // is parsed again into the merged aggregate, so that only the rows that overflow are rejected,
+                        // like in the streaming import
+                        log.warn("Range {} of {} overflows the amount of a position, parsing it again", i, file);
+                        partial = parseRange(channel, ranges.get(i), quoted, headers, columns, errorLimit, aggregator);
+                    }
+                    rejectedRows.merge(partial.rejectedRows(), HEADER_LINES + lines);
+                    rowsRead += partial.rowsRead();
+                    lines += partial.lines();
+                }
+                return new ParseResult(aggregator, rowsRead, lines, rejectedRows);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("CSV parsing was interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (e.getCause() instanceof CancellationException cancellationException) {
+                    throw cancellationException;
+                }
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private ParseResult parseRange(FileChannel channel, long[] range, boolean quoted, List<String> headers,
+                                   int[] columns, int errorLimit, SockAggregator aggregator) throws IOException {
+        return quoted
+                ? parseRange(channel, range[0], range[1], headers.size(), columns, errorLimit, aggregator)
+                : parseMappedRange(channel, range[0], range[1], headers, errorLimit, aggregator);
+    }
+
+    private ParseResult parseMappedRange(FileChannel channel, long start, long end, List<String> headers,
+                                         int errorLimit, SockAggregator aggregator) throws IOException {
+        int[] roles = new int[headers.size()];
+        for (int i = 0; i < roles.length; i++) {
+            String header = headers.get(i);
+            roles[i] = header.equals(Constraints.COLOR_CSV_HEADER_NAME) ? MappedCsvRangeParser.COLOR
+                    : header.equals(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME) ? MappedCsvRangeParser.COTTON_PERCENTAGE
+                    : MappedCsvRangeParser.AMOUNT;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        return new MappedCsvRangeParser(roles, errorLimit).parse(buffer, aggregator);
+    }
+
+    private ParseResult parseRange(FileChannel channel, long start, long end, int columnCount, int[] columns,
+                                   int errorLimit, SockAggregator aggregator) throws IOException {
+        RejectedRows rejectedRows = new RejectedRows(errorLimit);
+        long rowsRead = 0;
+        long line = 0;
+        try (Reader reader = new InputStreamReader(new RangeInputStream(channel, start, end), StandardCharsets.UTF_8);
+             CSVParser csvParser = new CSVParser(new BufferedReader(reader, BUFFER_SIZE), CSVFormat.DEFAULT)) {
+            for (CSVRecord csvRecord : csvParser) {
+                rowsRead++;
+                // the parser does not count the end of the last line if it has no line break
+                line = Math.max(csvParser.getCurrentLineNumber(), line + 1);
+                if (csvRecord.size() != columnCount) {
+                    rejectedRows.reject(line, SockRowValidator.WRONG_COLUMNS);
+                    continue;
+                }
+                String color = csvRecord.get(columns[0]);
+                int cottonPercentage;
+                int amount;
+                try {
+                    cottonPercentage = Integer.parseInt(csvRecord.get(columns[1]));
+                } catch (NumberFormatException e) {
+                    rejectedRows.reject(line, SockRowValidator.INVALID_COTTON_PERCENTAGE);
+                    continue;
+                }
+                try {
+                    amount = Integer.parseInt(csvRecord.get(columns[2]));
+                } catch (NumberFormatException e) {
+                    rejectedRows.reject(line, SockRowValidator.INVALID_AMOUNT);
+                    continue;
+                }
+                String reason = SockRowValidator.validate(color, cottonPercentage, amount);
+                if (reason == null && !aggregator.add(color, cottonPercentage, amount)) {
+                    reason = SockRowValidator.AMOUNT_OVERFLOW;
+                }
+                if (reason != null) {
+                    rejectedRows.reject(line, reason);
+                }
+            }
+            // empty lines at the end of the range are skipped by the parser, but still shift the following ranges
+            line = Math.max(line, csvParser.getCurrentLineNumber());
+        }
+        return new ParseResult(aggregator, rowsRead, line, rejectedRows);
+    }
+
+    private List<String> parseHeaders(FileChannel channel, long headerEnd) throws IOException {
+        try (Reader reader = new InputStreamReader(new RangeInputStream(channel, 0, headerEnd), StandardCharsets.UTF_8);
+             CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT)) {
+            List<String> headers = new ArrayList<>();
+            for (CSVRecord csvRecord : csvParser) {
+                csvRecord.forEach(headers::add);
+                break;
+            }
+            return headers;
+        }
+    }
+
+    private long headerEnd(FileChannel channel) throws IOException {
+        return nextLineStart(channel, 0);
+    }
+
+    private List<long[]> split(FileChannel channel, long start, long end, int rangeCount) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long rangeStart = start;
+        for (int i = 1; i <= rangeCount && rangeStart < end; i++) {
+            long rangeEnd = i == rangeCount
+                    ? end
+                    : nextLineStart(channel, Math.max(rangeStart, start + (end - start) * i / rangeCount));
+            if (rangeEnd > rangeStart) {
+                ranges.add(new long[]{rangeStart, rangeEnd});
+                rangeStart = rangeEnd;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Splits the data like {@link #split}, but only after line breaks outside quoted values. Whether a line break
+     * is quoted depends on all quotes before it, so the data is scanned once from the start, following the quoting
+     * rules of {@link CSVFormat#DEFAULT}: a quote opens a quoted value only at the start of a field, and two quotes
+     * inside it stand for one.
+     */
+    private List<long[]> splitQuoted(FileChannel channel, long start, long end, int rangeCount) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        int state = FIELD_START;
+        int range = 1;
+        long target = start + (end - start) / rangeCount;
+        long rangeStart = start;
+        long position = start;
+        while (position < end && range < rangeCount) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                boolean lineEnd = false;
+                switch (state) {
+                    case QUOTED -> state = b == '"' ? QUOTE_IN_QUOTED : QUOTED;
+                    case FIELD_START -> {
+                        lineEnd = b == '\n';
+                        state = b == '"' ? QUOTED : b == ',' || lineEnd ? FIELD_START : UNQUOTED;
+                    }
+                    default -> {
+                        lineEnd = b == '\n';
+                        state = state == QUOTE_IN_QUOTED && b == '"' ? QUOTED
+                                : b == ',' || lineEnd ? FIELD_START : UNQUOTED;
+                    }
+                }
+                long offset = position + i;
+                if (lineEnd && offset >= target) {
+                    ranges.add(new long[]{rangeStart, offset + 1});
+                    rangeStart = offset + 1;
+                    while (range < rangeCount && target <= offset) {
+                        range++;
+                        target = start + (end - start) * range / rangeCount;
+                    }
+                }
+            }
+            position += read;
+        }
+        if (rangeStart < end) {
+            ranges.add(new long[]{rangeStart, end});
+        }
+        return ranges;
+    }
+
+    private long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private boolean containsQuotes(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '"') {
+                    return true;
+                }
+            }
+            position += read;
+        }
+        return false;
+    }
+
+    /**
+     * The result of parsing a file or a range of it.
+     *
+     * @param aggregator   The valid rows summed by position.
+     * @param rowsRead     The number of data rows read.
+     * @param lines        The number of lines parsed, including empty ones.
+     * @param rejectedRows The rows with invalid values.
+     */
+    public record ParseResult(SockAggregator aggregator, long rowsRead, long lines, RejectedRows rejectedRows) {
+
+        /**
+         * @return The number of rows with invalid values.
+         */
+        public long rejected() {
+            return rejectedRows.count();
+        }
+    }
+
+    /**
+     * Reads a byte range of a file channel with positional reads, so ranges can be read concurrently.
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int count = (int) Math.min(length, end - position);
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, count), position);
+            if (read <= 0) {
+                return -1;
+            }
+            position += read;
+            return read;
+        }
+    }
+}
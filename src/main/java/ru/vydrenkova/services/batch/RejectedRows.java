@@ -0,0 +1,64 @@
+package ru.vydrenkova.services.batch;
+
+import ru.vydrenkova.dto.responses.RowError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The RejectedRows class counts the rejected rows of an import and keeps the line number and the reason of
+ * the first of them, up to a fixed limit, so a file with many bad rows cannot exhaust the memory.
+ * It is not thread-safe; every parsed range collects its own rows, which are merged in file order.
+ */
+public class RejectedRows {
+
+    private final int limit;
+    private final List<RowError> errors = new ArrayList<>();
+    private long count;
+
+    /**
+     * @param limit The maximal number of rows whose line number and reason are kept.
+     */
+    public RejectedRows(int limit) {
+        this.limit = limit;
+    }
+
+    public void reject(long line, String reason) {
+        count++;
+        if (errors.size() < limit) {
+            errors.add(new RowError(line, reason));
+        }
+    }
+
+    /**
+     * Appends the rows rejected in a later part of the file.
+     *
+     * @param other      The rows rejected in that part.
+     * @param lineOffset The number of lines in the file before that part.
+     */
+    public void merge(RejectedRows other, long lineOffset) {
+        count += other.count;
+        for (RowError error : other.errors) {
+            if (errors.size() == limit) {
+                break;
+            }
+            errors.add(new RowError(error.getLine() + lineOffset, error.getReason()));
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public List<RowError> errors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return Whether some rejected rows are counted but not listed.
+     */
+    public boolean isTruncated() {
+        return count > errors.size();
+    }
+}
@@ -0,0 +1,195 @@
+package ru.vydrenkova.services.batch;
+
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The SockAggregator class sums imported rows by color and cotton percentage before they reach the database.
+ *
+ * <p>Colors are interned into dense ids, and since the cotton percentage only takes
+ * {@value #COTTON_SLOTS} values, a position is addressed as {@code colorId * COTTON_SLOTS + cottonPercentage}
+ * in primitive arrays. Adding a row allocates nothing unless a new color is seen.</p>
+ *
+ * <p>The amount of every position stays within the {@code int} column it is written to, so that an import is
+ * rejected while it is parsed rather than when a chunk is written.</p>
+ */
+public class SockAggregator {
+
+    static final int COTTON_SLOTS = Constraints.MAX_COTTON_PERCENTAGE + 1;
+    private static final int INITIAL_COLORS = 16;
+
+    private final Map<String, Integer> colorIds = new HashMap<>();
+    private final List<String> colors = new ArrayList<>();
+    private long[] amounts = new long[INITIAL_COLORS * COTTON_SLOTS];
+    private int[] rowCounts = new int[INITIAL_COLORS * COTTON_SLOTS];
+    private int positions;
+    private long rows;
+
+    /**
+     * Adds a row to the aggregate.
+     *
+     * @param color            The color of the socks.
+     * @param cottonPercentage The cotton percentage of the socks, between 0 and 100.
+     * @param amount           The number of socks.
+     * @return false if the row is not added, because the amount of its position would exceed {@code int}.
+     */
+    public boolean add(String color, int cottonPercentage, int amount) {
+        return add(color, cottonPercentage, amount, 1);
+    }
+
+    /**
+     * @param other The aggregate to be merged.
+     * @return false if merging the aggregate would push the amount of a position past {@code int}.
+     */
+    public boolean canMerge(SockAggregator other) {
+        for (int colorId = 0; colorId < other.colors.size(); colorId++) {
+            Integer id = colorIds.get(other.colors.get(colorId));
+            if (id == null) {
+                continue;
+            }
+            int base = id * COTTON_SLOTS;
+            int otherBase = colorId * COTTON_SLOTS;
+            for (int cotton = 0; cotton < COTTON_SLOTS; cotton++) {
+                if (amounts[base + cotton] + other.amounts[otherBase + cotton] > Integer.MAX_VALUE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all positions of another aggregate to this one.
+     *
+     * @param other The aggregate to be merged.
+     * @throws IllegalArgumentException if the aggregate cannot be merged, see {@link #canMerge}.
+     */
+    public void merge(SockAggregator other) {
+        for (int colorId = 0; colorId < other.colors.size(); colorId++) {
+            String color = other.colors.get(colorId);
+            int base = colorId * COTTON_SLOTS;
+            for (int cotton = 0; cotton < COTTON_SLOTS; cotton++) {
+                if (other.rowCounts[base + cotton] != 0
+                        && !add(color, cotton, other.amounts[base + cotton], other.rowCounts[base + cotton])) {
+                    throw new IllegalArgumentException("Amount of " + color + ", " + cotton + " exceeds int");
+                }
+            }
+        }
+    }
+
+    private boolean add(String color, int cottonPercentage, long amount, int rowCount) {
+        int slot = colorId(color) * COTTON_SLOTS + cottonPercentage;
+        if (amounts[slot] + amount > Integer.MAX_VALUE) {
+            return false;
+        }
+        if (rowCounts[slot] == 0) {
+            positions++;
+        }
+        amounts[slot] += amount;
+        rowCounts[slot] += rowCount;
+        rows += rowCount;
+        return true;
+    }
+
+    /**
+     * @return The number of distinct positions in the aggregate.
+     */
+    public int positions() {
+        return positions;
+    }
+
+    /**
+     * @return The number of rows added to the aggregate.
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * Visits every position ordered by color and then by cotton percentage.
+     *
+     * @param consumer The consumer of positions.
+     */
+    public void forEachSorted(PositionConsumer consumer) {
+        List<String> sortedColors = new ArrayList<>(colors);
+        Collections.sort(sortedColors);
+        for (String color : sortedColors) {
+            int base = colorIds.get(color) * COTTON_SLOTS;
+            for (int cotton = 0; cotton < COTTON_SLOTS; cotton++) {
+                if (rowCounts[base + cotton] != 0) {
+                    consumer.accept(color, cotton, amounts[base + cotton], rowCounts[base + cotton]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the positions, ordered like in {@link #forEachSorted}, to the consumer in aggregates of at most
+     * the given number of positions. The chunk is reused for the next positions once the consumer returns.
+     *
+     * @param chunkPositions The maximal number of positions in a chunk.
+     * @param consumer       The consumer of chunks.
+     */
+    public void forEachChunk(int chunkPositions, Consumer<SockAggregator> consumer) {
+        SockAggregator chunk = new SockAggregator();
+        forEachSorted((color, cottonPercentage, amount, rowCount) -> {
+            chunk.add(color, cottonPercentage, amount, rowCount);
+            if (chunk.positions() == chunkPositions) {
+                consumer.accept(chunk);
+                chunk.clear();
+            }
+        });
+        if (chunk.positions() > 0) {
+            consumer.accept(chunk);
+        }
+    }
+
+    /**
+     * @return The keys of all positions ordered by color and then by cotton percentage.
+     */
+    public List<SockKey> keys() {
+        List<SockKey> keys = new ArrayList<>(positions);
+        forEachSorted((color, cottonPercentage, amount, rowCount) -> keys.add(new SockKey(color, cottonPercentage)));
+        return keys;
+    }
+
+    /**
+     * Removes all positions while keeping the allocated arrays.
+     */
+    public void clear() {
+        int used = colors.size() * COTTON_SLOTS;
+        Arrays.fill(amounts, 0, used, 0L);
+        Arrays.fill(rowCounts, 0, used, 0);
+        colorIds.clear();
+        colors.clear();
+        positions = 0;
+        rows = 0;
+    }
+
+    private int colorId(String color) {
+        Integer id = colorIds.get(color);
+        if (id != null) {
+            return id;
+        }
+        id = colors.size();
+        colors.add(color);
+        colorIds.put(color, id);
+        int required = colors.size() * COTTON_SLOTS;
+        if (required > amounts.length) {
+            amounts = Arrays.copyOf(amounts, amounts.length * 2);
+            rowCounts = Arrays.copyOf(rowCounts, rowCounts.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Receives an aggregated position.
+     */
+    @FunctionalInterface
+    public interface PositionConsumer {
+        void accept(String color, int cottonPercentage, long amount, int rows);
+    }
+}
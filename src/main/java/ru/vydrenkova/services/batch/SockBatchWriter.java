@@ -0,0 +1,143 @@
+package ru.vydrenkova.services.batch;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.index.CottonHistogramIndex;
+import ru.vydrenkova.services.ledger.SockKey;
+
+import java.util.*;
+
+/**
+ * The SockBatchWriter class persists imported socks with multi-row {@code INSERT ... ON CONFLICT DO UPDATE}
+ * statements. A statement carries up to {@value #MAX_ROWS_PER_STATEMENT} positions, so thousands of rows cost
+ * a handful of round trips. Positions whose color and cotton percentage already exist are added to the stored amount.
+ * Positions are always written in {@link SockKey#ORDER}, so concurrent imports cannot deadlock.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Profile("!reactive")
+public class SockBatchWriter {
+
+    static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String INSERT_PREFIX = "INSERT INTO socks (color, cotton_percentage, amount) VALUES ";
+    private static final String INSERT_SUFFIX = " ON CONFLICT (color, cotton_percentage) " +
+            "DO UPDATE SET amount = socks.amount + EXCLUDED.amount, version = socks.version + 1 " +
+            "RETURNING id, color, cotton_percentage, amount, (xmax = 0) AS inserted";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AmountCache amountCache;
+    private final Optional<CottonHistogramIndex> cottonIndex;
+
+    /**
+     * Persists the aggregated positions.
+     *
+     * @param aggregator The positions to be persisted.
+     * @return The number of rows that created new positions and the number of rows merged into existing ones.
+     */
+    @Transactional
+    public ChunkResult write(SockAggregator aggregator) {
+        Map<SockKey, Integer> amounts = new HashMap<>();
+        Map<SockKey, Integer> rowCounts = new HashMap<>();
+        long[] counts = new long[2];
+        aggregator.forEachSorted((color, cottonPercentage, amount, rows) -> {
+            SockKey key = new SockKey(color, cottonPercentage);
+            // the aggregator keeps every position within int
+            amounts.put(key, (int) amount);
+            rowCounts.put(key, rows);
+            if (amounts.size() == MAX_ROWS_PER_STATEMENT) {
+                countRows(upsert(amounts), rowCounts, counts);
+                amounts.clear();
+                rowCounts.clear();
+            }
+        });
+        if (!amounts.isEmpty()) {
+            countRows(upsert(amounts), rowCounts, counts);
+        }
+        log.debug("{} rows written as {} positions: inserted={}, merged={}",
+                aggregator.rows(), aggregator.positions(), counts[0], counts[1]);
+        return new ChunkResult(counts[0], counts[1]);
+    }
+
+    /**
+     * Adds amounts to the stored positions, creating the positions that do not exist yet.
+     *
+     * @param amounts The amount to be added per position.
+     * @return The stored state of every written position.
+     */
+    @Transactional
+    public Map<SockKey, UpsertedRow> upsert(Map<SockKey, Integer> amounts) {
+        List<SockKey> keys = new ArrayList<>(amounts.keySet());
+        keys.sort(SockKey.ORDER);
+        amountCache.invalidate(keys.stream().map(SockKey::color).toList());
+        cottonIndex.ifPresent(index -> index.addAll(amounts));
+        Map<SockKey, UpsertedRow> result = new HashMap<>();
+        for (int from = 0; from < keys.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<SockKey> statementKeys = keys.subList(from, Math.min(keys.size(), from + MAX_ROWS_PER_STATEMENT));
+            Object[] args = new Object[statementKeys.size() * 3];
+            int i = 0;
+            for (SockKey key : statementKeys) {
+                args[i++] = key.color();
+                args[i++] = key.cottonPercentage();
+                args[i++] = amounts.get(key);
+            }
+            jdbcTemplate.query(buildInsert(statementKeys.size()), rs -> {
+                Sock sock = Sock.builder()
+                        .id(rs.getLong("id"))
+                        .color(rs.getString("color"))
+                        .cottonPercentage(rs.getInt("cotton_percentage"))
+                        .amount(rs.getInt("amount"))
+                        .build();
+                result.put(new SockKey(sock.getColor(), sock.getCottonPercentage()),
+                        new UpsertedRow(sock, rs.getBoolean("inserted")));
+            }, args);
+        }
+        return result;
+    }
+
+    private void countRows(Map<SockKey, UpsertedRow> upserted, Map<SockKey, Integer> rowCounts, long[] counts) {
+        upserted.forEach((key, row) -> {
+            int rows = rowCounts.get(key);
+            if (row.inserted()) {
+                counts[0]++;
+                counts[1] += rows - 1;
+            } else {
+                counts[1] += rows;
+            }
+        });
+    }
+
+    private static String buildInsert(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + INSERT_SUFFIX.length() + rows * 11);
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        return sql.append(INSERT_SUFFIX).toString();
+    }
+
+    /**
+     * The outcome of writing aggregated positions.
+     *
+     * @param inserted The number of positions created by the write.
+     * @param merged   The number of rows added to existing positions.
+     */
+    public record ChunkResult(long inserted, long merged) {
+    }
+
+    /**
+     * The stored state of a position after an upsert.
+     *
+     * @param sock     The stored socks.
+     * @param inserted Whether the position was created by the upsert.
+     */
+    public record UpsertedRow(Sock sock, boolean inserted) {
+    }
+}
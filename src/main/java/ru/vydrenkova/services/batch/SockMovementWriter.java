@@ -0,0 +1,183 @@
+package ru.vydrenkova.services.batch;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.index.CottonHistogramIndex;
+import ru.vydrenkova.services.ledger.SockKey;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * The SockMovementWriter class releases socks of many positions with one statement per step. Positions are
+ * locked in {@link SockKey#ORDER} first, like {@link SockBatchWriter} writes them, so concurrent batches cannot
+ * deadlock, and the caller can check the locked balances before anything is written. A single position is
+ * released with one statement that checks, decrements or deletes it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Profile("!reactive")
+public class SockMovementWriter {
+
+    private static final String LOCK_PREFIX = "SELECT s.id, s.color, s.cotton_percentage, s.amount FROM socks s " +
+            "JOIN (VALUES ";
+    private static final String LOCK_SUFFIX = ") AS v (color, cotton_percentage, ord) " +
+            "ON s.color = v.color AND s.cotton_percentage = v.cotton_percentage " +
+            "ORDER BY v.ord FOR UPDATE OF s";
+    private static final String DECREASE_PREFIX = "UPDATE socks s SET amount = s.amount - v.amount, version = s.version + 1 " +
+            "FROM (VALUES ";
+    private static final String DECREASE_SUFFIX = ") AS v (color, cotton_percentage, amount) " +
+            "WHERE s.color = v.color AND s.cotton_percentage = v.cotton_percentage AND s.amount >= v.amount " +
+            "RETURNING s.id, s.color, s.cotton_percentage, s.amount";
+
+    // The position is locked once; depending on the locked amount exactly one branch changes it, and the unchanged
+    // position is returned when it has too few socks
+    private static final String RELEASE = "WITH target AS (" +
+            "SELECT id, color, cotton_percentage, amount FROM socks " +
+            "WHERE color = ? AND cotton_percentage = ? FOR UPDATE" +
+            "), deleted AS (" +
+            "DELETE FROM socks s USING target t WHERE s.id = t.id AND t.amount = ? " +
+            "RETURNING s.id, s.color, s.cotton_percentage, 0 AS amount" +
+            "), decreased AS (" +
+            "UPDATE socks s SET amount = s.amount - ?, version = s.version + 1 FROM target t " +
+            "WHERE s.id = t.id AND t.amount > ? " +
+            "RETURNING s.id, s.color, s.cotton_percentage, s.amount" +
+            ") " +
+            "SELECT id, color, cotton_percentage, amount, TRUE AS released FROM deleted " +
+            "UNION ALL SELECT id, color, cotton_percentage, amount, TRUE FROM decreased " +
+            "UNION ALL SELECT id, color, cotton_percentage, amount, FALSE FROM target WHERE amount < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AmountCache amountCache;
+    private final Optional<CottonHistogramIndex> cottonIndex;
+
+    /**
+     * Locks the stored positions until the end of the current transaction.
+     *
+     * @param keys The positions to be locked.
+     * @return The stored state of every position that exists.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<SockKey, Sock> lock(Collection<SockKey> keys) {
+        List<SockKey> sortedKeys = new ArrayList<>(keys);
+        sortedKeys.sort(SockKey.ORDER);
+        Map<SockKey, Sock> result = new HashMap<>();
+        for (int from = 0; from < sortedKeys.size(); from += SockBatchWriter.MAX_ROWS_PER_STATEMENT) {
+            List<SockKey> statementKeys = sortedKeys.subList(from,
+                    Math.min(sortedKeys.size(), from + SockBatchWriter.MAX_ROWS_PER_STATEMENT));
+            Object[] args = new Object[statementKeys.size() * 2];
+            int i = 0;
+            for (SockKey key : statementKeys) {
+                args[i++] = key.color();
+                args[i++] = key.cottonPercentage();
+            }
+            jdbcTemplate.query(buildStatement(LOCK_PREFIX, row -> "(?, ?, " + row + ")", statementKeys.size(), LOCK_SUFFIX),
+                    rs -> {
+                        Sock sock = toSock(rs);
+                        result.put(new SockKey(sock.getColor(), sock.getCottonPercentage()), sock);
+                    }, args);
+        }
+        return result;
+    }
+
+    /**
+     * Subtracts amounts from the stored positions and deletes the positions that have no socks left. Positions
+     * whose amount is less than the requested one are left unchanged.
+     *
+     * @param amounts The amount to be subtracted per position.
+     * @return The stored state of every changed position.
+     */
+    @Transactional
+    public Map<SockKey, Sock> decrease(Map<SockKey, Integer> amounts) {
+        List<SockKey> keys = new ArrayList<>(amounts.keySet());
+        keys.sort(SockKey.ORDER);
+        Map<SockKey, Sock> result = new HashMap<>();
+        List<Long> emptyIds = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += SockBatchWriter.MAX_ROWS_PER_STATEMENT) {
+            List<SockKey> statementKeys = keys.subList(from, Math.min(keys.size(), from + SockBatchWriter.MAX_ROWS_PER_STATEMENT));
+            Object[] args = new Object[statementKeys.size() * 3];
+            int i = 0;
+            for (SockKey key : statementKeys) {
+                args[i++] = key.color();
+                args[i++] = key.cottonPercentage();
+                args[i++] = amounts.get(key);
+            }
+            jdbcTemplate.query(buildStatement(DECREASE_PREFIX, row -> "(?, ?, ?)", statementKeys.size(), DECREASE_SUFFIX),
+                    rs -> {
+                        Sock sock = toSock(rs);
+                        result.put(new SockKey(sock.getColor(), sock.getCottonPercentage()), sock);
+                        if (sock.getAmount() == 0) {
+                            emptyIds.add(sock.getId());
+                        }
+                    }, args);
+        }
+        if (!emptyIds.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM socks WHERE amount = 0 AND id IN (" +
+                    String.join(", ", Collections.nCopies(emptyIds.size(), "?")) + ")", emptyIds.toArray());
+        }
+        amountCache.invalidate(result.keySet().stream().map(SockKey::color).toList());
+        Map<SockKey, Integer> deltas = new HashMap<>();
+        result.keySet().forEach(key -> deltas.put(key, -amounts.get(key)));
+        cottonIndex.ifPresent(index -> index.addAll(deltas));
+        log.debug("Decreased {} of {} positions, deleted {} empty positions", result.size(), amounts.size(), emptyIds.size());
+        return result;
+    }
+
+    /**
+     * Subtracts an amount from a stored position in one statement, and deletes the position if no socks are left.
+     * A position whose amount is less than the requested one is left unchanged.
+     *
+     * @param key    The stock position.
+     * @param amount The amount to be subtracted.
+     * @return The outcome of the release, or an empty Optional if the position does not exist.
+     */
+    @Transactional
+    public Optional<Release> release(SockKey key, int amount) {
+        List<Release> releases = jdbcTemplate.query(RELEASE, (rs, row) -> new Release(toSock(rs), rs.getBoolean("released")),
+                key.color(), key.cottonPercentage(), amount, amount, amount, amount);
+        if (releases.isEmpty() || !releases.get(0).released()) {
+            return releases.stream().findFirst();
+        }
+        amountCache.invalidate(key.color());
+        cottonIndex.ifPresent(index -> index.add(key.color(), key.cottonPercentage(), -amount));
+        return Optional.of(releases.get(0));
+    }
+
+    private static Sock toSock(ResultSet rs) throws SQLException {
+        return Sock.builder()
+                .id(rs.getLong("id"))
+                .color(rs.getString("color"))
+                .cottonPercentage(rs.getInt("cotton_percentage"))
+                .amount(rs.getInt("amount"))
+                .build();
+    }
+
+    private static String buildStatement(String prefix, IntFunction<String> row, int rows, String suffix) {
+        StringBuilder sql = new StringBuilder(prefix.length() + suffix.length() + rows * 16);
+        sql.append(prefix);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(row.apply(i));
+        }
+        return sql.append(suffix).toString();
+    }
+
+    /**
+     * The outcome of releasing socks of one position.
+     *
+     * @param sock     The stored state of the position, after the release if it was applied and before it otherwise.
+     *                 The amount is 0 if the position was deleted.
+     * @param released Whether the position had enough socks.
+     */
+    public record Release(Sock sock, boolean released) {
+    }
+}
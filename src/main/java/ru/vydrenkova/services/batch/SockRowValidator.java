@@ -0,0 +1,58 @@
+package ru.vydrenkova.services.batch;
+
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+/**
+ * The SockRowValidator class checks the values of an imported row or a movement against the constraints of the socks table.
+ */
+public class SockRowValidator {
+
+    public static final String WRONG_COLUMNS = "Неверное количество столбцов";
+    public static final String EMPTY_MOVEMENT = "Не указаны параметры носков";
+    public static final String EMPTY_COLOR = "Не указан цвет";
+    public static final String INVALID_COTTON_PERCENTAGE = "Процент хлопка должен быть целым числом от "
+            + Constraints.MIN_COTTON_PERCENTAGE + " до " + Constraints.MAX_COTTON_PERCENTAGE;
+    public static final String INVALID_AMOUNT = "Количество должно быть целым числом не меньше " + Constraints.MIN_AMOUNT;
+    public static final String AMOUNT_OVERFLOW = "Суммарное количество носков одного вида не должно превышать "
+            + Integer.MAX_VALUE;
+
+    public static boolean isValid(String color, int cottonPercentage, int amount) {
+        return validate(color, cottonPercentage, amount) == null;
+    }
+
+    /**
+     * @return The reason why the row is invalid, or null if it is valid.
+     */
+    public static String validate(String color, int cottonPercentage, int amount) {
+        if (color.isBlank()) {
+            return EMPTY_COLOR;
+        }
+        if (cottonPercentage < Constraints.MIN_COTTON_PERCENTAGE || cottonPercentage > Constraints.MAX_COTTON_PERCENTAGE) {
+            return INVALID_COTTON_PERCENTAGE;
+        }
+        if (amount < Constraints.MIN_AMOUNT) {
+            return INVALID_AMOUNT;
+        }
+        return null;
+    }
+
+    /**
+     * @return The reason why the movement is invalid, or null if it is valid.
+     */
+    public static String validate(SockRequest sockRequest) {
+        if (sockRequest == null) {
+            return EMPTY_MOVEMENT;
+        }
+        if (sockRequest.getColor() == null) {
+            return EMPTY_COLOR;
+        }
+        if (sockRequest.getCottonPercentage() == null) {
+            return INVALID_COTTON_PERCENTAGE;
+        }
+        if (sockRequest.getAmount() == null) {
+            return INVALID_AMOUNT;
+        }
+        return validate(sockRequest.getColor(), sockRequest.getCottonPercentage(), sockRequest.getAmount());
+    }
+}
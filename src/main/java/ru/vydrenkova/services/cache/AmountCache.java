@@ -0,0 +1,147 @@
+package ru.vydrenkova.services.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vydrenkova.config.AmountCacheProperties;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The AmountCache class is a bounded read-through cache of socks amount queries.
+ *
+ * <p>Every color is hashed to a version counter, and an entry remembers the version of its color that was current
+ * before its value was loaded. A write to a color increments the version once its transaction has completed, which
+ * makes all entries of the color invalid at once. A load that overlaps a write keeps the old version, so its result
+ * is never served after the write has returned. Invalid entries are replaced on the next read or evicted by size.</p>
+ */
+@Slf4j
+@Component
+public class AmountCache {
+
+    private final boolean enabled;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLongArray versions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AmountCache(AmountCacheProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.versions = new AtomicLongArray(properties.getStripes());
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getExpireAfterWriteSeconds()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached amount of the query or loads and caches it.
+     *
+     * @param color            The color of the socks.
+     * @param operation        The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cottonPercentage The cotton percentage to filter socks.
+     * @param loader           The query to run on a miss.
+     * @return The amount of socks that match the query.
+     */
+    public long get(String color, String operation, Integer cottonPercentage, LongSupplier loader) {
+        if (!enabled) {
+            return loader.getAsLong();
+        }
+        long version = versions.get(stripe(color));
+        Key key = new Key(color, operation, cottonPercentage);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.version() == version) {
+            hits.increment();
+            return entry.amount();
+        }
+        misses.increment();
+        long amount = loader.getAsLong();
+        cache.put(key, new Entry(amount, version));
+        return amount;
+    }
+
+    /**
+     * Invalidates the cached amounts of a color when the current transaction completes,
+     * or at once if there is no transaction.
+     *
+     * @param color The color of the written socks.
+     */
+    public void invalidate(String color) {
+        invalidate(List.of(color));
+    }
+
+    /**
+     * Invalidates the cached amounts of the colors when the current transaction completes,
+     * or at once if there is no transaction.
+     *
+     * @param colors The colors of the written socks.
+     */
+    public void invalidate(Collection<String> colors) {
+        if (!enabled || colors.isEmpty()) {
+            return;
+        }
+        BitSet stripes = new BitSet(versions.length());
+        colors.forEach(color -> stripes.set(stripe(color)));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    increment(stripes);
+                }
+            });
+        } else {
+            increment(stripes);
+        }
+    }
+
+    /**
+     * Drops all cached amounts.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        log.info("Amount cache cleared");
+    }
+
+    /**
+     * @return The hit, miss and eviction counters and the current number of entries.
+     */
+    public Stats stats() {
+        cache.cleanUp();
+        return new Stats(hits.sum(), misses.sum(), cache.stats().evictionCount(), cache.estimatedSize());
+    }
+
+    private void increment(BitSet stripes) {
+        stripes.stream().forEach(versions::incrementAndGet);
+    }
+
+    private int stripe(String color) {
+        return Math.floorMod(color.hashCode(), versions.length());
+    }
+
+    private record Key(String color, String operation, Integer cottonPercentage) {
+    }
+
+    private record Entry(long amount, long version) {
+    }
+
+    /**
+     * The counters of the cache.
+     *
+     * @param hits      The number of queries answered from the cache.
+     * @param misses    The number of queries loaded from the database, including invalidated entries.
+     * @param evictions The number of entries evicted by size or age.
+     * @param size      The approximate number of cached entries.
+     */
+    public record Stats(long hits, long misses, long evictions, long size) {
+    }
+}
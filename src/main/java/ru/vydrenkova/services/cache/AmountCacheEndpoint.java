@@ -0,0 +1,28 @@
+package ru.vydrenkova.services.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the counters of the {@link AmountCache} as the {@code amountcache} actuator endpoint.
+ */
+@Component
+@Endpoint(id = "amountcache")
+@RequiredArgsConstructor
+public class AmountCacheEndpoint {
+
+    private final AmountCache amountCache;
+
+    @ReadOperation
+    public AmountCache.Stats stats() {
+        return amountCache.stats();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        amountCache.invalidateAll();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.vydrenkova.services.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the counters of the {@link AmountCache} as meters. The values are read from the cache when the meters
+ * are scraped, so the cache itself is not slowed down.
+ */
+@Component
+@RequiredArgsConstructor
+public class AmountCacheMetrics implements MeterBinder {
+
+    private final AmountCache amountCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("socks.cache.requests", amountCache, cache -> cache.stats().hits())
+                .description("Amount queries answered by the cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("socks.cache.requests", amountCache, cache -> cache.stats().misses())
+                .description("Amount queries answered by the cache")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("socks.cache.evictions", amountCache, cache -> cache.stats().evictions())
+                .description("Entries evicted from the amount cache by size or age")
+                .register(registry);
+        Gauge.builder("socks.cache.size", amountCache, cache -> cache.stats().size())
+                .description("Approximate number of entries in the amount cache")
+                .register(registry);
+    }
+}
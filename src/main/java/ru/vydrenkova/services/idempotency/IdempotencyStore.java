@@ -0,0 +1,197 @@
+package ru.vydrenkova.services.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.vydrenkova.config.IdempotencyProperties;
+import ru.vydrenkova.exceptions.IdempotencyKeyInProgressException;
+import ru.vydrenkova.exceptions.IdempotencyKeyMismatchException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The IdempotencyStore class makes movement requests safe to retry. The first request with an Idempotency-Key
+ * claims the key in the {@code idempotency_keys} table before it is executed and saves its response afterwards,
+ * so a retry replays the response instead of moving socks again. A retry that arrives while the first request is
+ * still running is refused, and a key reused for a different request is rejected.
+ *
+ * <p>Responses are also kept in memory for the configured time, so replaying a response this node has seen
+ * costs one hash lookup. Expired keys are deleted from the database at most once per cleanup interval.</p>
+ *
+ * <p>If the node fails between the movement and saving its response, the key stays claimed without a response
+ * until it expires: retries are refused rather than applied twice.</p>
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class IdempotencyStore {
+
+    private static final String CLAIM = "INSERT INTO idempotency_keys (idempotency_key, fingerprint, created_at) " +
+            "VALUES (?, ?, ?) ON CONFLICT (idempotency_key) DO NOTHING";
+    private static final String RECLAIM_EXPIRED = "UPDATE idempotency_keys SET fingerprint = ?, response = NULL, created_at = ? " +
+            "WHERE idempotency_key = ? AND created_at < ?";
+    private static final String SELECT = "SELECT fingerprint, response FROM idempotency_keys WHERE idempotency_key = ?";
+    private static final String SAVE_RESPONSE = "UPDATE idempotency_keys SET response = ? WHERE idempotency_key = ?";
+    private static final String RELEASE = "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND response IS NULL";
+    private static final String DELETE_EXPIRED = "DELETE FROM idempotency_keys WHERE created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties properties;
+    private final Duration ttl;
+    private final Cache<String, StoredResponse> recent;
+    private final AtomicLong nextCleanup = new AtomicLong(System.nanoTime());
+
+    public IdempotencyStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, IdempotencyProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.ttl = Duration.ofMinutes(properties.getTtlMinutes());
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Executes the action once per key and replays its response for later requests with the same key.
+     *
+     * @param key          The Idempotency-Key of the request, or null to execute the action unconditionally.
+     * @param operation    The name of the operation, so that a key cannot be reused across endpoints.
+     * @param request      The body of the request, which must be the same for every request with the key.
+     * @param responseType The type of the response.
+     * @param action       The action to be executed.
+     * @param <T>          The type of the response.
+     * @return The response of the action or the stored response of the first request with the key.
+     * @throws IdempotencyKeyMismatchException   if the key was used for a different request.
+     * @throws IdempotencyKeyInProgressException if the first request with the key has not completed yet.
+     */
+    public <T> T execute(String key, String operation, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key == null || !properties.isEnabled()) {
+            return action.get();
+        }
+        String fingerprint = fingerprint(operation, request);
+        StoredResponse cached = recent.getIfPresent(key);
+        if (cached != null) {
+            log.debug("Replaying cached response for idempotency key {}", key);
+            return replay(cached, fingerprint, responseType);
+        }
+        deleteExpiredIfDue();
+
+        Instant now = Instant.now();
+        if (!claim(key, fingerprint, now)) {
+            StoredResponse stored = load(key);
+            if (stored == null) {
+                // The key expired and was deleted between the claim and the lookup
+                return execute(key, operation, request, responseType, action);
+            }
+            if (stored.json() != null) {
+                recent.put(key, stored);
+            }
+            log.info("Replaying stored response for idempotency key {}", key);
+            return replay(stored, fingerprint, responseType);
+        }
+
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            jdbcTemplate.update(RELEASE, key);
+            throw e;
+        }
+        String json = toJson(response);
+        jdbcTemplate.update(SAVE_RESPONSE, json, key);
+        recent.put(key, new StoredResponse(fingerprint, response, json));
+        return response;
+    }
+
+    private boolean claim(String key, String fingerprint, Instant now) {
+        if (jdbcTemplate.update(CLAIM, key, fingerprint, Timestamp.from(now)) == 1) {
+            return true;
+        }
+        return jdbcTemplate.update(RECLAIM_EXPIRED, fingerprint, Timestamp.from(now), key,
+                Timestamp.from(now.minus(ttl))) == 1;
+    }
+
+    private StoredResponse load(String key) {
+        try {
+            return jdbcTemplate.queryForObject(SELECT, (rs, rowNum) ->
+                    new StoredResponse(rs.getString("fingerprint"), null, rs.getString("response")), key);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
+    }
+
+    private <T> T replay(StoredResponse stored, String fingerprint, Class<T> responseType) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyMismatchException("Ключ идемпотентности уже использован для другого запроса.");
+        }
+        if (responseType.isInstance(stored.value())) {
+            return responseType.cast(stored.value());
+        }
+        if (stored.json() == null) {
+            throw new IdempotencyKeyInProgressException("Запрос с этим ключом идемпотентности еще выполняется.");
+        }
+        try {
+            return objectMapper.readValue(stored.json(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response cannot be read", e);
+        }
+    }
+
+    private void deleteExpiredIfDue() {
+        long now = System.nanoTime();
+        long due = nextCleanup.get();
+        if (now - due < 0 || !nextCleanup.compareAndSet(due,
+                now + TimeUnit.MINUTES.toNanos(properties.getCleanupIntervalMinutes()))) {
+            return;
+        }
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED, Timestamp.from(Instant.now().minus(ttl)));
+        log.debug("Deleted {} expired idempotency keys", deleted);
+    }
+
+    private String fingerprint(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Request fingerprint cannot be calculated", e);
+        }
+    }
+
+    private String toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Idempotent response cannot be stored", e);
+        }
+    }
+
+    /**
+     * The response stored for a key.
+     *
+     * @param fingerprint The hash of the operation and the request that claimed the key.
+     * @param value       The response object if it was produced on this node, otherwise null.
+     * @param json        The serialized response, or null while the first request is running.
+     */
+    private record StoredResponse(String fingerprint, Object value, String json) {
+    }
+}
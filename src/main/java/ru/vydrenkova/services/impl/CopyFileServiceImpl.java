@@ -0,0 +1,365 @@
+package ru.vydrenkova.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.config.ImportProperties;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.exceptions.FileReadingException;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.InvalidCsvRowException;
+import ru.vydrenkova.services.FileService;
+import ru.vydrenkova.services.batch.ImportMetrics;
+import ru.vydrenkova.services.batch.ImportProgress;
+import ru.vydrenkova.services.batch.ParallelCsvParser;
+import ru.vydrenkova.services.batch.RejectedRows;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.index.CottonHistogramIndex;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.services.ledger.SockLedger;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The CopyFileServiceImpl class is an implementation of the FileService interface for very large files.
+ * The file is streamed into a staging table with {@code COPY FROM STDIN}, the rows are validated by the database,
+ * and the valid ones are merged into the socks table with one {@code INSERT ... SELECT ... GROUP BY ... ON CONFLICT}
+ * statement, so no row passes through the heap. Files are validated and spooled by {@link FileServiceImpl},
+ * which also processes the all-or-nothing batches.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(prefix = "socks.import", name = "loader", havingValue = "copy")
+@Profile("!reactive")
+public class CopyFileServiceImpl implements FileService {
+
+    private static final long HEADER_LINES = 1;
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final String BAD_COPY_FILE_FORMAT = "22P04";
+    private static final String NUMERIC_VALUE_OUT_OF_RANGE = "22003";
+    private static final Pattern COPY_LINE = Pattern.compile("line (\\d+)");
+
+    // Temporary tables are never written to the WAL, like unlogged ones, and are private to the import's session
+    private static final String CREATE_STAGING = "CREATE TEMPORARY TABLE socks_import_rows (" +
+            "line BIGINT GENERATED ALWAYS AS IDENTITY, color TEXT, cotton_percentage TEXT, amount TEXT) ON COMMIT DROP";
+    private static final String COPY = "COPY socks_import_rows (%s) FROM STDIN WITH (FORMAT csv, HEADER true)";
+    private static final String INT_PATTERN = "'^[+-]?[0-9]+$'";
+    // The same checks in the same order as FileServiceImpl applies them to a parsed record
+    private static final String REJECT_REASON = "CASE " +
+            "WHEN cotton_percentage IS NULL OR cotton_percentage !~ " + INT_PATTERN + " THEN ? " +
+            "WHEN cotton_percentage::numeric NOT BETWEEN -2147483648 AND 2147483647 THEN ? " +
+            "WHEN amount IS NULL OR amount !~ " + INT_PATTERN + " THEN ? " +
+            "WHEN amount::numeric NOT BETWEEN -2147483648 AND 2147483647 THEN ? " +
+            "WHEN color IS NULL OR btrim(color) = '' THEN ? " +
+            "WHEN cotton_percentage::numeric NOT BETWEEN " + Constraints.MIN_COTTON_PERCENTAGE + " AND " +
+            Constraints.MAX_COTTON_PERCENTAGE + " THEN ? " +
+            "WHEN amount::numeric < " + Constraints.MIN_AMOUNT + " THEN ? " +
+            "END";
+    private static final String CHECKED_ROWS = "SELECT line, color, cotton_percentage, amount, " + REJECT_REASON +
+            " AS reason FROM socks_import_rows";
+    private static final String REJECTED_ROWS = "SELECT line, reason FROM (" + CHECKED_ROWS + ") checked " +
+            "WHERE reason IS NOT NULL ORDER BY line";
+    private static final String POSITIONS = "SELECT color, cotton_percentage::int AS cotton_percentage, " +
+            "SUM(amount::int) AS amount FROM (" + CHECKED_ROWS + ") checked WHERE reason IS NULL " +
+            "GROUP BY color, cotton_percentage::int";
+    // SUM of int is bigint, so a position whose sum with the stored amount exceeds the int column is found before it
+    // is written
+    private static final String OVERFLOWING_POSITION = "SELECT positions.color, positions.cotton_percentage " +
+            "FROM (" + POSITIONS + ") positions LEFT JOIN socks " +
+            "ON socks.color = positions.color AND socks.cotton_percentage = positions.cotton_percentage " +
+            "WHERE positions.amount + COALESCE(socks.amount, 0) > " + Integer.MAX_VALUE + " LIMIT 1";
+    // Positions are written in SockKey.ORDER, like SockBatchWriter writes them, so concurrent imports cannot deadlock
+    private static final String MERGE = "INSERT INTO socks (color, cotton_percentage, amount) " +
+            "SELECT color, cotton_percentage, amount FROM (" + POSITIONS + ") positions " +
+            "ORDER BY color COLLATE \"C\", cotton_percentage " +
+            "ON CONFLICT (color, cotton_percentage) " +
+            "DO UPDATE SET amount = socks.amount + EXCLUDED.amount, version = socks.version + 1 " +
+            "RETURNING color, cotton_percentage, (xmax = 0) AS inserted";
+    private static final Object[] REASONS = {
+            SockRowValidator.INVALID_COTTON_PERCENTAGE, SockRowValidator.INVALID_COTTON_PERCENTAGE,
+            SockRowValidator.INVALID_AMOUNT, SockRowValidator.INVALID_AMOUNT,
+            SockRowValidator.EMPTY_COLOR, SockRowValidator.INVALID_COTTON_PERCENTAGE, SockRowValidator.INVALID_AMOUNT};
+
+    private final FileServiceImpl fileService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ImportProperties importProperties;
+    private final ParallelCsvParser parallelCsvParser;
+    private final ImportMetrics importMetrics;
+    private final AmountCache amountCache;
+    private final Optional<CottonHistogramIndex> cottonIndex;
+    private final Optional<SockLedger> sockLedger;
+
+    public CopyFileServiceImpl(FileServiceImpl fileService,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ImportProperties importProperties,
+                               ParallelCsvParser parallelCsvParser,
+                               ImportMetrics importMetrics,
+                               AmountCache amountCache,
+                               Optional<CottonHistogramIndex> cottonIndex,
+                               Optional<SockLedger> sockLedger) {
+        this.fileService = fileService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.importProperties = importProperties;
+        this.parallelCsvParser = parallelCsvParser;
+        this.importMetrics = importMetrics;
+        this.amountCache = amountCache;
+        this.cottonIndex = cottonIndex;
+        this.sockLedger = sockLedger;
+    }
+
+    /**
+     * Processes a batch of socks from a CSV file. The file is saved only if all of its rows are valid.
+     *
+     * @param file The CSV file containing the details of the socks to be processed.
+     * @return A SocksList containing the list of processed socks.
+     */
+    @Override
+    public SocksList processSocksBatch(MultipartFile file) {
+        return fileService.processSocksBatch(file);
+    }
+
+    /**
+     * Imports a batch of socks from a CSV file through a staging table. Rows with invalid values are skipped,
+     * and the first of them are reported with their line number and reason.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
+     * @throws InvalidCsvRowException if a row has a wrong number of columns, which COPY cannot skip.
+     */
+    @Override
+    public ImportSummary importSocksBatch(MultipartFile file) {
+        log.info("Importing socks batch with COPY from file: {}", file.getOriginalFilename());
+        long startTime = System.nanoTime();
+        Path spooled = spoolSocksBatch(file);
+        try {
+            ImportSummary summary = importSocksFile(spooled, ImportProgress.NONE, startTime);
+            log.info("Successfully imported socks with COPY from file: {}, rowsRead={}, positions={}, rejected={}, " +
+                            "durationMs={}", file.getOriginalFilename(), summary.getRowsRead(),
+                    summary.getPositionsWritten(), summary.getRejected(), summary.getDurationMs());
+            return summary;
+        } finally {
+            try {
+                Files.deleteIfExists(spooled);
+            } catch (IOException e) {
+                log.warn("Could not delete temporary file: {}", spooled, e);
+            }
+        }
+    }
+
+    /**
+     * Validates a CSV file and copies it to a temporary file that outlives the request.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return The path of the temporary file. The caller is responsible for deleting it.
+     */
+    @Override
+    public Path spoolSocksBatch(MultipartFile file) {
+        return fileService.spoolSocksBatch(file);
+    }
+
+    /**
+     * Imports a batch of socks from a spooled CSV file through a staging table in one transaction.
+     * Progress is reported once the whole file has been copied.
+     *
+     * @param file     The spooled CSV file with valid headers.
+     * @param progress The receiver of progress notifications, which may also cancel the import.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
+     * @throws InvalidCsvRowException if a row has a wrong number of columns, which COPY cannot skip.
+     * @throws IllegalAmountException if the amount of a position would exceed the maximal amount.
+     * @throws FileReadingException   if an error occurs while reading the file.
+     * @throws CancellationException  if the import was cancelled before its positions were written.
+     */
+    @Override
+    public ImportSummary importSocksFile(Path file, ImportProgress progress) {
+        return importSocksFile(file, progress, System.nanoTime());
+    }
+
+    private ImportSummary importSocksFile(Path file, ImportProgress progress, long startTime) {
+        List<String> headers;
+        long size;
+        try {
+            headers = parallelCsvParser.readHeaders(file);
+            size = Files.size(file);
+        } catch (IOException e) {
+            log.error("Error reading file: {}", file, e);
+            throw new FileReadingException("Ошибка при чтении файла.");
+        }
+
+        Set<SockKey> written = new HashSet<>();
+        Supplier<ImportSummary> importInTransaction = () -> transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(CREATE_STAGING);
+            long rowsRead = copy(file, headers);
+
+            RejectedRows rejectedRows = new RejectedRows(importProperties.getMaxReportedErrors());
+            jdbcTemplate.query(REJECTED_ROWS, rs -> {
+                rejectedRows.reject(rs.getLong("line") + HEADER_LINES, rs.getString("reason"));
+            }, REASONS);
+            progress.rangeParsed(size, rowsRead, rejectedRows.count());
+            if (progress.isCancelled()) {
+                throw new CancellationException("Import was cancelled");
+            }
+
+            checkAmounts(file);
+
+            long accepted = rowsRead - rejectedRows.count();
+            Set<String> colors = new HashSet<>();
+            long[] positions = new long[1];
+            SockBatchWriter.ChunkResult result = importMetrics.writeChunk(accepted, () -> {
+                long[] inserted = new long[1];
+                try {
+                    jdbcTemplate.query(MERGE, rs -> {
+                        positions[0]++;
+                        colors.add(rs.getString("color"));
+                        written.add(new SockKey(rs.getString("color"), rs.getInt("cotton_percentage")));
+                        if (rs.getBoolean("inserted")) {
+                            inserted[0]++;
+                        }
+                    }, REASONS);
+                } catch (DataIntegrityViolationException e) {
+                    // a concurrent write raised a position after the check
+                    if (e.getMostSpecificCause() instanceof SQLException sqlException
+                            && NUMERIC_VALUE_OUT_OF_RANGE.equals(sqlException.getSQLState())) {
+                        log.warn("Import of {} overflows the amount of a position: {}", file, e.getMessage());
+                        throw new IllegalAmountException(SockRowValidator.AMOUNT_OVERFLOW);
+                    }
+                    throw e;
+                }
+                return new SockBatchWriter.ChunkResult(inserted[0], accepted - inserted[0]);
+            });
+            amountCache.invalidate(colors);
+            cottonIndex.ifPresent(index -> index.addAll(deltas()));
+
+            return ImportSummary.builder()
+                    .rowsRead(rowsRead)
+                    .positionsWritten(positions[0])
+                    .inserted(result.inserted())
+                    .merged(result.merged())
+                    .rejected(rejectedRows.count())
+                    .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime))
+                    .errors(rejectedRows.errors())
+                    .errorsTruncated(rejectedRows.isTruncated())
+                    .build();
+        });
+        // The ledger cannot learn the merged positions before the merge, so movements wait for the whole import
+        ImportSummary summary = sockLedger.isPresent()
+                ? sockLedger.get().exclusively(importInTransaction, written)
+                : importInTransaction.get();
+        importMetrics.recordImport(ImportMetrics.COPY_MODE, summary);
+        return summary;
+    }
+
+    /**
+     * Streams the data lines of the file into the staging table on the connection of the current transaction.
+     *
+     * @return The number of copied rows.
+     */
+    private long copy(Path file, List<String> headers) {
+        String sql = String.format(COPY,
+                String.join(", ", headers.stream().map(CopyFileServiceImpl::stagingColumn).toList()));
+        Connection connection = DataSourceUtils.getConnection(dataSource());
+        try (InputStream in = Files.newInputStream(file)) {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, in, COPY_BUFFER_SIZE);
+        } catch (SQLException e) {
+            if (e instanceof PSQLException psqlException && BAD_COPY_FILE_FORMAT.equals(e.getSQLState())) {
+                long line = copyLine(psqlException.getServerErrorMessage());
+                log.warn("COPY rejected line {} of file {}: {}", line, file, e.getMessage());
+                throw new InvalidCsvRowException(line, SockRowValidator.WRONG_COLUMNS);
+            }
+            throw new UncategorizedSQLException("COPY", sql, e);
+        } catch (IOException e) {
+            log.error("Error reading file: {}", file, e);
+            throw new FileReadingException("Ошибка при чтении файла.");
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource());
+        }
+    }
+
+    /**
+     * Rejects the import if the valid rows of a position add up, together with the stored socks, to more than
+     * the int amount column can hold, like the row imports reject such rows.
+     */
+    private void checkAmounts(Path file) {
+        List<SockKey> overflowing = jdbcTemplate.query(OVERFLOWING_POSITION,
+                (rs, rowNum) -> new SockKey(rs.getString("color"), rs.getInt("cotton_percentage")), REASONS);
+        if (!overflowing.isEmpty()) {
+            log.warn("Import of {} overflows the amount of {}", file, overflowing.get(0));
+            throw new IllegalAmountException(SockRowValidator.AMOUNT_OVERFLOW);
+        }
+    }
+
+    /**
+     * @return The amounts added to every position by the import.
+     */
+    private Map<SockKey, Long> deltas() {
+        Map<SockKey, Long> deltas = new HashMap<>();
+        jdbcTemplate.query(POSITIONS, rs -> {
+            deltas.put(new SockKey(rs.getString("color"), rs.getInt("cotton_percentage")), rs.getLong("amount"));
+        }, REASONS);
+        return deltas;
+    }
+
+    private DataSource dataSource() {
+        return jdbcTemplate.getDataSource();
+    }
+
+    /**
+     * @return The line of the file reported in the context of a COPY error, or 0 if it is unknown.
+     */
+    private static long copyLine(ServerErrorMessage message) {
+        if (message == null || message.getWhere() == null) {
+            return 0;
+        }
+        Matcher matcher = COPY_LINE.matcher(message.getWhere());
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    private static String stagingColumn(String header) {
+        return switch (header) {
+            case Constraints.COLOR_CSV_HEADER_NAME -> "color";
+            case Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME -> "cotton_percentage";
+            case Constraints.AMOUNT_CSV_HEADER_NAME -> "amount";
+            default -> throw new IllegalArgumentException("Неизвестный заголовок: " + header);
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package ru.vydrenkova.services.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.vydrenkova.services.ExportService;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The ExportServiceImpl class is the implementation of the ExportService interface.
+ * Rows are written while they are read from the database and are never mapped to entities, so the export of
+ * any number of socks needs the same memory. Socks are exported in the order of the (color, cotton percentage) index,
+ * and the header names are the ones {@link FileServiceImpl} expects, so importing an export into an empty table and
+ * exporting it again gives the same bytes.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Profile("!reactive")
+public class ExportServiceImpl implements ExportService {
+
+    private static final String SELECT = "SELECT color, cotton_percentage AS \"" +
+            Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME + "\", amount FROM socks " +
+            "WHERE amount >= " + Constraints.MIN_AMOUNT + " ORDER BY color, cotton_percentage";
+    private static final String COPY = "COPY (" + SELECT + ") TO STDOUT WITH (FORMAT csv, HEADER true)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writes all stored socks to the output stream. The csv format is produced by {@code COPY TO STDOUT},
+     * the ndjson format is read from a database cursor in batches of {@link Constraints#STREAM_FETCH_SIZE} rows.
+     *
+     * @param format       The format of the export (csv or ndjson).
+     * @param outputStream The stream the export is written to. It is flushed but not closed.
+     * @throws IOException if the output stream cannot be written.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportSocks(String format, OutputStream outputStream) throws IOException {
+        log.info("Exporting socks as {}", format);
+        long rows = Constraints.NDJSON_EXPORT_FORMAT.equals(format)
+                ? exportNdjson(outputStream)
+                : exportCsv(outputStream);
+        outputStream.flush();
+        log.info("Finished exporting {} socks as {}", rows, format);
+    }
+
+    private long exportCsv(OutputStream outputStream) throws IOException {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(COPY, outputStream);
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("COPY", COPY, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private long exportNdjson(OutputStream outputStream) throws IOException {
+        long[] rows = new long[1];
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT);
+                statement.setFetchSize(Constraints.STREAM_FETCH_SIZE);
+                return statement;
+            }, rs -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeStringField(Constraints.COLOR_CSV_HEADER_NAME, rs.getString(1));
+                    generator.writeNumberField(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME, rs.getInt(2));
+                    generator.writeNumberField(Constraints.AMOUNT_CSV_HEADER_NAME, rs.getInt(3));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+}
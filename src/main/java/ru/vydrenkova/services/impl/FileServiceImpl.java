@@ -5,24 +5,46 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.config.ImportProperties;
+import ru.vydrenkova.dto.responses.ImportSummary;
 import ru.vydrenkova.dto.responses.SockResponse;
 import ru.vydrenkova.dto.responses.SocksList;
 import ru.vydrenkova.exceptions.EmptyFileException;
 import ru.vydrenkova.exceptions.FileReadingException;
+import ru.vydrenkova.exceptions.InvalidCsvRowException;
 import ru.vydrenkova.exceptions.WrongFormatException;
 import ru.vydrenkova.exceptions.WrongHeadersException;
 import ru.vydrenkova.models.Sock;
-import ru.vydrenkova.repositories.SockRepository;
 import ru.vydrenkova.services.FileService;
+import ru.vydrenkova.services.batch.ImportMetrics;
+import ru.vydrenkova.services.batch.ImportProgress;
+import ru.vydrenkova.services.batch.ParallelCsvParser;
+import ru.vydrenkova.services.batch.RejectedRows;
+import ru.vydrenkova.services.batch.SockAggregator;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.services.ledger.SockLedger;
 import ru.vydrenkova.utils.constraints.Constraints;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * The FileServiceImpl class is the implementation of the FileService interface.
@@ -35,24 +57,269 @@ import java.util.Objects;
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@Profile("!reactive")
 public class FileServiceImpl implements FileService {
 
-    private final SockRepository sockRepository;
+    private static final long HEADER_LINES = 1;
+    private static final CSVFormat HEADER_FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .build();
+
+    private final SockBatchWriter sockBatchWriter;
+    private final ImportProperties importProperties;
+    private final ParallelCsvParser parallelCsvParser;
+    private final ImportMetrics importMetrics;
+    private final Optional<SockLedger> sockLedger;
 
     /**
-     * Processes a batch of socks from a CSV file.
+     * Processes a batch of socks from a CSV file. The file is saved only if all of its rows are valid.
      *
      * @param file The CSV file containing the details of the socks to be processed.
      * @return A SocksList containing the list of processed socks.
+     * @throws EmptyFileException     if the file is empty.
+     * @throws WrongFormatException   if the file format is incorrect.
+     * @throws WrongHeadersException  if the file headers are incorrect.
+     * @throws InvalidCsvRowException if a row has invalid values.
+     * @throws FileReadingException   if an error occurs while reading the file.
+     */
+    @Override
+    public SocksList processSocksBatch(MultipartFile file) {
+        log.info("Processing socks batch from file: {}", file.getOriginalFilename());
+        checkFile(file);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
+             CSVParser csvParser = new CSVParser(reader, HEADER_FORMAT)) {
+
+            checkParserHeaders(csvParser);
+            Map<SockKey, Integer> amounts = new LinkedHashMap<>();
+            long line = HEADER_LINES;
+            for (CSVRecord csvRecord : csvParser) {
+                line = lineOf(csvParser, line);
+                Sock sock = processRecord(csvRecord, line);
+                SockKey key = new SockKey(sock.getColor(), sock.getCottonPercentage());
+                long amount = (long) amounts.getOrDefault(key, 0) + sock.getAmount();
+                if (amount > Integer.MAX_VALUE) {
+                    log.warn("Amount overflow at line {}: {}", line, key);
+                    throw new InvalidCsvRowException(line, SockRowValidator.AMOUNT_OVERFLOW);
+                }
+                amounts.put(key, (int) amount);
+            }
+            Map<SockKey, SockBatchWriter.UpsertedRow> savedSocks = writeThroughLedger(
+                    () -> sockBatchWriter.upsert(amounts), amounts.keySet());
+            log.info("Successfully processed and saved {} socks from file: {}", savedSocks.size(), file.getOriginalFilename());
+            return SocksList.builder()
+                    .sockList(amounts.keySet().stream()
+                            .map(key -> SockResponse.toResponse(savedSocks.get(key).sock()))
+                            .toList())
+                    .build();
+        } catch (IOException e) {
+            log.error("Error reading file: {}", file.getOriginalFilename(), e);
+            throw new FileReadingException("Ошибка при чтении файла.");
+        }
+    }
+
+    /**
+     * Imports a batch of socks from a CSV file. Rows are summed by color and cotton percentage in memory,
+     * so the database is written once per distinct position rather than once per row. The aggregate is written
+     * whenever it reaches the configured number of positions and committed in its own transaction. Rows with
+     * invalid values are skipped, and the first of them are reported with their line number and reason.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
      * @throws EmptyFileException    if the file is empty.
      * @throws WrongFormatException  if the file format is incorrect.
      * @throws WrongHeadersException if the file headers are incorrect.
      * @throws FileReadingException  if an error occurs while reading the file.
      */
     @Override
-    public SocksList processSocksBatch(MultipartFile file) {
-        log.info("Processing socks batch from file: {}", file.getOriginalFilename());
+    public ImportSummary importSocksBatch(MultipartFile file) {
+        log.info("Importing socks batch from file: {}", file.getOriginalFilename());
+        long startTime = System.nanoTime();
+        if (file.getSize() >= importProperties.getParallelThresholdBytes()) {
+            return importSpooledSocksBatch(file, startTime);
+        }
+        checkFile(file);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
+             CSVParser csvParser = new CSVParser(reader, HEADER_FORMAT)) {
+
+            checkParserHeaders(csvParser);
+            int chunkSize = importProperties.getChunkSize();
+            SockAggregator aggregator = new SockAggregator();
+            RejectedRows rejectedRows = new RejectedRows(importProperties.getMaxReportedErrors());
+            long rowsRead = 0;
+            long line = HEADER_LINES;
+            long positions = 0;
+            long inserted = 0;
+            long merged = 0;
+            for (CSVRecord csvRecord : csvParser) {
+                rowsRead++;
+                line = lineOf(csvParser, line);
+                Optional<Sock> sock = parseRecord(csvRecord, line, rejectedRows);
+                if (sock.isEmpty()) {
+                    continue;
+                }
+                if (!aggregator.add(sock.get().getColor(), sock.get().getCottonPercentage(), sock.get().getAmount())) {
+                    rejectedRows.reject(line, SockRowValidator.AMOUNT_OVERFLOW);
+                    continue;
+                }
+                if (aggregator.positions() == chunkSize) {
+                    SockBatchWriter.ChunkResult result = importMetrics.writeChunk(aggregator,
+                            () -> write(aggregator));
+                    positions += aggregator.positions();
+                    inserted += result.inserted();
+                    merged += result.merged();
+                    aggregator.clear();
+                }
+            }
+            if (aggregator.positions() > 0) {
+                SockBatchWriter.ChunkResult result = importMetrics.writeChunk(aggregator,
+                        () -> write(aggregator));
+                positions += aggregator.positions();
+                inserted += result.inserted();
+                merged += result.merged();
+            }
+
+            ImportSummary summary = ImportSummary.builder()
+                    .rowsRead(rowsRead)
+                    .positionsWritten(positions)
+                    .inserted(inserted)
+                    .merged(merged)
+                    .rejected(rejectedRows.count())
+                    .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime))
+                    .errors(rejectedRows.errors())
+                    .errorsTruncated(rejectedRows.isTruncated())
+                    .build();
+            importMetrics.recordImport(ImportMetrics.STREAM_MODE, summary);
+            log.info("Successfully imported socks from file: {}, rowsRead={}, positions={}, rejected={}, durationMs={}",
+                    file.getOriginalFilename(), rowsRead, positions, rejectedRows.count(), summary.getDurationMs());
+            return summary;
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Error reading file: {}", file.getOriginalFilename(), e);
+            throw new FileReadingException("Ошибка при чтении файла.");
+        }
+    }
+
+    private ImportSummary importSpooledSocksBatch(MultipartFile file, long startTime) {
+        Path spooled = spoolSocksBatch(file);
+        try {
+            ImportSummary summary = importSocksFile(spooled, ImportProgress.NONE, startTime);
+            log.info("Successfully imported spooled socks from file: {}, rowsRead={}, positions={}, rejected={}, durationMs={}",
+                    file.getOriginalFilename(), summary.getRowsRead(), summary.getPositionsWritten(), summary.getRejected(),
+                    summary.getDurationMs());
+            return summary;
+        } finally {
+            deleteQuietly(spooled);
+        }
+    }
+
+    /**
+     * Validates a CSV file and copies it to a temporary file that outlives the request.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return The path of the temporary file. The caller is responsible for deleting it.
+     * @throws EmptyFileException    if the file is empty.
+     * @throws WrongFormatException  if the file format is incorrect.
+     * @throws WrongHeadersException if the file headers are incorrect.
+     * @throws FileReadingException  if an error occurs while reading the file.
+     */
+    @Override
+    public Path spoolSocksBatch(MultipartFile file) {
+        checkFile(file);
+        Path spooled = null;
+        try {
+            spooled = Files.createTempFile("socks-import-", Constraints.FORMAT);
+            file.transferTo(spooled);
+            List<String> headers = parallelCsvParser.readHeaders(spooled);
+            if (!checkHeaders(headers)) {
+                log.warn("File has wrong headers: {}", headers);
+                throw new WrongHeadersException("В файле неправильные заголовки.");
+            }
+            log.debug("File {} spooled to {}", file.getOriginalFilename(), spooled);
+            return spooled;
+        } catch (IOException e) {
+            deleteQuietly(spooled);
+            log.error("Error reading file: {}", file.getOriginalFilename(), e);
+            throw new FileReadingException("Ошибка при чтении файла.");
+        } catch (RuntimeException e) {
+            deleteQuietly(spooled);
+            throw e;
+        }
+    }
+
+    /**
+     * Imports a batch of socks from a spooled CSV file. The file is parsed from memory-mapped ranges on
+     * the configured number of threads, and the aggregated positions are written in chunks of the configured
+     * number of positions, each committed in its own transaction like in the streaming import.
+     *
+     * @param file     The spooled CSV file with valid headers.
+     * @param progress The receiver of progress notifications, which may also cancel the import.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
+     * @throws FileReadingException  if an error occurs while reading the file.
+     * @throws CancellationException if the import was cancelled before its positions were written.
+     */
+    @Override
+    public ImportSummary importSocksFile(Path file, ImportProgress progress) {
+        return importSocksFile(file, progress, System.nanoTime());
+    }
+
+    private ImportSummary importSocksFile(Path file, ImportProgress progress, long startTime) {
+        try {
+            ParallelCsvParser.ParseResult parsed = parallelCsvParser.parse(file, importProperties.getParallelism(),
+                    importProperties.getMaxReportedErrors(), progress);
+            if (progress.isCancelled()) {
+                throw new CancellationException("Import was cancelled");
+            }
+            long[] counts = new long[2];
+            parsed.aggregator().forEachChunk(importProperties.getChunkSize(), chunk -> {
+                SockBatchWriter.ChunkResult result = importMetrics.writeChunk(chunk, () -> write(chunk));
+                counts[0] += result.inserted();
+                counts[1] += result.merged();
+            });
+
+            ImportSummary summary = ImportSummary.builder()
+                    .rowsRead(parsed.rowsRead())
+                    .positionsWritten((long) parsed.aggregator().positions())
+                    .inserted(counts[0])
+                    .merged(counts[1])
+                    .rejected(parsed.rejected())
+                    .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime))
+                    .errors(parsed.rejectedRows().errors())
+                    .errorsTruncated(parsed.rejectedRows().isTruncated())
+                    .build();
+            importMetrics.recordImport(ImportMetrics.MAPPED_MODE, summary);
+            return summary;
+        } catch (IOException e) {
+            log.error("Error reading file: {}", file, e);
+            throw new FileReadingException("Ошибка при чтении файла.");
+        }
+    }
 
+    private SockBatchWriter.ChunkResult write(SockAggregator aggregator) {
+        return writeThroughLedger(() -> sockBatchWriter.write(aggregator), aggregator.keys());
+    }
+
+    /**
+     * Runs a write while the ledger, if enabled, has flushed its pending movements and blocks new ones,
+     * so that the ledger reloads the written positions instead of keeping balances the import has changed.
+     */
+    private <T> T writeThroughLedger(Supplier<T> write, Collection<SockKey> keys) {
+        return sockLedger.isPresent() ? sockLedger.get().exclusively(write, keys) : write.get();
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary file: {}", path, e);
+        }
+    }
+
+    private void checkFile(MultipartFile file) {
         if (file.isEmpty()) {
             log.warn("File is empty: {}", file.getOriginalFilename());
             throw new EmptyFileException("Файл пустой.");
@@ -61,23 +328,12 @@ public class FileServiceImpl implements FileService {
             log.warn("File has wrong format: {}", file.getOriginalFilename());
             throw new WrongFormatException("Некорректный формат данных.");
         }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
-             CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
-
-            if (!checkHeaders(csvParser.getHeaderNames())) {
-                log.warn("File has wrong headers: {}", csvParser.getHeaderNames());
-                throw new WrongHeadersException("В файле неправильные заголовки.");
-            }
-            List<Sock> savedSocks = sockRepository.saveAll(
-                    csvParser.stream().map(this::processRecord).toList());
-            log.info("Successfully processed and saved {} socks from file: {}", savedSocks.size(), file.getOriginalFilename());
-            return SocksList.builder()
-                    .sockList(savedSocks.stream().map(SockResponse::toResponse).toList())
-                    .build();
-        } catch (IOException e) {
-            log.error("Error reading file: {}", file.getOriginalFilename(), e);
-            throw new FileReadingException("Ошибка при чтении файла.");
+    private void checkParserHeaders(CSVParser csvParser) {
+        if (!checkHeaders(csvParser.getHeaderNames())) {
+            log.warn("File has wrong headers: {}", csvParser.getHeaderNames());
+            throw new WrongHeadersException("В файле неправильные заголовки.");
         }
     }
 
@@ -97,11 +353,27 @@ public class FileServiceImpl implements FileService {
         return isValid;
     }
 
-    private Sock processRecord(CSVRecord csvRecord){
-        log.debug("Processing CSV record: {}", csvRecord);
+    /**
+     * Returns the line on which the last read record ends. The parser does not count the end of the last line
+     * if it has no line break.
+     */
+    private long lineOf(CSVParser csvParser, long previousLine) {
+        return Math.max(csvParser.getCurrentLineNumber(), previousLine + 1);
+    }
+
+    private Sock processRecord(CSVRecord csvRecord, long line){
+        if (!csvRecord.isConsistent()) {
+            throw new InvalidCsvRowException(line, SockRowValidator.WRONG_COLUMNS);
+        }
         String color = csvRecord.get(Constraints.COLOR_CSV_HEADER_NAME);
-        Integer cottonPercentage = Integer.parseInt(csvRecord.get(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME));
-        Integer amount = Integer.parseInt(csvRecord.get(Constraints.AMOUNT_CSV_HEADER_NAME));
+        int cottonPercentage = parseNumber(csvRecord.get(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME), line,
+                SockRowValidator.INVALID_COTTON_PERCENTAGE);
+        int amount = parseNumber(csvRecord.get(Constraints.AMOUNT_CSV_HEADER_NAME), line,
+                SockRowValidator.INVALID_AMOUNT);
+        String reason = SockRowValidator.validate(color, cottonPercentage, amount);
+        if (reason != null) {
+            throw new InvalidCsvRowException(line, reason);
+        }
 
         return Sock.builder()
                 .color(color)
@@ -109,4 +381,22 @@ public class FileServiceImpl implements FileService {
                 .amount(amount)
                 .build();
     }
+
+    private int parseNumber(String value, long line, String reason) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidCsvRowException(line, reason);
+        }
+    }
+
+    private Optional<Sock> parseRecord(CSVRecord csvRecord, long line, RejectedRows rejectedRows) {
+        try {
+            return Optional.of(processRecord(csvRecord, line));
+        } catch (InvalidCsvRowException e) {
+            log.debug("Rejected CSV record: {}", e.getMessage());
+            rejectedRows.reject(e.getLine(), e.getReason());
+            return Optional.empty();
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package ru.vydrenkova.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.config.ImportProperties;
+import ru.vydrenkova.dto.responses.ImportJobResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.exceptions.NoSuchImportJobException;
+import ru.vydrenkova.exceptions.TooManyImportJobsException;
+import ru.vydrenkova.services.FileService;
+import ru.vydrenkova.services.ImportJobService;
+import ru.vydrenkova.services.jobs.ImportJob;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * The ImportJobServiceImpl class is the implementation of the ImportJobService interface.
+ * Jobs run on a bounded executor with a fixed number of threads and a bounded queue, which limits
+ * the number of concurrent imports per node. Finished jobs are kept for the configured retention time.
+ * When virtual threads are enabled with {@code spring.threads.virtual.enabled}, the job threads are virtual,
+ * so a job waiting for the database does not hold a platform thread. Parsing stays on its own worker pool.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Slf4j
+@Service
+@Profile("!reactive")
+public class ImportJobServiceImpl implements ImportJobService {
+
+    private final FileService fileService;
+    private final ImportProperties importProperties;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobServiceImpl(FileService fileService, ImportProperties importProperties, Environment environment) {
+        this.fileService = fileService;
+        this.importProperties = importProperties;
+        ImportProperties.Jobs settings = importProperties.getJobs();
+        this.executor = new ThreadPoolExecutor(settings.getMaxConcurrent(), settings.getMaxConcurrent(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                Threading.VIRTUAL.isActive(environment)
+                        ? Thread.ofVirtual().name("socks-import-", 1).factory()
+                        : Thread.ofPlatform().name("socks-import-", 1).factory());
+    }
+
+    /**
+     * Validates and spools a CSV file and queues it for import. A full queue is detected before the file is spooled,
+     * so a rejected submission does not copy it.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return An ImportJobResponse with the ID of the queued job.
+     * @throws TooManyImportJobsException if the queue of import jobs is full.
+     */
+    @Override
+    public ImportJobResponse submit(MultipartFile file) {
+        evictExpiredJobs();
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw rejected(file);
+        }
+        Path spooled = fileService.spoolSocksBatch(file);
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename(), spooled, file.getSize());
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            // the queue was filled by a concurrent submission while the file was spooled
+            jobs.remove(job.getId());
+            deleteQuietly(spooled);
+            throw rejected(file);
+        }
+        log.info("Import job {} queued for file: {}", job.getId(), file.getOriginalFilename());
+        return job.toResponse();
+    }
+
+    /**
+     * Retrieves the state and progress of an import job.
+     *
+     * @param id The ID of the job.
+     * @return An ImportJobResponse with the current state of the job.
+     * @throws NoSuchImportJobException if there is no job with the ID.
+     */
+    @Override
+    public ImportJobResponse getJob(String id) {
+        return findJob(id).toResponse();
+    }
+
+    /**
+     * Cancels an import job. A queued job is cancelled immediately, a running job stops before its next step.
+     *
+     * @param id The ID of the job.
+     * @return An ImportJobResponse with the state of the job after cancellation was requested.
+     * @throws NoSuchImportJobException if there is no job with the ID.
+     */
+    @Override
+    public ImportJobResponse cancel(String id) {
+        ImportJob job = findJob(id);
+        if (job.cancel()) {
+            executor.purge();
+            deleteQuietly(job.getFile());
+        }
+        log.info("Cancellation requested for import job {}", id);
+        return job.toResponse();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(ImportJob::cancel);
+        executor.shutdown();
+    }
+
+    private void run(ImportJob job) {
+        if (!job.start()) {
+            return;
+        }
+        log.info("Import job {} started", job.getId());
+        try {
+            ImportSummary summary = fileService.importSocksFile(job.getFile(), job);
+            job.complete(summary);
+            log.info("Import job {} completed: rowsRead={}, rejected={}, durationMs={}",
+                    job.getId(), summary.getRowsRead(), summary.getRejected(), summary.getDurationMs());
+        } catch (CancellationException e) {
+            job.markCancelled();
+            log.info("Import job {} cancelled", job.getId());
+        } catch (RuntimeException e) {
+            job.fail(e.getMessage());
+            log.error("Import job {} failed", job.getId(), e);
+        } finally {
+            deleteQuietly(job.getFile());
+        }
+    }
+
+    private TooManyImportJobsException rejected(MultipartFile file) {
+        log.warn("Import job for file {} rejected: queue is full", file.getOriginalFilename());
+        return new TooManyImportJobsException("Слишком много задач загрузки, повторите попытку позже.");
+    }
+
+    private ImportJob findJob(String id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            log.warn("No such import job: {}", id);
+            throw new NoSuchImportJobException("Нет задачи загрузки с id = " + id);
+        }
+        return job;
+    }
+
+    private void evictExpiredJobs() {
+        long retention = TimeUnit.MINUTES.toNanos(importProperties.getJobs().getRetentionMinutes());
+        long now = System.nanoTime();
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && now - job.getFinishedAt() > retention);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary file: {}", path, e);
+        }
+    }
+}
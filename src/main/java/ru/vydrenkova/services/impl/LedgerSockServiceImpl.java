@@ -0,0 +1,219 @@
+package ru.vydrenkova.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.MovementBatchResult;
+import ru.vydrenkova.dto.responses.MovementResult;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.NoSuchSockException;
+import ru.vydrenkova.services.SockService;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.services.ledger.SockLedger;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * The LedgerSockServiceImpl class is an implementation of the SockService interface that accepts income and
+ * outcome movements through the in-memory {@link SockLedger} instead of writing them to the database directly.
+ * Reads are delegated to {@link SockServiceImpl} and the movements that have not been flushed yet are added to
+ * their results, so they observe every acknowledged movement without flushing. Writes that bypass the ledger flush
+ * pending movements first and block movements until they complete.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Slf4j
+@Primary
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "socks.ledger", name = "enabled", havingValue = "true")
+@Profile("!reactive")
+public class LedgerSockServiceImpl implements SockService {
+    private final SockServiceImpl sockService;
+    private final SockLedger sockLedger;
+
+    /**
+     * Retrieves the total quantity of socks based on filtering criteria, including pending movements.
+     *
+     * @param color            The color of the socks.
+     * @param operation        The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cottonPercentage The cotton percentage to filter socks.
+     * @return An AmountResponse containing the total quantity of socks that match the criteria.
+     */
+    @Override
+    public AmountResponse getSocksAmount(String color, String operation, Integer cottonPercentage) {
+        try (SockLedger.PendingDeltas pending = sockLedger.holdFlushes()) {
+            AmountResponse stored = sockService.getSocksAmount(color, operation, cottonPercentage);
+            return AmountResponse.builder()
+                    .amount(stored.getAmount() + pending.sum(color, matcher(operation, cottonPercentage)))
+                    .build();
+        }
+    }
+
+    /**
+     * Registers the arrival of socks in the ledger.
+     *
+     * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @return A SockResponse containing the live state of the socks.
+     */
+    @Override
+    public SockResponse addSocks(SockRequest sockRequest) {
+        log.info("Adding socks through ledger: {}", sockRequest);
+        SockLedger.Snapshot snapshot = sockLedger.income(toKey(sockRequest), sockRequest.getAmount());
+        return toResponse(sockRequest, snapshot);
+    }
+
+    /**
+     * Registers the release of socks in the ledger.
+     *
+     * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @return A SockResponse containing the live state of the socks, or an empty response if no socks are left.
+     */
+    @Override
+    public SockResponse removeSocks(SockRequest sockRequest) {
+        log.info("Removing socks through ledger: {}", sockRequest);
+        SockLedger.Snapshot snapshot = sockLedger.outcome(toKey(sockRequest), sockRequest.getAmount());
+        if (snapshot.amount() == 0) {
+            return new SockResponse();
+        }
+        return toResponse(sockRequest, snapshot);
+    }
+
+    /**
+     * Applies a batch of movements. A best-effort batch is registered in the ledger movement by movement, and every
+     * applied movement reports the live state of its socks right after it. An all-or-nothing batch is written to the
+     * database in one transaction after flushing pending movements, while other movements are blocked.
+     *
+     * @param direction The direction of the movements (income or outcome).
+     * @param mode      The mode of the batch (all-or-nothing or best-effort).
+     * @param movements The movements, each containing the color, cotton percentage, and amount of the socks.
+     * @return A MovementBatchResult containing the result of every movement.
+     */
+    @Override
+    public MovementBatchResult applyMovements(String direction, String mode, List<SockRequest> movements) {
+        if (Constraints.ALL_OR_NOTHING_MODE_NAME.equals(mode)) {
+            return sockLedger.exclusively(() -> sockService.applyMovements(direction, mode, movements));
+        }
+        log.info("Applying {} {} movements through ledger", movements.size(), direction);
+        List<MovementResult> results = new ArrayList<>(movements.size());
+        for (int i = 0; i < movements.size(); i++) {
+            SockRequest movement = movements.get(i);
+            String error = SockRowValidator.validate(movement);
+            if (error != null) {
+                results.add(MovementResult.rejected(i, error));
+                continue;
+            }
+            try {
+                results.add(MovementResult.applied(i, Constraints.INCOME_DIRECTION_NAME.equals(direction)
+                        ? addSocks(movement)
+                        : removeSocks(movement)));
+            } catch (IllegalAmountException | NoSuchSockException e) {
+                results.add(MovementResult.rejected(i, e.getMessage()));
+            }
+        }
+        return MovementBatchResult.of(results, false);
+    }
+
+    /**
+     * Updates the details of socks after flushing pending movements. Movements are blocked until the update completes.
+     *
+     * @param id          The ID of the socks to be updated.
+     * @param sockRequest The request containing the updated details of the socks.
+     * @return A SockResponse containing the updated details of the socks.
+     */
+    @Override
+    public SockResponse updateSocks(Long id, SockRequest sockRequest) {
+        return sockLedger.exclusively(() -> sockService.updateSocks(id, sockRequest));
+    }
+
+    /**
+     * Retrieves a page of filtered and sorted socks with the amounts including pending movements. Socks that
+     * pending movements have used up are left out; positions created by pending movements appear after the next flush.
+     *
+     * @param from     The minimum cotton percentage.
+     * @param to       The maximum cotton percentage.
+     * @param sortedBy The field to sort the socks by (color or cotton).
+     * @param size     The maximum number of socks on the page.
+     * @param cursor   The cursor returned with the previous page, or null for the first page.
+     * @return A SocksList containing the page of filtered and sorted socks and the cursor of the next page.
+     */
+    @Override
+    public SocksList getSocksByFilterSorted(Integer from, Integer to, String sortedBy, Integer size, String cursor) {
+        try (SockLedger.PendingDeltas pending = sockLedger.holdFlushes()) {
+            SocksList page = sockService.getSocksByFilterSorted(from, to, sortedBy, size, cursor);
+            List<SockResponse> socks = new ArrayList<>(page.getSockList().size());
+            for (SockResponse sock : page.getSockList()) {
+                withPending(sock, pending).ifPresent(socks::add);
+            }
+            page.setSockList(socks);
+            if (page.getTotalAmount() != null) {
+                page.setTotalAmount(page.getTotalAmount() + pending.sum(cotton -> cotton >= from && cotton <= to));
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Streams filtered and sorted socks with the amounts including pending movements. Flushes are held off only until
+     * the first socks are read, when the snapshot of the stream is taken, so a long stream does not hold them up.
+     *
+     * @param from     The minimum cotton percentage.
+     * @param to       The maximum cotton percentage.
+     * @param sortedBy The field to sort the socks by (color or cotton).
+     * @param consumer The receiver of the socks.
+     */
+    @Override
+    public void streamSocksByFilterSorted(Integer from, Integer to, String sortedBy, Consumer<SockResponse> consumer) {
+        try (SockLedger.PendingDeltas pending = sockLedger.holdFlushes()) {
+            sockService.streamSocksByFilterSorted(from, to, sortedBy, sock -> {
+                pending.detach();
+                withPending(sock, pending).ifPresent(consumer);
+            });
+        }
+    }
+
+    private Optional<SockResponse> withPending(SockResponse sock, SockLedger.PendingDeltas pending) {
+        long amount = sock.getAmount() + pending.delta(new SockKey(sock.getColor(), sock.getCottonPercentage()));
+        if (amount == 0) {
+            return Optional.empty();
+        }
+        sock.setAmount(Math.toIntExact(amount));
+        return Optional.of(sock);
+    }
+
+    private static IntPredicate matcher(String operation, int cottonPercentage) {
+        return switch (operation) {
+            case Constraints.MORE_THAN_OPERATION_NAME -> cotton -> cotton > cottonPercentage;
+            case Constraints.LESS_THAN_OPERATION_NAME -> cotton -> cotton < cottonPercentage;
+            default -> cotton -> cotton == cottonPercentage;
+        };
+    }
+
+    private SockKey toKey(SockRequest sockRequest) {
+        return new SockKey(sockRequest.getColor(), sockRequest.getCottonPercentage());
+    }
+
+    private SockResponse toResponse(SockRequest sockRequest, SockLedger.Snapshot snapshot) {
+        return SockResponse.builder()
+                .id(snapshot.id())
+                .color(sockRequest.getColor())
+                .cottonPercentage(sockRequest.getCottonPercentage())
+                .amount(Math.toIntExact(snapshot.amount()))
+                .build();
+    }
+}
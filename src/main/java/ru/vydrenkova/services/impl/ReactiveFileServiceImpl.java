@@ -0,0 +1,243 @@
+package ru.vydrenkova.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vydrenkova.config.ImportProperties;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.exceptions.EmptyFileException;
+import ru.vydrenkova.exceptions.FileReadingException;
+import ru.vydrenkova.exceptions.WrongFormatException;
+import ru.vydrenkova.exceptions.WrongHeadersException;
+import ru.vydrenkova.repositories.ReactiveSockRepository;
+import ru.vydrenkova.services.ReactiveFileService;
+import ru.vydrenkova.services.batch.RejectedRows;
+import ru.vydrenkova.services.batch.SockAggregator;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ReactiveFileServiceImpl class is the implementation of the ReactiveFileService interface.
+ * It imports the CSV file while it is being uploaded: the parts of the request body are decoded into lines as they
+ * arrive, and aggregated chunks are written one after another, each in its own transaction.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+@Profile("reactive")
+public class ReactiveFileServiceImpl implements ReactiveFileService {
+
+    private final ReactiveSockRepository sockRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final ImportProperties importProperties;
+
+    /**
+     * Imports a batch of socks from a CSV file. Rows are summed by color and cotton percentage in memory and written
+     * whenever the aggregate reaches the configured number of positions. Rows with invalid values are skipped, and
+     * the first of them are reported with their line number and reason. Every line is parsed as one record, so
+     * quoted values spanning several lines are not supported.
+     *
+     * @param file The CSV file containing the details of the socks to be imported.
+     * @return An ImportSummary with the number of read, inserted, merged and rejected rows.
+     * @throws EmptyFileException    if the file is empty.
+     * @throws WrongFormatException  if the file format is incorrect.
+     * @throws WrongHeadersException if the file headers are incorrect.
+     * @throws FileReadingException  if an error occurs while reading the file.
+     */
+    @Override
+    public Mono<ImportSummary> importSocksBatch(FilePart file) {
+        log.info("Importing socks batch from file: {}", file.filename());
+        if (!checkFormat(file.filename())) {
+            log.warn("File has wrong format: {}", file.filename());
+            return Mono.error(new WrongFormatException("Некорректный формат данных."));
+        }
+        long startTime = System.nanoTime();
+        ImportState state = new ImportState(importProperties.getMaxReportedErrors());
+        int chunkSize = importProperties.getChunkSize();
+
+        Flux<String> lines = StringDecoder.textPlainOnly()
+                .decode(file.content(), ResolvableType.forClass(String.class), null, null);
+        return lines
+                .<SockAggregator>handle((line, sink) -> {
+                    SockAggregator chunk = state.accept(line);
+                    if (chunk.positions() == chunkSize) {
+                        sink.next(chunk);
+                        state.aggregator = new SockAggregator();
+                    }
+                })
+                .concatWith(Mono.defer(() -> {
+                    if (!state.headersRead) {
+                        log.warn("File is empty: {}", file.filename());
+                        return Mono.error(new EmptyFileException("Файл пустой."));
+                    }
+                    return state.aggregator.positions() > 0 ? Mono.just(state.aggregator) : Mono.empty();
+                }))
+                .concatMap(chunk -> transactionalOperator.transactional(writeChunk(chunk))
+                        .doOnNext(result -> state.positions += chunk.positions()), 1)
+                .doOnNext(result -> {
+                    state.inserted += result.inserted();
+                    state.merged += result.merged();
+                })
+                .then(Mono.fromSupplier(() -> ImportSummary.builder()
+                        .rowsRead(state.rowsRead)
+                        .positionsWritten(state.positions)
+                        .inserted(state.inserted)
+                        .merged(state.merged)
+                        .rejected(state.rejectedRows.count())
+                        .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime))
+                        .errors(state.rejectedRows.errors())
+                        .errorsTruncated(state.rejectedRows.isTruncated())
+                        .build()))
+                .doOnNext(summary -> log.info("Successfully imported socks from file: {}, rowsRead={}, positions={}, " +
+                                "rejected={}, durationMs={}", file.filename(), summary.getRowsRead(),
+                        summary.getPositionsWritten(), summary.getRejected(), summary.getDurationMs()))
+                .onErrorMap(e -> e instanceof IOException || e instanceof UncheckedIOException, e -> {
+                    log.error("Error reading file: {}", file.filename(), e);
+                    return new FileReadingException("Ошибка при чтении файла.");
+                });
+    }
+
+    private Mono<SockBatchWriter.ChunkResult> writeChunk(SockAggregator chunk) {
+        Map<SockKey, Integer> amounts = new HashMap<>();
+        Map<SockKey, Integer> rowCounts = new HashMap<>();
+        chunk.forEachSorted((color, cottonPercentage, amount, rows) -> {
+            SockKey key = new SockKey(color, cottonPercentage);
+            // the aggregator keeps every position within int
+            amounts.put(key, (int) amount);
+            rowCounts.put(key, rows);
+        });
+        return sockRepository.upsert(amounts)
+                .reduce(new long[2], (counts, row) -> {
+                    int rows = rowCounts.get(new SockKey(row.sock().getColor(), row.sock().getCottonPercentage()));
+                    if (row.inserted()) {
+                        counts[0]++;
+                        counts[1] += rows - 1;
+                    } else {
+                        counts[1] += rows;
+                    }
+                    return counts;
+                })
+                .map(counts -> new SockBatchWriter.ChunkResult(counts[0], counts[1]))
+                .doOnNext(result -> log.debug("{} rows written as {} positions: inserted={}, merged={}",
+                        chunk.rows(), chunk.positions(), result.inserted(), result.merged()));
+    }
+
+    private boolean checkFormat(String fileName) {
+        boolean isValid = !Objects.equals(fileName, null) && fileName.endsWith(Constraints.FORMAT);
+        log.debug("File format check result: {} for file: {}", isValid, fileName);
+        return isValid;
+    }
+
+    /**
+     * The progress of one import. Lines arrive one at a time in order, so the state needs no synchronization.
+     */
+    private static final class ImportState {
+        private final RejectedRows rejectedRows;
+        private SockAggregator aggregator = new SockAggregator();
+        private boolean headersRead;
+        private int colorColumn;
+        private int cottonPercentageColumn;
+        private int amountColumn;
+        private long line;
+        private long rowsRead;
+        private long positions;
+        private long inserted;
+        private long merged;
+
+        private ImportState(int maxReportedErrors) {
+            this.rejectedRows = new RejectedRows(maxReportedErrors);
+        }
+
+        /**
+         * Checks the header line or adds a row to the current chunk.
+         *
+         * @return The current chunk.
+         */
+        private SockAggregator accept(String text) {
+            line++;
+            if (text.isEmpty()) {
+                return aggregator;
+            }
+            CSVRecord csvRecord = parse(text);
+            if (!headersRead) {
+                readHeaders(csvRecord.stream().toList());
+                return aggregator;
+            }
+            rowsRead++;
+            if (csvRecord.size() != Constraints.HEADERS_AMOUNT) {
+                rejectedRows.reject(line, SockRowValidator.WRONG_COLUMNS);
+                return aggregator;
+            }
+            String color = csvRecord.get(colorColumn);
+            Integer cottonPercentage = parseNumber(csvRecord.get(cottonPercentageColumn));
+            Integer amount = parseNumber(csvRecord.get(amountColumn));
+            String reason = Objects.equals(cottonPercentage, null) ? SockRowValidator.INVALID_COTTON_PERCENTAGE
+                    : Objects.equals(amount, null) ? SockRowValidator.INVALID_AMOUNT
+                    : SockRowValidator.validate(color, cottonPercentage, amount);
+            if (reason != null) {
+                rejectedRows.reject(line, reason);
+                return aggregator;
+            }
+            if (!aggregator.add(color, cottonPercentage, amount)) {
+                rejectedRows.reject(line, SockRowValidator.AMOUNT_OVERFLOW);
+            }
+            return aggregator;
+        }
+
+        private void readHeaders(List<String> headers) {
+            boolean isValid = headers.size() == Constraints.HEADERS_AMOUNT &&
+                    headers.contains(Constraints.COLOR_CSV_HEADER_NAME) &&
+                    headers.contains(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME) &&
+                    headers.contains(Constraints.AMOUNT_CSV_HEADER_NAME);
+            log.debug("Headers check result: {} for headers: {}", isValid, headers);
+            if (!isValid) {
+                log.warn("File has wrong headers: {}", headers);
+                throw new WrongHeadersException("В файле неправильные заголовки.");
+            }
+            colorColumn = headers.indexOf(Constraints.COLOR_CSV_HEADER_NAME);
+            cottonPercentageColumn = headers.indexOf(Constraints.COTTON_PERCENTAGE_CSV_HEADER_NAME);
+            amountColumn = headers.indexOf(Constraints.AMOUNT_CSV_HEADER_NAME);
+            headersRead = true;
+        }
+
+        private static CSVRecord parse(String text) {
+            try (CSVParser parser = CSVParser.parse(text, CSVFormat.DEFAULT)) {
+                return parser.getRecords().get(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static Integer parseNumber(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
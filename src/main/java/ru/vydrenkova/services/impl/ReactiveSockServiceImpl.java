@@ -0,0 +1,238 @@
+package ru.vydrenkova.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import ru.vydrenkova.config.UpdateRetryProperties;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.exceptions.ConcurrentUpdateException;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.InvalidCursorException;
+import ru.vydrenkova.exceptions.NoSuchSockException;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.ReactiveSockRepository;
+import ru.vydrenkova.services.ReactiveSockService;
+import ru.vydrenkova.utils.constraints.Constraints;
+import ru.vydrenkova.utils.sorts.SockCursor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The ReactiveSockServiceImpl class is the implementation of the ReactiveSockService interface.
+ * It follows {@link SockServiceImpl}, but every database call returns a publisher, so a request holds no thread
+ * while it waits for the database. The amount cache and the cotton histogram index are not used in this profile.
+ *
+ * @author Kristina Vydrenkova
+ * @version 1.0
+ * @since 20.12.2024
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveSockServiceImpl implements ReactiveSockService {
+    private final ReactiveSockRepository sockRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final UpdateRetryProperties retryProperties;
+
+    /**
+     * Retrieves the total quantity of socks based on filtering criteria with a single SUM query.
+     *
+     * @param color            The color of the socks.
+     * @param operation        The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cottonPercentage The cotton percentage to filter socks.
+     * @return An AmountResponse containing the total quantity of socks that match the criteria.
+     */
+    @Override
+    public Mono<AmountResponse> getSocksAmount(String color, String operation, Integer cottonPercentage) {
+        log.debug("Getting socks amount for color={}, operation={}, cottonPercentage={}", color, operation, cottonPercentage);
+
+        return sockRepository.sumAmount(color, operation, cottonPercentage)
+                .doOnNext(totalAmount -> log.debug("Found total amount: {}", totalAmount))
+                .map(totalAmount -> AmountResponse.builder()
+                        .amount(totalAmount)
+                        .build());
+    }
+
+    /**
+     * Adds a new batch of socks to the inventory with one atomic upsert.
+     *
+     * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
+     * @return A SockResponse containing the details of the added socks.
+     */
+    @Override
+    public Mono<SockResponse> addSocks(SockRequest sockRequest) {
+        log.info("Adding socks: {}", sockRequest);
+
+        return sockRepository.increaseAmount(sockRequest.getColor(), sockRequest.getCottonPercentage(), sockRequest.getAmount())
+                .map(SockResponse::toResponse)
+                .doOnNext(response -> log.info("Socks added successfully: {}", response));
+    }
+
+    /**
+     * Removes a batch of socks from the inventory. The amount is checked and subtracted by one conditional update,
+     * and the socks are deleted in the same transaction if none are left.
+     *
+     * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
+     * @return A SockResponse containing the details of the removed socks.
+     * @throws IllegalAmountException if the requested amount exceeds the available amount.
+     * @throws NoSuchSockException    if the socks are not found in the inventory.
+     */
+    @Override
+    public Mono<SockResponse> removeSocks(SockRequest sockRequest) {
+        log.info("Removing socks: {}", sockRequest);
+
+        Mono<SockResponse> removal = sockRepository.decreaseAmount(
+                        sockRequest.getColor(),
+                        sockRequest.getCottonPercentage(),
+                        sockRequest.getAmount())
+                .switchIfEmpty(Mono.defer(() -> sockRepository
+                        .findByColorAndCottonPercentage(sockRequest.getColor(), sockRequest.getCottonPercentage())
+                        .flatMap(sock -> {
+                            log.warn("Illegal amount: requested={}, available={}", sockRequest.getAmount(), sock.getAmount());
+                            return Mono.<Sock>error(new IllegalAmountException("Носков на складе меньше."));
+                        })
+                        .switchIfEmpty(Mono.error(() -> {
+                            log.warn("No such socks: {}", sockRequest);
+                            return new NoSuchSockException("На складе нет таких носков.");
+                        }))))
+                .flatMap(sock -> {
+                    if (sock.getAmount() == 0) {
+                        log.info("Deleting sock: {}", sock);
+                        return sockRepository.deleteIfEmpty(sock.getId()).thenReturn(new SockResponse());
+                    }
+                    return Mono.just(SockResponse.toResponse(sock));
+                })
+                .doOnNext(response -> log.info("Socks removed successfully: {}", response));
+        return transactionalOperator.transactional(removal);
+    }
+
+    /**
+     * Updates the details of socks in the inventory. The socks are written with a version check, and an update
+     * that lost a race with a concurrent write is resubscribed after a growing pause, without blocking a thread.
+     * If the new color and cotton percentage belong to other socks, the updated socks are merged into them
+     * in the same transaction.
+     *
+     * @param id          The ID of the socks to be updated.
+     * @param sockRequest The request containing the updated details of the socks.
+     * @return A SockResponse containing the updated details of the socks, or of the socks they were merged into.
+     * @throws NoSuchSockException       if the socks are not found in the inventory.
+     * @throws ConcurrentUpdateException if every attempt conflicted with a concurrent write.
+     */
+    @Override
+    public Mono<SockResponse> updateSocks(Long id, SockRequest sockRequest) {
+        log.info("Updating socks with id={}, request={}", id, sockRequest);
+
+        return Mono.defer(() -> transactionalOperator.transactional(updateOnce(id, sockRequest)))
+                .retryWhen(Retry.backoff(retryProperties.getMaxAttempts() - 1,
+                                Duration.ofMillis(retryProperties.getInitialBackoffMs()))
+                        .maxBackoff(Duration.ofMillis(retryProperties.getMaxBackoffMs()))
+                        .filter(e -> e instanceof OptimisticLockingFailureException
+                                || e instanceof DataIntegrityViolationException)
+                        .doBeforeRetry(signal -> log.debug("Attempt {} to update socks with id={} conflicted: {}",
+                                signal.totalRetries() + 1, id, signal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, signal) -> {
+                            log.warn("Giving up updating socks with id={} after {} attempts", id, signal.totalRetries() + 1);
+                            return new ConcurrentUpdateException("Носки с id = " + id + " одновременно изменяются другим запросом.");
+                        }));
+    }
+
+    private Mono<SockResponse> updateOnce(Long id, SockRequest sockRequest) {
+        return sockRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> {
+                    log.warn("No such socks with id={}", id);
+                    return new NoSuchSockException("На складе нет носков с id = " + id);
+                }))
+                .flatMap(sock -> {
+                    String color = Objects.equals(sockRequest.getColor(), null) ? sock.getColor() : sockRequest.getColor();
+                    int cottonPercentage = Objects.equals(sockRequest.getCottonPercentage(), null)
+                            ? sock.getCottonPercentage() : sockRequest.getCottonPercentage();
+                    int amount = Objects.equals(sockRequest.getAmount(), null) ? sock.getAmount() : sockRequest.getAmount();
+
+                    Mono<Sock> existing = color.equals(sock.getColor()) && cottonPercentage == sock.getCottonPercentage()
+                            ? Mono.empty()
+                            : sockRepository.findByColorAndCottonPercentage(color, cottonPercentage);
+                    return existing
+                            .flatMap(target -> {
+                                log.info("Merging socks with id={} into socks with id={}", id, target.getId());
+                                target.setAmount(target.getAmount() + amount);
+                                return sockRepository.delete(sock).then(sockRepository.update(target));
+                            })
+                            .switchIfEmpty(Mono.defer(() -> {
+                                sock.setColor(color);
+                                sock.setCottonPercentage(cottonPercentage);
+                                sock.setAmount(amount);
+                                return sockRepository.update(sock);
+                            }));
+                })
+                .doOnNext(updatedSock -> log.info("Socks updated successfully: {}", updatedSock))
+                .map(SockResponse::toResponse);
+    }
+
+    /**
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
+     * Pages are selected by the position of the last sock of the previous page (sort field and id).
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @param size      The maximum number of socks on the page, at most {@link Constraints#MAX_PAGE_SIZE}.
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @return A SocksList containing the page of filtered and sorted socks and the cursor of the next page.
+     * @throws InvalidCursorException if the cursor is malformed.
+     */
+    @Override
+    public Mono<SocksList> getSocksByFilterSorted(Integer from, Integer to, String sortedBy, Integer size, String cursor) {
+        log.info("Getting socks by filter: from={}, to={}, sortedBy={}, size={}, cursor={}", from, to, sortedBy, size, cursor);
+
+        int pageSize = Objects.equals(size, null) ? Constraints.MAX_PAGE_SIZE : Math.min(size, Constraints.MAX_PAGE_SIZE);
+        Flux<Sock> slice = Objects.equals(cursor, null)
+                ? sockRepository.findSlice(from, to, sortedBy, null, pageSize + 1)
+                : Mono.fromCallable(() -> SockCursor.decode(cursor))
+                        .flatMapMany(after -> sockRepository.findSlice(from, to, sortedBy, after, pageSize + 1));
+        return slice.collectList()
+                .map(socks -> {
+                    List<Sock> socksList = socks;
+                    boolean hasNext = socksList.size() > pageSize;
+                    if (hasNext) {
+                        socksList = socksList.subList(0, pageSize);
+                    }
+                    log.info("Found {} socks, hasNext={}", socksList.size(), hasNext);
+                    return SocksList.builder()
+                            .sockList(socksList.stream().map(SockResponse::toResponse).toList())
+                            .nextCursor(hasNext ? SockCursor.of(socksList.get(pageSize - 1)).encode() : null)
+                            .build();
+                });
+    }
+
+    /**
+     * Streams all socks filtered by cotton percentage range and sorted by a specified field. The socks are read
+     * in batches of {@link Constraints#STREAM_FETCH_SIZE} rows, and the next batch is only requested when the client
+     * has consumed the previous one.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @return The filtered and sorted socks.
+     */
+    @Override
+    public Flux<SockResponse> streamSocksByFilterSorted(Integer from, Integer to, String sortedBy) {
+        log.info("Streaming socks by filter: from={}, to={}, sortedBy={}", from, to, sortedBy);
+
+        return sockRepository.streamAll(from, to, sortedBy, Constraints.STREAM_FETCH_SIZE)
+                .map(SockResponse::toResponse)
+                .doOnComplete(() -> log.info("Finished streaming socks by filter: from={}, to={}", from, to));
+    }
+}
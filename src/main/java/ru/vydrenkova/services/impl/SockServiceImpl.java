@@ -2,24 +2,42 @@ package ru.vydrenkova.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Sort;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vydrenkova.config.UpdateRetryProperties;
 import ru.vydrenkova.dto.requests.SockRequest;
 import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.MovementBatchResult;
+import ru.vydrenkova.dto.responses.MovementResult;
 import ru.vydrenkova.dto.responses.SockResponse;
 import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.exceptions.ConcurrentUpdateException;
 import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.InvalidCursorException;
 import ru.vydrenkova.exceptions.NoSuchSockException;
 import ru.vydrenkova.models.Sock;
 import ru.vydrenkova.repositories.SockRepository;
 import ru.vydrenkova.services.SockService;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.batch.SockMovementWriter;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.index.CottonHistogramIndex;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.utils.constraints.Constraints;
+import ru.vydrenkova.utils.sorts.SockCursor;
 import ru.vydrenkova.utils.sorts.SockSort;
 import ru.vydrenkova.utils.specifications.SockSpecification;
 
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * The SockServiceImpl class is the implementation of the SockService interface.
@@ -33,11 +51,19 @@ import java.util.Optional;
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@Profile("!reactive")
 public class SockServiceImpl implements SockService {
     private final SockRepository sockRepository;
+    private final AmountCache amountCache;
+    private final Optional<CottonHistogramIndex> cottonIndex;
+    private final SockBatchWriter sockBatchWriter;
+    private final SockMovementWriter sockMovementWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final UpdateRetryProperties retryProperties;
 
     /**
-     * Retrieves the total quantity of socks based on filtering criteria.
+     * Retrieves the total quantity of socks based on filtering criteria. The amount is read from the cotton
+     * histogram index when it is enabled; otherwise results are cached until socks of the color are written.
      *
      * @param color           The color of the socks.
      * @param operation       The operation to filter socks (moreThan, lessThan, or equal).
@@ -46,13 +72,22 @@ public class SockServiceImpl implements SockService {
      */
     @Override
     public AmountResponse getSocksAmount(String color, String operation, Integer cottonPercentage) {
-        log.info("Getting socks amount for color={}, operation={}, cottonPercentage={}", color, operation, cottonPercentage);
+        log.debug("Getting socks amount for color={}, operation={}, cottonPercentage={}", color, operation, cottonPercentage);
 
-        Specification<Sock> spec = Specification
-                .where(SockSpecification.hasColor(color))
-                .and(SockSpecification.hasCottonPercentage(operation, cottonPercentage));
-        int totalAmount = sockRepository.findAll(spec).stream().mapToInt(Sock::getAmount).sum();
-        log.info("Found total amount: {}", totalAmount);
+        if (cottonIndex.isPresent()) {
+            long totalAmount = cottonIndex.get().amount(color, operation, cottonPercentage);
+            log.debug("Found total amount in index: {}", totalAmount);
+            return AmountResponse.builder()
+                    .amount(totalAmount)
+                    .build();
+        }
+        long totalAmount = amountCache.get(color, operation, cottonPercentage, () -> {
+            Specification<Sock> spec = Specification
+                    .where(SockSpecification.hasColor(color))
+                    .and(SockSpecification.hasCottonPercentage(operation, cottonPercentage));
+            return sockRepository.sumAmount(spec);
+        });
+        log.debug("Found total amount: {}", totalAmount);
 
         return AmountResponse.builder()
                 .amount(totalAmount)
@@ -60,30 +95,26 @@ public class SockServiceImpl implements SockService {
     }
 
     /**
-     * Adds a new batch of socks to the inventory.
+     * Adds a new batch of socks to the inventory with one upsert that returns the stored socks.
      *
      * @param sockRequest The request containing details of the socks to be added (color, cotton percentage, and amount).
      * @return A SockResponse containing the details of the added socks.
      */
     @Override
+    @Transactional
     public SockResponse addSocks(SockRequest sockRequest) {
         log.info("Adding socks: {}", sockRequest);
 
-        Optional<Sock> sockOptional = findSock(sockRequest);
-        Sock sock;
-        if (sockOptional.isPresent()) {
-            sock = sockOptional.get();
-            sock.setAmount(sock.getAmount() + sockRequest.getAmount());
-        } else {
-            sock = createNewSock(sockRequest);
-        }
-        SockResponse response = SockResponse.toResponse(sockRepository.save(sock));
+        SockKey key = toKey(sockRequest);
+        Sock sock = sockBatchWriter.upsert(Map.of(key, sockRequest.getAmount())).get(key).sock();
+        SockResponse response = SockResponse.toResponse(sock);
         log.info("Socks added successfully: {}", response);
         return response;
     }
 
     /**
-     * Removes a batch of socks from the inventory.
+     * Removes a batch of socks from the inventory with one statement that checks the stored amount, decrements it
+     * and deletes the socks if none are left.
      *
      * @param sockRequest The request containing details of the socks to be removed (color, cotton percentage, and amount).
      * @return A SockResponse containing the details of the removed socks.
@@ -91,110 +122,265 @@ public class SockServiceImpl implements SockService {
      * @throws NoSuchSockException    if the socks are not found in the inventory.
      */
     @Override
+    @Transactional
     public SockResponse removeSocks(SockRequest sockRequest) {
         log.info("Removing socks: {}", sockRequest);
 
-        Optional<Sock> sockOptional = findSock(sockRequest);
-        if (sockOptional.isPresent()) {
-            Sock sock = sockOptional.get();
-            if (sock.getAmount() < sockRequest.getAmount()) {
-                log.warn("Illegal amount: requested={}, available={}", sockRequest.getAmount(), sock.getAmount());
-                throw new IllegalAmountException("Носков на складе меньше.");
-            } else if (sock.getAmount().equals(sockRequest.getAmount())) {
-                return deleteSock(sock);
-            } else {
-                return decreaseAmount(sockRequest, sock);
-            }
-        } else {
+        Optional<SockMovementWriter.Release> release = sockMovementWriter.release(toKey(sockRequest), sockRequest.getAmount());
+        if (release.isEmpty()) {
             log.warn("No such socks: {}", sockRequest);
             throw new NoSuchSockException("На складе нет таких носков.");
         }
+        Sock sock = release.get().sock();
+        if (!release.get().released()) {
+            log.warn("Illegal amount: requested={}, available={}", sockRequest.getAmount(), sock.getAmount());
+            throw new IllegalAmountException("Носков на складе меньше.");
+        }
+        if (sock.getAmount() == 0) {
+            log.info("Deleted sock: {}", sock);
+            return new SockResponse();
+        }
+        SockResponse response = SockResponse.toResponse(sock);
+        log.info("Socks removed successfully: {}", response);
+        return response;
+    }
+
+    /**
+     * Applies a batch of income or outcome movements in one transaction. Movements of the same position are
+     * combined, and the positions are written with multi-row statements in {@link SockKey#ORDER}, so concurrent
+     * batches cannot deadlock. For outcome the positions are locked first, and every movement is checked against
+     * the balance left by the movements before it.
+     *
+     * @param direction The direction of the movements (income or outcome).
+     * @param mode      The mode of the batch (all-or-nothing or best-effort).
+     * @param movements The movements, each containing the color, cotton percentage, and amount of the socks.
+     * @return A MovementBatchResult containing the result of every movement and, for applied movements,
+     *         the state of their socks after the batch.
+     */
+    @Override
+    @Transactional
+    public MovementBatchResult applyMovements(String direction, String mode, List<SockRequest> movements) {
+        log.info("Applying {} {} movements in {} mode", movements.size(), direction, mode);
+
+        boolean income = Constraints.INCOME_DIRECTION_NAME.equals(direction);
+        Map<SockKey, Long> balances = new HashMap<>();
+        if (!income) {
+            Set<SockKey> keys = new HashSet<>();
+            for (SockRequest movement : movements) {
+                if (SockRowValidator.validate(movement) == null) {
+                    keys.add(toKey(movement));
+                }
+            }
+            sockMovementWriter.lock(keys).forEach((key, sock) -> balances.put(key, sock.getAmount().longValue()));
+        }
+
+        MovementResult[] results = new MovementResult[movements.size()];
+        Map<SockKey, Integer> amounts = new HashMap<>();
+        boolean rejected = false;
+        for (int i = 0; i < movements.size(); i++) {
+            SockRequest movement = movements.get(i);
+            String error = SockRowValidator.validate(movement);
+            if (error == null && (long) amounts.getOrDefault(toKey(movement), 0) + movement.getAmount() > Integer.MAX_VALUE) {
+                error = SockRowValidator.AMOUNT_OVERFLOW;
+            }
+            if (error == null && !income) {
+                error = withdraw(balances, toKey(movement), movement.getAmount());
+            }
+            if (error != null) {
+                results[i] = MovementResult.rejected(i, error);
+                rejected = true;
+            } else {
+                amounts.merge(toKey(movement), movement.getAmount(), Integer::sum);
+            }
+        }
+        if (rejected && Constraints.ALL_OR_NOTHING_MODE_NAME.equals(mode)) {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = MovementResult.skipped(i);
+                }
+            }
+            log.warn("Movement batch rejected, nothing applied");
+            return MovementBatchResult.of(Arrays.asList(results), true);
+        }
+
+        Map<SockKey, SockResponse> written = new HashMap<>();
+        if (income && !amounts.isEmpty()) {
+            sockBatchWriter.upsert(amounts).forEach((key, row) -> written.put(key, SockResponse.toResponse(row.sock())));
+        } else if (!amounts.isEmpty()) {
+            sockMovementWriter.decrease(amounts).forEach((key, sock) ->
+                    written.put(key, sock.getAmount() == 0 ? new SockResponse() : SockResponse.toResponse(sock)));
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = MovementResult.applied(i, written.get(toKey(movements.get(i))));
+            }
+        }
+        MovementBatchResult result = MovementBatchResult.of(Arrays.asList(results), false);
+        log.info("Movement batch applied: applied={}, rejected={}", result.getApplied(), result.getRejected());
+        return result;
     }
 
     /**
-     * Updates the details of socks in the inventory.
+     * Updates the details of socks in the inventory. The socks are written with a version check, and an update
+     * that lost a race with a concurrent write is retried after a growing pause. If the new color and cotton
+     * percentage belong to other socks, the updated socks are merged into them in the same transaction.
      *
      * @param id          The ID of the socks to be updated.
      * @param sockRequest The request containing the updated details of the socks.
-     * @return A SockResponse containing the updated details of the socks.
-     * @throws NoSuchSockException if the socks are not found in the inventory.
+     * @return A SockResponse containing the updated details of the socks, or of the socks they were merged into.
+     * @throws NoSuchSockException       if the socks are not found in the inventory.
+     * @throws IllegalAmountException    if the merged amount exceeds the maximal amount of a position.
+     * @throws ConcurrentUpdateException if every attempt conflicted with a concurrent write.
      */
     @Override
     public SockResponse updateSocks(Long id, SockRequest sockRequest) {
         log.info("Updating socks with id={}, request={}", id, sockRequest);
 
-        Optional<Sock> sock = sockRepository.findById(id);
-        if (sock.isPresent()) {
-            Sock updatedSock = updateParameters(sockRequest, sock.get());
-            log.info("Socks updated successfully: {}", updatedSock);
-            return SockResponse.toResponse(updatedSock);
-        } else {
+        long backoffMs = retryProperties.getInitialBackoffMs();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> updateOnce(id, sockRequest));
+            } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+                if (attempt >= retryProperties.getMaxAttempts()) {
+                    log.warn("Giving up updating socks with id={} after {} attempts", id, attempt);
+                    throw new ConcurrentUpdateException("Носки с id = " + id + " одновременно изменяются другим запросом.");
+                }
+                log.debug("Attempt {} to update socks with id={} conflicted: {}", attempt, id, e.getMessage());
+                pause(id, backoffMs);
+                backoffMs = Math.min(backoffMs * 2, retryProperties.getMaxBackoffMs());
+            }
+        }
+    }
+
+    private SockResponse updateOnce(Long id, SockRequest sockRequest) {
+        Sock sock = sockRepository.findById(id).orElseThrow(() -> {
             log.warn("No such socks with id={}", id);
-            throw new NoSuchSockException("На складе нет носков с id = " + id);
+            return new NoSuchSockException("На складе нет носков с id = " + id);
+        });
+        String oldColor = sock.getColor();
+        int oldCottonPercentage = sock.getCottonPercentage();
+        long oldAmount = sock.getAmount();
+        String color = Objects.equals(sockRequest.getColor(), null) ? oldColor : sockRequest.getColor();
+        int cottonPercentage = Objects.equals(sockRequest.getCottonPercentage(), null)
+                ? oldCottonPercentage : sockRequest.getCottonPercentage();
+        int amount = Objects.equals(sockRequest.getAmount(), null) ? sock.getAmount() : sockRequest.getAmount();
+
+        // Looked up before the socks are changed, so that the query does not flush the conflicting key
+        Optional<Sock> existing = color.equals(oldColor) && cottonPercentage == oldCottonPercentage
+                ? Optional.empty()
+                : sockRepository.findByColorAndCottonPercentage(color, cottonPercentage);
+        Sock updatedSock;
+        if (existing.isPresent()) {
+            long mergedAmount = (long) existing.get().getAmount() + amount;
+            if (mergedAmount > Integer.MAX_VALUE) {
+                log.warn("Merging socks with id={} into socks with id={} overflows amount: {}",
+                        id, existing.get().getId(), mergedAmount);
+                throw new IllegalAmountException(SockRowValidator.AMOUNT_OVERFLOW);
+            }
+            log.info("Merging socks with id={} into socks with id={}", id, existing.get().getId());
+            sockRepository.delete(sock);
+            existing.get().setAmount((int) mergedAmount);
+            updatedSock = sockRepository.save(existing.get());
+        } else {
+            updatedSock = updateParameters(sockRequest, sock);
+        }
+        sockRepository.flush();
+
+        amountCache.invalidate(List.of(oldColor, color));
+        cottonIndex.ifPresent(index -> {
+            index.add(oldColor, oldCottonPercentage, -oldAmount);
+            index.add(color, cottonPercentage, amount);
+        });
+        log.info("Socks updated successfully: {}", updatedSock);
+        return SockResponse.toResponse(updatedSock);
+    }
+
+    private void pause(Long id, long backoffMs) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMs / 2, backoffMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException("Носки с id = " + id + " одновременно изменяются другим запросом.");
         }
     }
 
     /**
-     * Retrieves a list of socks filtered by cotton percentage range and sorted by a specified field.
+     * Retrieves a page of socks filtered by cotton percentage range and sorted by a specified field.
+     * Pages are selected by the position of the last sock of the previous page (sort field and id) rather than
+     * by an offset, so every page costs the same however deep it is.
      *
      * @param from      The minimum cotton percentage.
      * @param to        The maximum cotton percentage.
      * @param sortedBy  The field to sort the socks by (color or cotton).
-     * @return A SocksList containing the list of filtered and sorted socks.
+     * @param size      The maximum number of socks on the page, at most {@link Constraints#MAX_PAGE_SIZE}.
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @return A SocksList containing the page of filtered and sorted socks, the cursor of the next page and,
+     *         when the cotton histogram index is enabled, the total amount of socks in the range.
+     * @throws InvalidCursorException if the cursor is malformed.
      */
     @Override
-    public SocksList getSocksByFilterSorted(Integer from, Integer to, String sortedBy) {
-        log.info("Getting socks by filter: from={}, to={}, sortedBy={}", from, to, sortedBy);
+    public SocksList getSocksByFilterSorted(Integer from, Integer to, String sortedBy, Integer size, String cursor) {
+        log.info("Getting socks by filter: from={}, to={}, sortedBy={}, size={}, cursor={}", from, to, sortedBy, size, cursor);
 
-        List<Sock> socksList;
+        int pageSize = Objects.equals(size, null) ? Constraints.MAX_PAGE_SIZE : Math.min(size, Constraints.MAX_PAGE_SIZE);
         Specification<Sock> specification = SockSpecification.cottonPercentageBetween(from, to);
-        if (!Objects.equals(sortedBy, null)) {
-            Sort sort = SockSort.byField(sortedBy);
-            socksList = sockRepository.findAll(specification, sort);
-        } else {
-            socksList = sockRepository.findAll(specification);
+        if (!Objects.equals(cursor, null)) {
+            specification = specification.and(SockSpecification.after(sortedBy, SockCursor.decode(cursor)));
+        }
+        List<Sock> socksList = sockRepository.findSlice(specification, SockSort.keyset(sortedBy), pageSize + 1);
+        boolean hasNext = socksList.size() > pageSize;
+        if (hasNext) {
+            socksList = socksList.subList(0, pageSize);
         }
-        log.info("Found socks: {}", socksList);
+        log.info("Found {} socks, hasNext={}", socksList.size(), hasNext);
         return SocksList.builder()
                 .sockList(socksList.stream().map(SockResponse::toResponse).toList())
+                .nextCursor(hasNext ? SockCursor.of(socksList.get(pageSize - 1)).encode() : null)
+                .totalAmount(cottonIndex.map(index -> index.amountBetween(from, to)).orElse(null))
                 .build();
     }
 
-    private Optional<Sock> findSock(SockRequest sockRequest) {
-        log.debug("Finding sock: {}", sockRequest);
-        return sockRepository.findByColorAndCottonPercentage(
-                sockRequest.getColor(),
-                sockRequest.getCottonPercentage());
-    }
-
-    private Sock createNewSock(SockRequest sockRequest) {
-        log.debug("Creating new sock: {}", sockRequest);
+    /**
+     * Passes all socks filtered by cotton percentage range and sorted by a specified field to the consumer.
+     * The socks are read from a database cursor in batches of {@link Constraints#STREAM_FETCH_SIZE} rows.
+     *
+     * @param from      The minimum cotton percentage.
+     * @param to        The maximum cotton percentage.
+     * @param sortedBy  The field to sort the socks by (color or cotton).
+     * @param consumer  The receiver of the socks.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamSocksByFilterSorted(Integer from, Integer to, String sortedBy, Consumer<SockResponse> consumer) {
+        log.info("Streaming socks by filter: from={}, to={}, sortedBy={}", from, to, sortedBy);
 
-        return Sock.builder()
-                .color(sockRequest.getColor())
-                .cottonPercentage(sockRequest.getCottonPercentage())
-                .amount(sockRequest.getAmount())
-                .build();
+        Specification<Sock> specification = SockSpecification.cottonPercentageBetween(from, to);
+        try (Stream<Sock> socks = sockRepository.streamAll(specification, SockSort.keyset(sortedBy),
+                Constraints.STREAM_FETCH_SIZE)) {
+            socks.map(SockResponse::toResponse).forEach(consumer);
+        }
+        log.info("Finished streaming socks by filter: from={}, to={}", from, to);
     }
 
-    private SockResponse deleteSock(Sock sock) {
-        log.info("Deleting sock: {}", sock);
-
-        sockRepository.delete(sock);
-        return new SockResponse();
+    private SockKey toKey(SockRequest sockRequest) {
+        return new SockKey(sockRequest.getColor(), sockRequest.getCottonPercentage());
     }
 
-    private SockResponse decreaseAmount(SockRequest sockRequest, Sock sock) {
-        log.info("Decreasing amount for sock: {}, request={}", sock, sockRequest);
-
-        sock.setAmount(sock.getAmount() - sockRequest.getAmount());
-        sockRepository.save(sock);
-        return SockResponse.builder()
-                .id(sock.getId())
-                .color(sock.getColor())
-                .cottonPercentage(sock.getCottonPercentage())
-                .amount(sock.getAmount())
-                .build();
+    /**
+     * Subtracts the amount from the balance of the position.
+     *
+     * @return The reason why the amount cannot be released, or null if the balance is sufficient.
+     */
+    private String withdraw(Map<SockKey, Long> balances, SockKey key, int amount) {
+        long balance = balances.getOrDefault(key, 0L);
+        if (balance == 0) {
+            return "На складе нет таких носков.";
+        }
+        if (balance < amount) {
+            return "Носков на складе меньше.";
+        }
+        balances.put(key, balance - amount);
+        return null;
     }
 
     private Sock updateParameters(SockRequest sockRequest, Sock s) {
@@ -0,0 +1,337 @@
+package ru.vydrenkova.services.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vydrenkova.config.IndexProperties;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+/**
+ * The CottonHistogramIndex class keeps the amounts of all socks in memory, as one histogram over the cotton
+ * percentages per color and one over all colors, so amount queries are answered without the database.
+ *
+ * <p>A histogram stores the amount per cotton percentage and its prefix sums in primitive arrays, so every query
+ * reads at most two slots. The index is loaded from the database at startup and receives the amount changes of
+ * the write paths once their transactions have committed. Changes are deltas, so the order in which concurrent
+ * transactions report them does not matter.</p>
+ *
+ * <p>Only the writes of this node reach the index, so it is rebuilt from the database every
+ * {@code socks.index.refresh-interval-seconds} to correct the drift caused by other nodes and by writes outside
+ * of the service. Changes committed while a rebuild reads the database are replayed onto the rebuilt histograms
+ * before they replace the current ones.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "socks.index", name = "enabled", havingValue = "true")
+@Profile("!reactive")
+public class CottonHistogramIndex {
+
+    private final SockRepository sockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long refreshIntervalSeconds;
+    // Changes take the read lock, so they run concurrently; a rebuild takes the write lock to swap the histograms
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Histograms current = new Histograms();
+    private Queue<Change> changesDuringRebuild;
+    private ScheduledExecutorService refresher;
+    private boolean loaded;
+
+    public CottonHistogramIndex(SockRepository sockRepository, PlatformTransactionManager transactionManager,
+                                IndexProperties properties) {
+        this.sockRepository = sockRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.refreshIntervalSeconds = properties.getRefreshIntervalSeconds();
+    }
+
+    /**
+     * Loads the amounts of all socks from the database and starts periodic rebuilds.
+     */
+    @PostConstruct
+    public void load() {
+        rebuild();
+        if (refreshIntervalSeconds > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cotton-index-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::rebuildQuietly, refreshIntervalSeconds, refreshIntervalSeconds,
+                    TimeUnit.SECONDS);
+        } else {
+            log.warn("Cotton histogram index is not refreshed: amounts written by other nodes are not visible");
+        }
+    }
+
+    /**
+     * Stops periodic rebuilds.
+     */
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database and replaces the current histograms.
+     */
+    public synchronized void rebuild() {
+        Queue<Change> changes = new ConcurrentLinkedQueue<>();
+        record(changes);
+        Histograms rebuilt = new Histograms();
+        LongAdder positions = new LongAdder();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Sock> socks = sockRepository.streamAll(null, Sort.by(Constraints.ID_FIELD_NAME),
+                        Constraints.STREAM_FETCH_SIZE)) {
+                    socks.forEach(sock -> {
+                        rebuilt.apply(sock.getColor(), sock.getCottonPercentage(), sock.getAmount());
+                        positions.increment();
+                    });
+                }
+            });
+        } catch (RuntimeException e) {
+            record(null);
+            throw e;
+        }
+        long drift;
+        swapLock.writeLock().lock();
+        try {
+            // A change replayed here was either committed after the rebuild read its position or,
+            // in the short window between a commit and its callback, counted twice until the next rebuild
+            changes.forEach(change -> rebuilt.apply(change.color(), change.cottonPercentage(), change.delta()));
+            drift = rebuilt.total() - current.total();
+            current = rebuilt;
+            changesDuringRebuild = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        if (!loaded) {
+            loaded = true;
+            log.info("Cotton histogram index loaded: {} positions, {} colors", positions.sum(), rebuilt.colors());
+        } else if (drift != 0) {
+            log.warn("Cotton histogram index rebuilt: total amount corrected by {}", drift);
+        } else {
+            log.debug("Cotton histogram index rebuilt: {} positions, {} colors", positions.sum(), rebuilt.colors());
+        }
+    }
+
+    /**
+     * Calculates the total amount of socks of a color.
+     *
+     * @param color            The color of the socks.
+     * @param operation        The operation to filter socks (moreThan, lessThan, or equal).
+     * @param cottonPercentage The cotton percentage to filter socks.
+     * @return The total amount of socks that match the criteria.
+     */
+    public long amount(String color, String operation, int cottonPercentage) {
+        Histogram histogram = current.byColor.get(color);
+        if (histogram == null) {
+            return 0;
+        }
+        return switch (operation) {
+            case Constraints.MORE_THAN_OPERATION_NAME -> histogram.between(cottonPercentage + 1, Integer.MAX_VALUE);
+            case Constraints.LESS_THAN_OPERATION_NAME -> histogram.between(Integer.MIN_VALUE, cottonPercentage - 1);
+            case Constraints.EQUAL_OPERATION_NAME -> histogram.between(cottonPercentage, cottonPercentage);
+            default -> throw new IllegalArgumentException("Неподдерживаемый оператор: " + operation);
+        };
+    }
+
+    /**
+     * Calculates the total amount of socks of all colors with a cotton percentage in the range.
+     *
+     * @param from The minimum cotton percentage, inclusive.
+     * @param to   The maximum cotton percentage, inclusive.
+     * @return The total amount of matching socks.
+     */
+    public long amountBetween(int from, int to) {
+        return current.allColors.between(from, to);
+    }
+
+    /**
+     * Adds the change of an amount when the current transaction commits, or at once if there is no transaction.
+     *
+     * @param color            The color of the socks.
+     * @param cottonPercentage The cotton percentage of the socks.
+     * @param delta            The change of the amount.
+     */
+    public void add(String color, int cottonPercentage, long delta) {
+        afterCommit(() -> apply(color, cottonPercentage, delta));
+    }
+
+    /**
+     * Adds the changes of amounts when the current transaction commits, or at once if there is no transaction.
+     * The changes are copied, so the caller may reuse the map.
+     *
+     * @param deltas The change of the amount per position.
+     */
+    public void addAll(Map<SockKey, ? extends Number> deltas) {
+        Map<SockKey, ? extends Number> snapshot = Map.copyOf(deltas);
+        afterCommit(() -> snapshot.forEach((key, delta) -> apply(key.color(), key.cottonPercentage(), delta.longValue())));
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private void apply(String color, int cottonPercentage, long delta) {
+        swapLock.readLock().lock();
+        try {
+            current.apply(color, cottonPercentage, delta);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(new Change(color, cottonPercentage, delta));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void record(Queue<Change> changes) {
+        swapLock.writeLock().lock();
+        try {
+            changesDuringRebuild = changes;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Cotton histogram index rebuild failed, keeping the current amounts", e);
+        }
+    }
+
+    private record Change(String color, int cottonPercentage, long delta) {
+    }
+
+    /**
+     * The histograms of all colors and the one over all colors, replaced together by a rebuild.
+     */
+    private static class Histograms {
+        private final Map<String, Histogram> byColor = new ConcurrentHashMap<>();
+        private final Histogram allColors = new Histogram();
+
+        void apply(String color, int cottonPercentage, long delta) {
+            byColor.computeIfAbsent(color, key -> new Histogram()).add(cottonPercentage, delta);
+            allColors.add(cottonPercentage, delta);
+        }
+
+        long total() {
+            return allColors.between(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        int colors() {
+            return byColor.size();
+        }
+    }
+
+    /**
+     * Amounts per cotton percentage with prefix sums. Reads are optimistic and retried under the lock
+     * only if they overlap a write. Cotton percentages outside of the valid range, which only old rows
+     * can have, are kept in a separate map so that the index still matches the database.
+     */
+    private static class Histogram {
+        private static final int SLOTS = Constraints.MAX_COTTON_PERCENTAGE + 1;
+
+        private final long[] amounts = new long[SLOTS];
+        // prefixSums[i] is the total amount of the slots below i
+        private final long[] prefixSums = new long[SLOTS + 1];
+        private final NavigableMap<Integer, Long> outOfRange = new TreeMap<>();
+        private volatile boolean hasOutOfRange;
+        private final StampedLock lock = new StampedLock();
+
+        void add(int cottonPercentage, long delta) {
+            long stamp = lock.writeLock();
+            try {
+                if (cottonPercentage < 0 || cottonPercentage >= SLOTS) {
+                    outOfRange.merge(cottonPercentage, delta, Long::sum);
+                    hasOutOfRange = true;
+                    return;
+                }
+                amounts[cottonPercentage] += delta;
+                for (int i = cottonPercentage + 1; i <= SLOTS; i++) {
+                    prefixSums[i] += delta;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long between(int from, int to) {
+            if (from > to) {
+                return 0;
+            }
+            if (hasOutOfRange) {
+                long stamp = lock.readLock();
+                try {
+                    return sum(from, to) + outOfRange.subMap(from, true, to, true).values().stream()
+                            .mapToLong(Long::longValue)
+                            .sum();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            long stamp = lock.tryOptimisticRead();
+            long amount = sum(from, to);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    amount = sum(from, to);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return amount;
+        }
+
+        private long sum(int from, int to) {
+            int lower = Math.max(from, 0);
+            int upper = Math.min(to, SLOTS - 1);
+            if (lower > upper) {
+                return 0;
+            }
+            if (lower == upper) {
+                return amounts[lower];
+            }
+            return prefixSums[upper + 1] - prefixSums[lower];
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.vydrenkova.services.jobs;
+
+import lombok.Getter;
+import ru.vydrenkova.dto.responses.ImportJobResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.services.batch.ImportProgress;
+
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ImportJob class tracks the state and progress of an asynchronous import of a spooled CSV file.
+ * Progress counters are updated from parsing threads and read by polling requests.
+ */
+public class ImportJob implements ImportProgress {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    @Getter
+    private final String id;
+    private final String fileName;
+    @Getter
+    private final Path file;
+    private final long totalBytes;
+
+    private final AtomicLong bytesProcessed = new AtomicLong();
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Getter
+    private volatile Status status = Status.QUEUED;
+    private volatile boolean cancelled;
+    private volatile boolean started;
+    private volatile long startedAt;
+    @Getter
+    private volatile long finishedAt;
+    private volatile ImportSummary result;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    public ImportJob(String id, String fileName, Path file, long totalBytes) {
+        this.id = id;
+        this.fileName = fileName;
+        this.file = file;
+        this.totalBytes = totalBytes;
+    }
+
+    @Override
+    public void rangeParsed(long bytes, long rows, long rejectedRows) {
+        bytesProcessed.addAndGet(bytes);
+        rowsProcessed.addAndGet(rows);
+        rejected.addAndGet(rejectedRows);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    public synchronized boolean start() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        startedAt = System.nanoTime();
+        started = true;
+        return true;
+    }
+
+    public synchronized void complete(ImportSummary summary) {
+        result = summary;
+        bytesProcessed.set(totalBytes);
+        finish(Status.COMPLETED);
+    }
+
+    public synchronized void fail(String message) {
+        error = message;
+        finish(Status.FAILED);
+    }
+
+    public synchronized void markCancelled() {
+        finish(Status.CANCELLED);
+    }
+
+    /**
+     * Requests cancellation. A queued job is cancelled immediately, a running job stops before its next step.
+     *
+     * @return Whether the job was still queued.
+     */
+    public synchronized boolean cancel() {
+        if (status.isFinished()) {
+            return false;
+        }
+        cancelled = true;
+        if (status == Status.QUEUED) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            finish(Status.CANCELLED);
+            return true;
+        }
+        return false;
+    }
+
+    private void finish(Status finalStatus) {
+        status = finalStatus;
+        finishedAt = System.nanoTime();
+    }
+
+    /**
+     * @return The current state of the job with throughput and the estimated remaining time. A job that has not
+     *         started, including one cancelled while queued, has neither.
+     */
+    public ImportJobResponse toResponse() {
+        Status currentStatus = status;
+        long bytes = bytesProcessed.get();
+        long rows = rowsProcessed.get();
+        Long rowsPerSecond = null;
+        Long etaSeconds = null;
+        if (started) {
+            long end = currentStatus.isFinished() ? finishedAt : System.nanoTime();
+            double elapsedSeconds = Math.max(end - startedAt, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+            rowsPerSecond = Math.round(rows / elapsedSeconds);
+            if (currentStatus == Status.RUNNING && bytes > 0) {
+                etaSeconds = Math.round((totalBytes - bytes) / (bytes / elapsedSeconds));
+            }
+        }
+        return ImportJobResponse.builder()
+                .id(id)
+                .status(currentStatus.name())
+                .fileName(fileName)
+                .totalBytes(totalBytes)
+                .bytesProcessed(bytes)
+                .rowsProcessed(rows)
+                .rejected(rejected.get())
+                .rowsPerSecond(rowsPerSecond)
+                .etaSeconds(etaSeconds)
+                .result(result)
+                .error(error)
+                .build();
+    }
+}
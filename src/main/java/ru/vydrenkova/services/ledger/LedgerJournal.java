@@ -0,0 +1,215 @@
+package ru.vydrenkova.services.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The LedgerJournal class is an append-only file of stock movements accepted by the ledger.
+ * Every record carries a sequence number, so that records already flushed to the database
+ * can be skipped when the journal is replayed after a restart.
+ *
+ * <p>Record layout: sequence (long), cotton percentage (int), delta (long),
+ * color length (int) and UTF-8 color bytes. A truncated tail left by a crash is ignored.</p>
+ *
+ * <p>Appends are serialized with a {@link ReentrantLock} rather than {@code synchronized}, so that a virtual thread
+ * waiting for the journal releases its carrier thread. Fsync is a group commit outside that lock: callers of
+ * {@link #sync(long)} queue on a second lock, the first of them forces every record written so far, and the ones
+ * whose records that covered return without forcing again. Appends go on while a force is running.</p>
+ */
+@Slf4j
+public class LedgerJournal implements Closeable {
+
+    private static final int FIXED_RECORD_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private FileChannel channel;
+    private long sequence;
+    private volatile long syncedSequence;
+
+    public LedgerJournal(Path path, boolean fsync) {
+        this.path = path;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Reads all complete records with a sequence greater than the checkpoint and sums their deltas by key.
+     *
+     * @param checkpoint The last sequence already applied to the database.
+     * @return The net delta per key that still has to be applied.
+     * @throws IOException if the journal cannot be read.
+     */
+    public Map<SockKey, Long> replay(long checkpoint) throws IOException {
+        lock.lock();
+        try {
+            Map<SockKey, Long> deltas = new HashMap<>();
+            sequence = checkpoint;
+            if (!Files.exists(path)) {
+                return deltas;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    long recordSequence;
+                    int cottonPercentage;
+                    long delta;
+                    String color;
+                    try {
+                        recordSequence = in.readLong();
+                        cottonPercentage = in.readInt();
+                        delta = in.readLong();
+                        byte[] colorBytes = new byte[in.readInt()];
+                        in.readFully(colorBytes);
+                        color = new String(colorBytes, StandardCharsets.UTF_8);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    sequence = Math.max(sequence, recordSequence);
+                    if (recordSequence > checkpoint) {
+                        deltas.merge(new SockKey(color, cottonPercentage), delta, Long::sum);
+                    }
+                }
+            }
+            log.info("Replayed ledger journal {}: {} pending positions, last sequence {}", path, deltas.size(), sequence);
+            return deltas;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens the journal for appending. Must be called after {@link #replay(long)}.
+     *
+     * @throws IOException if the journal cannot be opened.
+     */
+    public void open() throws IOException {
+        lock.lock();
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            syncedSequence = sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a movement to the journal. The record is durable once {@link #sync(long)} has returned for its sequence.
+     *
+     * @param key   The stock position.
+     * @param delta The signed change of the amount.
+     * @return The sequence number assigned to the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public long append(SockKey key, long delta) throws IOException {
+        lock.lock();
+        try {
+            byte[] colorBytes = key.color().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(FIXED_RECORD_SIZE + colorBytes.length);
+            long recordSequence = sequence + 1;
+            buffer.putLong(recordSequence)
+                    .putInt(key.cottonPercentage())
+                    .putLong(delta)
+                    .putInt(colorBytes.length)
+                    .put(colorBytes)
+                    .flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            sequence = recordSequence;
+            return recordSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with the sequence and all records before it are on disk. Does nothing if fsync is
+     * disabled.
+     *
+     * @param recordSequence The sequence returned by {@link #append(SockKey, long)}.
+     * @throws IOException if the journal cannot be forced to disk.
+     */
+    public void sync(long recordSequence) throws IOException {
+        if (!fsync || syncedSequence >= recordSequence) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (syncedSequence >= recordSequence) {
+                return;
+            }
+            long written;
+            FileChannel writtenChannel;
+            lock.lock();
+            try {
+                written = sequence;
+                writtenChannel = channel;
+            } finally {
+                lock.unlock();
+            }
+            if (writtenChannel == null) {
+                throw new ClosedChannelException();
+            }
+            writtenChannel.force(false);
+            syncedSequence = written;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * @return The sequence number of the last appended or replayed record.
+     */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops all records. Called once their deltas and sequence have been committed to the database.
+     *
+     * @throws IOException if the journal cannot be truncated.
+     */
+    public void truncate() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.truncate(0);
+                channel.force(true);
+            } else {
+                Files.deleteIfExists(path);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
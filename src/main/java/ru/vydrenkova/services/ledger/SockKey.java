@@ -0,0 +1,18 @@
+package ru.vydrenkova.services.ledger;
+
+import java.util.Comparator;
+
+/**
+ * Identifies a stock position by its color and cotton percentage.
+ *
+ * @param color            The color of the socks.
+ * @param cottonPercentage The cotton percentage of the socks.
+ */
+public record SockKey(String color, int cottonPercentage) {
+
+    /**
+     * Orders keys by color and then by cotton percentage. Rows are always updated in this order to avoid deadlocks.
+     */
+    public static final Comparator<SockKey> ORDER = Comparator.comparing(SockKey::color)
+            .thenComparingInt(SockKey::cottonPercentage);
+}
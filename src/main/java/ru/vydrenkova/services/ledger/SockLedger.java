@@ -0,0 +1,442 @@
+package ru.vydrenkova.services.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.JournalWriteException;
+import ru.vydrenkova.exceptions.NoSuchSockException;
+import ru.vydrenkova.models.LedgerCheckpoint;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.LedgerCheckpointRepository;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.index.CottonHistogramIndex;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * The SockLedger class keeps live balances of stock positions in memory and writes them to the database in batches.
+ *
+ * <p>Each movement is validated and applied under the lock stripe of its position, appended to the
+ * {@link LedgerJournal} and acknowledged once the journal has synced it, which happens outside the stripe.
+ * Net deltas are flushed to {@link SockRepository} periodically or when the number of accepted movements
+ * reaches a threshold. The journal sequence is stored together with the flushed deltas, so a restart replays
+ * exactly the movements that did not reach the database. Balances stay in memory after a flush; they are only
+ * dropped when the database is written past the ledger, see {@link #exclusively(Supplier, Collection)}.</p>
+ *
+ * <p>Readers do not flush: they hold flushes off with {@link #holdFlushes()} and add the pending deltas
+ * to what they read from the database.</p>
+ */
+@Slf4j
+public class SockLedger {
+
+    private final SockRepository sockRepository;
+    private final LedgerCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerJournal journal;
+    private final AmountCache amountCache;
+    private final Optional<CottonHistogramIndex> cottonIndex;
+    private final int flushThreshold;
+
+    // Positions are grouped by color, so the pending deltas of an amount query are found without a scan
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, Position>> positions = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final AtomicInteger acceptedSinceFlush = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sock-ledger-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SockLedger(SockRepository sockRepository, LedgerCheckpointRepository checkpointRepository,
+                      TransactionTemplate transactionTemplate, LedgerJournal journal,
+                      AmountCache amountCache, Optional<CottonHistogramIndex> cottonIndex,
+                      int stripes, int flushThreshold) {
+        this.sockRepository = sockRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.journal = journal;
+        this.amountCache = amountCache;
+        this.cottonIndex = cottonIndex;
+        this.flushThreshold = flushThreshold;
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Applies journal records that did not reach the database before the last shutdown,
+     * opens the journal and starts periodic flushing.
+     *
+     * @param flushIntervalMs The interval between periodic flushes in milliseconds.
+     */
+    public void start(long flushIntervalMs) {
+        try {
+            long checkpoint = checkpointRepository.findById(LedgerCheckpoint.SINGLETON_ID)
+                    .map(LedgerCheckpoint::getLastSequence)
+                    .orElse(0L);
+            Map<SockKey, Long> pending = journal.replay(checkpoint);
+            if (!pending.isEmpty()) {
+                writeDeltas(pending, journal.lastSequence());
+            }
+            journal.truncate();
+            journal.open();
+        } catch (IOException e) {
+            throw new JournalWriteException("Не удалось восстановить журнал склада: " + e.getMessage());
+        }
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes pending deltas and closes the journal.
+     */
+    public void stop() {
+        flusher.shutdown();
+        flush();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.error("Error closing ledger journal", e);
+        }
+    }
+
+    /**
+     * Registers the arrival of socks.
+     *
+     * @param key    The stock position.
+     * @param amount The number of socks received.
+     * @return The state of the position after the movement.
+     */
+    public Snapshot income(SockKey key, int amount) {
+        return apply(key, amount);
+    }
+
+    /**
+     * Registers the release of socks.
+     *
+     * @param key    The stock position.
+     * @param amount The number of socks released.
+     * @return The state of the position after the movement.
+     * @throws IllegalAmountException if the live balance is less than the requested amount.
+     * @throws NoSuchSockException    if the position has no socks.
+     */
+    public Snapshot outcome(SockKey key, int amount) {
+        return apply(key, -(long) amount);
+    }
+
+    /**
+     * Writes all pending deltas to the database. Movements are blocked while the flush runs.
+     */
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes pending deltas and runs an action that writes to the database directly while movements are blocked.
+     * All balances are dropped afterwards, so the changes made by the action are visible to later movements.
+     *
+     * @param action The action to run.
+     * @param <T>    The type of the action result.
+     * @return The result of the action.
+     */
+    public <T> T exclusively(Supplier<T> action) {
+        flushLock.writeLock().lock();
+        try {
+            flushLocked();
+            return action.get();
+        } finally {
+            positions.clear();
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes pending deltas and runs an action that writes some positions to the database directly while movements
+     * are blocked, such as an import. The action must commit before it returns. The balances of the written positions
+     * are dropped afterwards and reloaded by their next movement; other positions stay in memory.
+     *
+     * @param action  The action to run.
+     * @param written The positions written by the action. It may be filled by the action itself.
+     * @param <T>     The type of the action result.
+     * @return The result of the action.
+     */
+    public <T> T exclusively(Supplier<T> action, Collection<SockKey> written) {
+        flushLock.writeLock().lock();
+        try {
+            flushLocked();
+            return action.get();
+        } finally {
+            written.forEach(key -> {
+                Map<Integer, Position> colorPositions = positions.get(key.color());
+                if (colorPositions != null) {
+                    colorPositions.remove(key.cottonPercentage());
+                }
+            });
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Holds off flushes until the returned view is closed, so that the database does not change under a read and
+     * the pending deltas of the view add up with it to the live balances. Movements are not blocked.
+     *
+     * @return The pending deltas, which must be closed by the calling thread.
+     */
+    public PendingDeltas holdFlushes() {
+        flushLock.readLock().lock();
+        return new PendingDeltas();
+    }
+
+    private void flushLocked() {
+        flushScheduled.set(false);
+        acceptedSinceFlush.set(0);
+        Map<SockKey, Long> deltas = pendingDeltas();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Map<SockKey, Long> ids = writeDeltas(deltas, journal.lastSequence());
+        deltas.keySet().forEach(key -> {
+            Position position = positions.get(key.color()).get(key.cottonPercentage());
+            position.pendingDelta = 0;
+            // a position without socks is removed by deleteEmpty
+            position.id = position.balance == 0 ? null : ids.get(key);
+        });
+        try {
+            journal.truncate();
+        } catch (IOException e) {
+            log.error("Error truncating ledger journal, flushed records will be skipped on replay", e);
+        }
+        log.debug("Flushed {} ledger positions", deltas.size());
+    }
+
+    private Map<SockKey, Long> pendingDeltas() {
+        Map<SockKey, Long> deltas = new HashMap<>();
+        positions.forEach((color, colorPositions) -> colorPositions.forEach((cottonPercentage, position) -> {
+            long pendingDelta = position.pendingDelta;
+            if (pendingDelta != 0) {
+                deltas.put(new SockKey(color, cottonPercentage), pendingDelta);
+            }
+        }));
+        return deltas;
+    }
+
+    private Snapshot apply(SockKey key, long delta) {
+        Snapshot snapshot;
+        flushLock.readLock().lock();
+        try {
+            long recordSequence;
+            ReentrantLock stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+            stripe.lock();
+            try {
+                Map<Integer, Position> colorPositions = positions.computeIfAbsent(key.color(),
+                        color -> new ConcurrentHashMap<>());
+                Position position = colorPositions.get(key.cottonPercentage());
+                if (position == null) {
+                    position = load(key);
+                    colorPositions.put(key.cottonPercentage(), position);
+                }
+                long balance = position.balance + delta;
+                if (delta < 0 && position.balance == 0) {
+                    throw new NoSuchSockException("На складе нет таких носков.");
+                }
+                if (balance < 0) {
+                    throw new IllegalAmountException("Носков на складе меньше.");
+                }
+                // rejected before the journal, since a record that cannot be flushed would block every later flush
+                if (balance > Integer.MAX_VALUE) {
+                    throw new IllegalAmountException(SockRowValidator.AMOUNT_OVERFLOW);
+                }
+                recordSequence = journal.append(key, delta);
+                position.balance = balance;
+                position.pendingDelta += delta;
+                snapshot = new Snapshot(position.id, balance);
+            } catch (IOException e) {
+                log.error("Error writing ledger journal for {}", key, e);
+                throw new JournalWriteException("Не удалось записать движение в журнал склада.");
+            } finally {
+                stripe.unlock();
+            }
+            // A later movement of the position is synced with this record at the latest, so it cannot be
+            // acknowledged while this one is still lost on a crash
+            try {
+                journal.sync(recordSequence);
+            } catch (IOException e) {
+                log.error("Error syncing ledger journal for {}", key, e);
+                throw new JournalWriteException("Не удалось записать движение в журнал склада.");
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        if (acceptedSinceFlush.incrementAndGet() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return snapshot;
+    }
+
+    private Position load(SockKey key) {
+        Optional<Sock> sock = sockRepository.findByColorAndCottonPercentage(key.color(), key.cottonPercentage());
+        Position position = new Position();
+        sock.ifPresent(s -> {
+            position.id = s.getId();
+            position.balance = s.getAmount();
+        });
+        return position;
+    }
+
+    /**
+     * @return The ID of every written position, returned by its upsert.
+     */
+    private Map<SockKey, Long> writeDeltas(Map<SockKey, Long> deltas, long sequence) {
+        return transactionTemplate.execute(status -> {
+            Map<SockKey, Long> ids = new HashMap<>();
+            deltas.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey(SockKey.ORDER))
+                    .forEach(entry -> ids.put(entry.getKey(), sockRepository.increaseAmount(
+                            entry.getKey().color(),
+                            entry.getKey().cottonPercentage(),
+                            Math.toIntExact(entry.getValue()))));
+            sockRepository.deleteEmpty();
+            amountCache.invalidate(deltas.keySet().stream().map(SockKey::color).toList());
+            cottonIndex.ifPresent(index -> index.addAll(deltas));
+            checkpointRepository.save(new LedgerCheckpoint(LedgerCheckpoint.SINGLETON_ID, sequence));
+            return ids;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Error flushing sock ledger", e);
+        }
+    }
+
+    /**
+     * The state of a stock position after a movement.
+     *
+     * @param id     The database ID of the position, or null if the position was created by movements
+     *               that have not been flushed yet. It is known from the first movement after the flush.
+     * @param amount The live balance of the position.
+     */
+    public record Snapshot(Long id, long amount) {
+    }
+
+    /**
+     * The deltas of a ledger that have not been flushed yet. While the view is held, flushes wait and its deltas
+     * are live. After {@link #detach()} flushes run again and the view keeps the deltas it had at that moment,
+     * which still match a database snapshot taken before. Not thread-safe.
+     */
+    public final class PendingDeltas implements AutoCloseable {
+        private Map<SockKey, Long> detached;
+        private boolean held = true;
+
+        private PendingDeltas() {
+        }
+
+        /**
+         * @param key The stock position.
+         * @return The pending delta of the position.
+         */
+        public long delta(SockKey key) {
+            if (detached != null) {
+                return detached.getOrDefault(key, 0L);
+            }
+            Map<Integer, Position> colorPositions = positions.get(key.color());
+            Position position = colorPositions == null ? null : colorPositions.get(key.cottonPercentage());
+            return position == null ? 0 : position.pendingDelta;
+        }
+
+        /**
+         * @param color            The color of the socks.
+         * @param cottonPercentage The filter of cotton percentages.
+         * @return The sum of the pending deltas of the matching positions.
+         */
+        public long sum(String color, IntPredicate cottonPercentage) {
+            long sum = 0;
+            if (detached != null) {
+                for (Map.Entry<SockKey, Long> entry : detached.entrySet()) {
+                    if (entry.getKey().color().equals(color) && cottonPercentage.test(entry.getKey().cottonPercentage())) {
+                        sum += entry.getValue();
+                    }
+                }
+                return sum;
+            }
+            Map<Integer, Position> colorPositions = positions.get(color);
+            if (colorPositions != null) {
+                for (Map.Entry<Integer, Position> entry : colorPositions.entrySet()) {
+                    if (cottonPercentage.test(entry.getKey())) {
+                        sum += entry.getValue().pendingDelta;
+                    }
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * @param cottonPercentage The filter of cotton percentages.
+         * @return The sum of the pending deltas of the matching positions of all colors.
+         */
+        public long sum(IntPredicate cottonPercentage) {
+            long sum = 0;
+            for (Map.Entry<SockKey, Long> entry : (detached != null ? detached : pendingDeltas()).entrySet()) {
+                if (cottonPercentage.test(entry.getKey().cottonPercentage())) {
+                    sum += entry.getValue();
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * Copies the pending deltas and lets flushes run again, for long reads such as streams whose database
+         * snapshot has already been taken.
+         */
+        public void detach() {
+            if (held) {
+                detached = pendingDeltas();
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (held) {
+                held = false;
+                flushLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Mutable state of a position. Guarded by the lock stripe of its key; the pending delta is also read by
+     * {@link PendingDeltas} without it.
+     */
+    private static class Position {
+        private Long id;
+        private long balance;
+        private volatile long pendingDelta;
+    }
+}
@@ -6,10 +6,30 @@ public class Constraints {
     public final static String LESS_THAN_OPERATION_NAME = "lessThan";
     public final static String EQUAL_OPERATION_NAME = "equal";
     public final static String COTTON_PERCENTAGE_FIELD_NAME = "cottonPercentage";
+    public final static String AMOUNT_FIELD_NAME = "amount";
+    public final static String ID_FIELD_NAME = "id";
 
     public final static String AMOUNT_CSV_HEADER_NAME = "amount";
     public final static String COLOR_CSV_HEADER_NAME = "color";
     public final static String COTTON_PERCENTAGE_CSV_HEADER_NAME = "cottonPercentage";
     public final static String FORMAT = ".csv";
     public final static int HEADERS_AMOUNT = 3;
+
+    public final static int MIN_COTTON_PERCENTAGE = 0;
+    public final static int MAX_COTTON_PERCENTAGE = 100;
+    public final static int MIN_AMOUNT = 1;
+
+    public final static String INCOME_DIRECTION_NAME = "income";
+    public final static String OUTCOME_DIRECTION_NAME = "outcome";
+    public final static String ALL_OR_NOTHING_MODE_NAME = "all-or-nothing";
+    public final static String BEST_EFFORT_MODE_NAME = "best-effort";
+    public final static int MAX_MOVEMENTS_PER_BATCH = 1000;
+    public final static String IDEMPOTENCY_KEY_HEADER_NAME = "Idempotency-Key";
+    public final static int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    public final static int MAX_PAGE_SIZE = 1000;
+    public final static int STREAM_FETCH_SIZE = 1000;
+
+    public final static String CSV_EXPORT_FORMAT = "csv";
+    public final static String NDJSON_EXPORT_FORMAT = "ndjson";
 }
@@ -0,0 +1,32 @@
+package ru.vydrenkova.utils.encoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import ru.vydrenkova.dto.responses.SocksColumns;
+import ru.vydrenkova.dto.responses.SocksList;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Writes responses as CBOR ({@code application/cbor}) for callers that ask for it in the Accept header.
+ * Lists of socks are written in the columnar form of {@link SocksColumns}, other responses keep their JSON fields.
+ */
+public class SocksCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+    public SocksCborHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        if (object instanceof SocksList socksList) {
+            super.writeInternal(SocksColumns.of(socksList), SocksColumns.class, outputMessage);
+        } else {
+            super.writeInternal(object, type, outputMessage);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.vydrenkova.utils.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps a random sample of one in {@code keepOneIn} events of the loggers under {@code loggerName}.
+ *
+ * <p>The filter runs before the message is formatted, so a dropped event costs neither the formatting of its
+ * arguments nor the appender. Only events up to {@code maxLevel} (INFO by default) are sampled, warnings and errors
+ * always pass. The decision uses a thread-local random number, so threads logging at the same time do not
+ * contend for a shared counter.</p>
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private String loggerName = Logger.ROOT_LOGGER_NAME;
+    private int keepOneIn = 1;
+    private Level maxLevel = Level.INFO;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (keepOneIn <= 1 || level == null || level.toInt() > maxLevel.toInt()
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel()) || !matches(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(keepOneIn) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean matches(String name) {
+        return loggerName.equals(Logger.ROOT_LOGGER_NAME) || name.startsWith(loggerName)
+                && (name.length() == loggerName.length() || name.charAt(loggerName.length()) == '.');
+    }
+
+    /**
+     * @param loggerName The logger whose events, including those of its descendants, are sampled.
+     */
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    /**
+     * @param keepOneIn The number of events per kept event; 1 keeps all events.
+     */
+    public void setKeepOneIn(int keepOneIn) {
+        this.keepOneIn = keepOneIn;
+    }
+
+    /**
+     * @param maxLevel The most severe level that is sampled.
+     */
+    public void setMaxLevel(String maxLevel) {
+        this.maxLevel = Level.toLevel(maxLevel, Level.INFO);
+    }
+}
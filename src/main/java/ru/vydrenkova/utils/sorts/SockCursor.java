@@ -0,0 +1,35 @@
+package ru.vydrenkova.utils.sorts;
+
+import ru.vydrenkova.exceptions.InvalidCursorException;
+import ru.vydrenkova.models.Sock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position of the last sock of a page for keyset pagination. It holds every field the socks can be sorted by,
+ * so the same cursor can be used with any sort order, and is passed to clients as an opaque URL-safe string.
+ */
+public record SockCursor(Long id, Integer cottonPercentage, String color) {
+
+    private static final String SEPARATOR = ":";
+
+    public static SockCursor of(Sock sock) {
+        return new SockCursor(sock.getId(), sock.getCottonPercentage(), sock.getColor());
+    }
+
+    public String encode() {
+        String value = id + SEPARATOR + cottonPercentage + SEPARATOR + color;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SockCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = value.split(SEPARATOR, 3);
+            return new SockCursor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), parts[2]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + cursor);
+        }
+    }
+}
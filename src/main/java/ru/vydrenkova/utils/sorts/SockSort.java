@@ -2,14 +2,32 @@ package ru.vydrenkova.utils.sorts;
 
 import org.springframework.data.domain.Sort;
 import ru.vydrenkova.exceptions.InvalidSortException;
+import ru.vydrenkova.utils.constraints.Constraints;
+
+import java.util.Objects;
 
 public class SockSort {
 
     public static Sort byField(String sortedBy) {
+        return Sort.by(fieldName(sortedBy));
+    }
+
+    /**
+     * Sorts by the field and then by id, so that every sock has a unique position for keyset pagination.
+     * Without a field the socks are sorted by id.
+     */
+    public static Sort keyset(String sortedBy) {
+        if (Objects.equals(sortedBy, null)) {
+            return Sort.by(Constraints.ID_FIELD_NAME);
+        }
+        return Sort.by(fieldName(sortedBy), Constraints.ID_FIELD_NAME);
+    }
+
+    public static String fieldName(String sortedBy) {
         if ("color".equalsIgnoreCase(sortedBy)) {
-            return Sort.by("color");
+            return Constraints.COLOR_FIELD_NAME;
         } else if ("cotton".equalsIgnoreCase(sortedBy)) {
-            return Sort.by("cottonPercentage");
+            return Constraints.COTTON_PERCENTAGE_FIELD_NAME;
         } else {
             throw new InvalidSortException("Нельзя сортировать по: " + sortedBy);
         }
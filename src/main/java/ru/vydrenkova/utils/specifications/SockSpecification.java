@@ -3,6 +3,13 @@ package ru.vydrenkova.utils.specifications;
 import org.springframework.data.jpa.domain.Specification;
 import ru.vydrenkova.models.Sock;
 import ru.vydrenkova.utils.constraints.Constraints;
+import ru.vydrenkova.utils.sorts.SockCursor;
+import ru.vydrenkova.utils.sorts.SockSort;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.Objects;
 
 
 public class SockSpecification {
@@ -30,4 +37,32 @@ public class SockSpecification {
         return (root, query, criteriaBuilder) ->
                 criteriaBuilder.between(root.get("cottonPercentage"), from, to);
     }
+
+    /**
+     * Matches the socks that follow the cursor in the order of {@link SockSort#keyset(String)}.
+     */
+    public static Specification<Sock> after(String sortedBy, SockCursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            if (Objects.equals(sortedBy, null)) {
+                return criteriaBuilder.greaterThan(root.get(Constraints.ID_FIELD_NAME), cursor.id());
+            }
+            String field = SockSort.fieldName(sortedBy);
+            if (field.equals(Constraints.COLOR_FIELD_NAME)) {
+                return keyAfter(root, criteriaBuilder, field, cursor.color(), cursor.id());
+            }
+            return keyAfter(root, criteriaBuilder, field, cursor.cottonPercentage(), cursor.id());
+        };
+    }
+
+    private static <T extends Comparable<? super T>> Predicate keyAfter(Root<Sock> root, CriteriaBuilder criteriaBuilder,
+                                                                        String field, T value, Long id) {
+        // The redundant lower bound lets the index on (field, id) start at the cursor instead of filtering from the top
+        return criteriaBuilder.and(
+                criteriaBuilder.greaterThanOrEqualTo(root.<T>get(field), value),
+                criteriaBuilder.or(
+                        criteriaBuilder.greaterThan(root.<T>get(field), value),
+                        criteriaBuilder.and(
+                                criteriaBuilder.equal(root.get(field), value),
+                                criteriaBuilder.greaterThan(root.get(Constraints.ID_FIELD_NAME), id))));
+    }
 }
@@ -0,0 +1,11 @@
+-- Схема, которую раньше создавал Hibernate (ddl-auto=update).
+-- На существующих базах эта миграция пропускается: spring.flyway.baseline-on-migrate помечает их версией 1.
+
+CREATE TABLE IF NOT EXISTS socks
+(
+    id                BIGSERIAL PRIMARY KEY,
+    color             VARCHAR(255),
+    cotton_percentage INTEGER,
+    amount            INTEGER,
+    CONSTRAINT socks_color_cotton_percentage_key UNIQUE (color, cotton_percentage)
+);
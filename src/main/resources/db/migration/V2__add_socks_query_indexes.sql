@@ -0,0 +1,14 @@
+-- Индексы под запросы SockSpecification и SockSort.
+
+-- GET /api/socks: color = ? AND cotton_percentage (<|=|>) ? обслуживает индекс уникального ограничения
+-- (color, cotton_percentage). Отдельный индекс с amount в INCLUDE не создается: он повторял бы этот ключ
+-- и запрещал HOT-обновления amount при каждом движении.
+
+-- GET /api/socks/filter-by-cotton?sortedBy=cotton: диапазон по cotton_percentage, порядок (cotton_percentage, id).
+CREATE INDEX IF NOT EXISTS socks_cotton_percentage_id_idx
+    ON socks (cotton_percentage, id);
+
+-- GET /api/socks/filter-by-cotton?sortedBy=color: порядок (color, id), cotton_percentage в INCLUDE
+-- проверяется по индексу до чтения строки таблицы.
+CREATE INDEX IF NOT EXISTS socks_color_id_idx
+    ON socks (color, id) INCLUDE (cotton_percentage);
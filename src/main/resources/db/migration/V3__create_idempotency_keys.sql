@@ -0,0 +1,12 @@
+-- Ключи идемпотентности запросов движения носков и сохраненные ответы на них.
+
+CREATE TABLE IF NOT EXISTS idempotency_keys
+(
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    fingerprint     VARCHAR(64)  NOT NULL,
+    response        TEXT,
+    created_at      TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idempotency_keys_created_at_idx
+    ON idempotency_keys (created_at);
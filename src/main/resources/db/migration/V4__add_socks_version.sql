@@ -0,0 +1,4 @@
+-- Версия строки для оптимистической блокировки при обновлении носков по id.
+-- Атомарные приход и отпуск тоже увеличивают версию, чтобы обновление по id не затирало их.
+
+ALTER TABLE socks ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,8 @@
+-- Последняя запись журнала склада, перенесенная в таблицу socks (socks.ledger.enabled=true).
+-- Отдельная миграция, потому что V1 не выполняется на базах, принятых через baseline-on-migrate.
+
+CREATE TABLE IF NOT EXISTS ledger_checkpoints
+(
+    id            BIGINT PRIMARY KEY,
+    last_sequence BIGINT
+);
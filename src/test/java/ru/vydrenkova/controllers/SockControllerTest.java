@@ -1,5 +1,6 @@
 package ru.vydrenkova.controllers;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,17 +9,41 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.multipart.MultipartFile;
 import ru.vydrenkova.dto.requests.SockRequest;
 import ru.vydrenkova.dto.responses.AmountResponse;
+import ru.vydrenkova.dto.responses.ImportJobResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.MovementBatchResult;
+import ru.vydrenkova.dto.responses.MovementResult;
 import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksColumns;
 import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.exceptions.IdempotencyKeyMismatchException;
+import ru.vydrenkova.exceptions.InvalidCsvRowException;
+import ru.vydrenkova.exceptions.NoSuchImportJobException;
+import ru.vydrenkova.exceptions.TooManyImportJobsException;
+import ru.vydrenkova.services.ExportService;
 import ru.vydrenkova.services.FileService;
+import ru.vydrenkova.services.ImportJobService;
 import ru.vydrenkova.services.SockService;
+import ru.vydrenkova.services.idempotency.IdempotencyStore;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.function.Supplier;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -35,6 +60,15 @@ class SockControllerTest {
     @MockBean
     private FileService fileService;
 
+    @MockBean
+    private ImportJobService importJobService;
+
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
     private SockRequest sockRequest;
     private SockResponse sockResponse;
     private AmountResponse amountResponse;
@@ -45,8 +79,10 @@ class SockControllerTest {
         // Инициализация тестовых данных
         sockRequest = new SockRequest("red", 70, 100);
         sockResponse = new SockResponse(1L, "red", 70, 100);
-        amountResponse = new AmountResponse(100);
-        socksList = new SocksList(List.of(sockResponse));
+        amountResponse = new AmountResponse(100L);
+        socksList = new SocksList(List.of(sockResponse), null, null);
+        when(idempotencyStore.execute(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
     }
 
     @Test
@@ -77,6 +113,64 @@ class SockControllerTest {
                 .andExpect(jsonPath("$.amount").value(100));
     }
 
+    @Test
+    void testApplyMovements() throws Exception {
+        when(sockService.applyMovements(eq("income"), eq("best-effort"), any()))
+                .thenReturn(MovementBatchResult.of(List.of(
+                        MovementResult.applied(0, sockResponse),
+                        MovementResult.rejected(1, "Не указан цвет")), false));
+
+        mockMvc.perform(post("/api/socks/movements")
+                        .param("direction", "income")
+                        .param("mode", "best-effort")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"color\":\"red\",\"cottonPercentage\":70,\"amount\":100}," +
+                                "{\"color\":null,\"cottonPercentage\":70,\"amount\":100}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.results[0].sock.amount").value(100))
+                .andExpect(jsonPath("$.results[1].status").value("REJECTED"));
+    }
+
+    @Test
+    void testApplyMovements_RolledBack() throws Exception {
+        when(sockService.applyMovements(eq("outcome"), eq("all-or-nothing"), any()))
+                .thenReturn(MovementBatchResult.of(List.of(
+                        MovementResult.skipped(0),
+                        MovementResult.rejected(1, "Носков на складе меньше.")), true));
+
+        mockMvc.perform(post("/api/socks/movements")
+                        .param("direction", "outcome")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"color\":\"red\",\"cottonPercentage\":70,\"amount\":1}," +
+                                "{\"color\":\"red\",\"cottonPercentage\":70,\"amount\":1000}]"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.rolledBack").value(true))
+                .andExpect(jsonPath("$.results[0].status").value("SKIPPED"));
+    }
+
+    @Test
+    void testApplyMovements_InvalidDirection() throws Exception {
+        mockMvc.perform(post("/api/socks/movements")
+                        .param("direction", "sideways")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"color\":\"red\",\"cottonPercentage\":70,\"amount\":1}]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testAddSocks_IdempotencyKeyReused() throws Exception {
+        doThrow(new IdempotencyKeyMismatchException("Ключ идемпотентности уже использован для другого запроса."))
+                .when(idempotencyStore).execute(eq("key-1"), eq("income"), any(), eq(SockResponse.class), any());
+
+        mockMvc.perform(post("/api/socks/income")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"color\":\"red\",\"cottonPercentage\":70,\"amount\":100}"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
     @Test
     void testGetSocks() throws Exception {
         when(sockService.getSocksAmount("red", "equal", 70)).thenReturn(amountResponse);
@@ -117,9 +211,85 @@ class SockControllerTest {
                 .andExpect(jsonPath("$.sockList[0].amount").value(100));
     }
 
+    @Test
+    void testUploadFile_InvalidRow() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv", "color,cottonPercentage,amount\nred,x,100".getBytes());
+        when(fileService.processSocksBatch(any(MultipartFile.class)))
+                .thenThrow(new InvalidCsvRowException(2, "Процент хлопка должен быть целым числом от 0 до 100"));
+
+        mockMvc.perform(multipart("/api/socks/batch").file(file))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testImportFile() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv", "color,cottonPercentage,amount\nred,70,100".getBytes());
+        when(fileService.importSocksBatch(any(MultipartFile.class)))
+                .thenReturn(new ImportSummary(1L, 1L, 1L, 0L, 0L, 5L, List.of(), false));
+
+        mockMvc.perform(multipart("/api/socks/batch/stream").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsRead").value(1))
+                .andExpect(jsonPath("$.positionsWritten").value(1))
+                .andExpect(jsonPath("$.inserted").value(1))
+                .andExpect(jsonPath("$.merged").value(0))
+                .andExpect(jsonPath("$.rejected").value(0));
+    }
+
+    @Test
+    void testSubmitImportJob() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv", "color,cottonPercentage,amount\nred,70,100".getBytes());
+        when(importJobService.submit(any(MultipartFile.class)))
+                .thenReturn(ImportJobResponse.builder().id("job-1").status("QUEUED").build());
+
+        mockMvc.perform(multipart("/api/socks/batch/jobs").file(file))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").value("job-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    void testSubmitImportJob_TooManyJobs() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv", "color,cottonPercentage,amount\nred,70,100".getBytes());
+        when(importJobService.submit(any(MultipartFile.class)))
+                .thenThrow(new TooManyImportJobsException("busy"));
+
+        mockMvc.perform(multipart("/api/socks/batch/jobs").file(file))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void testGetImportJob() throws Exception {
+        when(importJobService.getJob("job-1"))
+                .thenReturn(ImportJobResponse.builder().id("job-1").status("RUNNING").rowsProcessed(500L).build());
+
+        mockMvc.perform(get("/api/socks/batch/jobs/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("RUNNING"))
+                .andExpect(jsonPath("$.rowsProcessed").value(500));
+    }
+
+    @Test
+    void testGetImportJob_NotFound() throws Exception {
+        when(importJobService.getJob("missing")).thenThrow(new NoSuchImportJobException("missing"));
+
+        mockMvc.perform(get("/api/socks/batch/jobs/missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testCancelImportJob() throws Exception {
+        when(importJobService.cancel("job-1"))
+                .thenReturn(ImportJobResponse.builder().id("job-1").status("CANCELLED").build());
+
+        mockMvc.perform(delete("/api/socks/batch/jobs/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+    }
+
     @Test
     void testGetSocksSorted() throws Exception {
-        when(sockService.getSocksByFilterSorted(50, 80, "color")).thenReturn(socksList);
+        when(sockService.getSocksByFilterSorted(50, 80, "color", null, null)).thenReturn(socksList);
 
         mockMvc.perform(get("/api/socks/filter-by-cotton")
                         .param("from", "50")
@@ -131,4 +301,116 @@ class SockControllerTest {
                 .andExpect(jsonPath("$.sockList[0].cottonPercentage").value(70))
                 .andExpect(jsonPath("$.sockList[0].amount").value(100));
     }
+
+    @Test
+    void testGetSocksSorted_NextPage() throws Exception {
+        when(sockService.getSocksByFilterSorted(0, 100, null, 1, "abc"))
+                .thenReturn(new SocksList(List.of(sockResponse), "def", null));
+
+        mockMvc.perform(get("/api/socks/filter-by-cotton")
+                        .param("from", "0")
+                        .param("to", "100")
+                        .param("size", "1")
+                        .param("cursor", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sockList[0].id").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("def"));
+    }
+
+    @Test
+    void testGetSocksSorted_PageSizeTooLarge() throws Exception {
+        mockMvc.perform(get("/api/socks/filter-by-cotton")
+                        .param("from", "0")
+                        .param("to", "100")
+                        .param("size", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStreamSocksSorted() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<SockResponse> consumer = invocation.getArgument(3);
+            consumer.accept(sockResponse);
+            consumer.accept(new SockResponse(2L, "blue", 80, 5));
+            return null;
+        }).when(sockService).streamSocksByFilterSorted(eq(50), eq(80), eq("color"), any());
+
+        MvcResult result = mockMvc.perform(get("/api/socks/filter-by-cotton/stream")
+                        .param("from", "50")
+                        .param("to", "80")
+                        .param("sortedBy", "color"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"color\":\"red\",\"cottonPercentage\":70,\"amount\":100}\n" +
+                        "{\"id\":2,\"color\":\"blue\",\"cottonPercentage\":80,\"amount\":5}\n"));
+    }
+
+    @Test
+    void testExportSocks_GzipCsv() throws Exception {
+        String csv = "color,cottonPercentage,amount\nblue,80,5\nred,70,100\n";
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(csv.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportSocks(eq("csv"), any());
+
+        MvcResult result = mockMvc.perform(get("/api/socks/export")
+                        .param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/gzip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"socks.csv.gz\""))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(csv, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testExportSocks_InvalidFormat() throws Exception {
+        mockMvc.perform(get("/api/socks/export")
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetSocksSorted_Cbor() throws Exception {
+        SocksList page = new SocksList(List.of(sockResponse, new SockResponse(2L, "blue", 80, 5),
+                new SockResponse(3L, "red", 90, 7)), "cursor", null);
+        when(sockService.getSocksByFilterSorted(50, 90, "color", null, null)).thenReturn(page);
+
+        byte[] body = mockMvc.perform(get("/api/socks/filter-by-cotton")
+                        .param("from", "50")
+                        .param("to", "90")
+                        .param("sortedBy", "color")
+                        .accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        SocksColumns columns = new CBORMapper().readValue(body, SocksColumns.class);
+        assertEquals(List.of("red", "blue"), columns.getColors());
+        assertArrayEquals(new int[]{0, 1, 0}, columns.getColorIndexes());
+        assertArrayEquals(new int[]{70, 80, 90}, columns.getCottonPercentages());
+        assertEquals(page, columns.toSocksList());
+    }
+
+    @Test
+    void testGetSocksSorted_JsonByDefault() throws Exception {
+        when(sockService.getSocksByFilterSorted(50, 90, null, null, null)).thenReturn(socksList);
+
+        mockMvc.perform(get("/api/socks/filter-by-cotton")
+                        .param("from", "50")
+                        .param("to", "90")
+                        .accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
 }
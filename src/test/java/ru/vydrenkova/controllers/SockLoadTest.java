@@ -0,0 +1,204 @@
+package ru.vydrenkova.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares latency and throughput of the service on platform and on virtual request threads. Every client
+ * sends a mix of amount queries and incomes over its own connection; the percentiles and throughput of both
+ * modes are written to the test log. Run with {@code ./gradlew loadTest}, the load can be set with the
+ * {@code load.clients}, {@code load.requests} and {@code load.pool-size} system properties.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers(disabledWithoutDocker = true)
+abstract class SockLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SockLoadTest.class);
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 1000);
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("load.requests", 20);
+    private static final int POOL_SIZE = Integer.getInteger("load.pool-size", 20);
+    private static final int COLORS = 100;
+    private static final int INCOME_PERCENT = 20;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withCommand("postgres", "-c", "max_connections=200");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+        registry.add("spring.jpa.open-in-view", () -> "false");
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> POOL_SIZE);
+        registry.add("spring.datasource.hikari.minimum-idle", () -> POOL_SIZE);
+        registry.add("socks.cache.enabled", () -> "false");
+        registry.add("socks.idempotency.enabled", () -> "false");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM socks");
+        jdbcTemplate.update("INSERT INTO socks (color, cotton_percentage, amount) " +
+                "SELECT 'color' || c, p, 1000 FROM generate_series(0, ?) c, generate_series(0, 100) p", COLORS - 1);
+    }
+
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+    static class PlatformThreads extends SockLoadTest {
+
+        @Test
+        void testLoad() throws Exception {
+            runLoad("platform");
+        }
+    }
+
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    static class VirtualThreads extends SockLoadTest {
+
+        @Test
+        void testLoad() throws Exception {
+            runLoad("virtual");
+        }
+    }
+
+    void runLoad(String mode) throws Exception {
+        String baseUrl = "http://localhost:" + port + "/api/socks";
+        runClients(baseUrl, Math.min(CLIENTS, 50), 5);
+
+        Result result = runClients(baseUrl, CLIENTS, REQUESTS_PER_CLIENT);
+        log.info("{} threads: {} clients x {} requests, pool size {}: p50 {} ms, p99 {} ms, max {} ms, " +
+                        "{} requests/s, {} errors",
+                mode, CLIENTS, REQUESTS_PER_CLIENT, POOL_SIZE,
+                String.format("%.1f", result.percentile(50) / 1e6), String.format("%.1f", result.percentile(99) / 1e6),
+                String.format("%.1f", result.percentile(100) / 1e6), String.format("%.0f", result.throughput()),
+                result.errors());
+        assertEquals(0, result.errors());
+    }
+
+    /**
+     * Runs every client on its own virtual thread. The HTTP client opens a connection per concurrent request,
+     * so the client side does not limit the number of requests in flight.
+     */
+    private static Result runClients(String baseUrl, int clients, int requestsPerClient) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger errors = new AtomicInteger();
+        List<Future<long[]>> futures = new ArrayList<>();
+        long startedAt;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .executor(executor)
+                     .build()) {
+            for (int client = 0; client < clients; client++) {
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[requestsPerClient];
+                    start.await();
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        long requestStart = System.nanoTime();
+                        HttpResponse<Void> response = httpClient.send(nextRequest(baseUrl),
+                                HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = System.nanoTime() - requestStart;
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+            startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<long[]> future : futures) {
+                future.get();
+            }
+        }
+        long elapsed = System.nanoTime() - startedAt;
+
+        long[] latencies = new long[clients * requestsPerClient];
+        int offset = 0;
+        for (Future<long[]> future : futures) {
+            long[] clientLatencies = future.get();
+            System.arraycopy(clientLatencies, 0, latencies, offset, clientLatencies.length);
+            offset += clientLatencies.length;
+        }
+        Arrays.sort(latencies);
+        return new Result(latencies, elapsed, errors.get());
+    }
+
+    private static HttpRequest nextRequest(String baseUrl) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String color = "color" + random.nextInt(COLORS);
+        int cotton = random.nextInt(101);
+        if (random.nextInt(100) < INCOME_PERCENT) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/income"))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"color\":\"" + color + "\",\"cottonPercentage\":" + cotton + ",\"amount\":1}"))
+                    .build();
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "?color=" + color + "&operation=moreThan&cotton=" + cotton))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+    }
+
+    /**
+     * The outcome of a load run.
+     *
+     * @param latencies The sorted latencies of all requests in nanoseconds.
+     * @param elapsed   The wall time of the run in nanoseconds.
+     * @param errors    The number of responses with a status other than 200.
+     */
+    private record Result(long[] latencies, long elapsed, int errors) {
+
+        long percentile(int percent) {
+            int index = (int) Math.ceil(percent / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, index)];
+        }
+
+        double throughput() {
+            return latencies.length / (elapsed / 1e9);
+        }
+    }
+}
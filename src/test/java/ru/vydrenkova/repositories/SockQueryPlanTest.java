@@ -0,0 +1,89 @@
+package ru.vydrenkova.repositories;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the plans of the main socks queries before and after the index migration on a table of
+ * {@value #COLORS} colors with every cotton percentage. The plans are written to the test log.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SockQueryPlanTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SockQueryPlanTest.class);
+
+    private static final int COLORS = 2000;
+
+    private static final String SUM_AMOUNT = "SELECT sum(amount) FROM socks " +
+            "WHERE color = 'color7' AND cotton_percentage > 50";
+    private static final String PAGE_BY_COTTON = "SELECT * FROM socks " +
+            "WHERE cotton_percentage BETWEEN 10 AND 20 ORDER BY cotton_percentage, id LIMIT 1001";
+    private static final String PAGE_BY_COLOR_AFTER_CURSOR = "SELECT * FROM socks " +
+            "WHERE cotton_percentage BETWEEN 10 AND 90 AND color >= 'color500' " +
+            "AND (color > 'color500' OR (color = 'color500' AND id > 0)) ORDER BY color, id LIMIT 1001";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static final Map<String, String> plansBefore = new LinkedHashMap<>();
+    private static final Map<String, String> plansAfter = new LinkedHashMap<>();
+
+    @BeforeAll
+    static void migrateAndExplain() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        jdbcTemplate.update("INSERT INTO socks (color, cotton_percentage, amount) " +
+                "SELECT 'color' || c, p, (c * p) % 50 + 1 " +
+                "FROM generate_series(0, ?) c, generate_series(0, 100) p", COLORS - 1);
+        jdbcTemplate.execute("VACUUM ANALYZE socks");
+        explainAll(jdbcTemplate, plansBefore);
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate.execute("VACUUM ANALYZE socks");
+        explainAll(jdbcTemplate, plansAfter);
+    }
+
+    @Test
+    void testSumAmountUsesUniqueKeyIndex() {
+        assertTrue(plansAfter.get(SUM_AMOUNT).contains("socks_color_cotton_percentage_key"), plansAfter.get(SUM_AMOUNT));
+        assertFalse(plansAfter.get(SUM_AMOUNT).contains("Seq Scan"), plansAfter.get(SUM_AMOUNT));
+    }
+
+    @Test
+    void testPageByCottonReadsIndexInOrder() {
+        assertFalse(plansBefore.get(PAGE_BY_COTTON).contains("socks_cotton_percentage_id_idx"));
+        assertTrue(plansAfter.get(PAGE_BY_COTTON).contains("Index Scan using socks_cotton_percentage_id_idx"),
+                plansAfter.get(PAGE_BY_COTTON));
+    }
+
+    @Test
+    void testPageByColorDoesNotScanTable() {
+        assertFalse(plansAfter.get(PAGE_BY_COLOR_AFTER_CURSOR).contains("Seq Scan"),
+                plansAfter.get(PAGE_BY_COLOR_AFTER_CURSOR));
+    }
+
+    private static void explainAll(JdbcTemplate jdbcTemplate, Map<String, String> plans) {
+        for (String query : new String[]{SUM_AMOUNT, PAGE_BY_COTTON, PAGE_BY_COLOR_AFTER_CURSOR}) {
+            String plan = String.join("\n",
+                    jdbcTemplate.queryForList("EXPLAIN (ANALYZE, BUFFERS) " + query, String.class));
+            plans.put(query, plan);
+            log.info("{} indexes\n{}\n{}", plans == plansBefore ? "Before" : "After", query, plan);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ru.vydrenkova.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.exceptions.ConcurrentUpdateException;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.NoSuchSockException;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.services.SockService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class SockRepositoryConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 200;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> THREADS);
+    }
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository sockRepository;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository.deleteAll();
+    }
+
+    @Test
+    void testConcurrentIncomeIsExact() throws Exception {
+        runConcurrently(() -> {
+            sockService.addSocks(new SockRequest("red", 70, 1));
+            return true;
+        });
+
+        Sock sock = sockRepository.findByColorAndCottonPercentage("red", 70).orElseThrow();
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, sock.getAmount());
+        assertEquals(1, sockRepository.count());
+    }
+
+    @Test
+    void testConcurrentIncomeAndOutcomeIsExact() throws Exception {
+        int initialAmount = THREADS * OPERATIONS_PER_THREAD;
+        sockService.addSocks(new SockRequest("blue", 50, initialAmount));
+        AtomicInteger counter = new AtomicInteger();
+
+        runConcurrently(() -> {
+            if (counter.incrementAndGet() % 2 == 0) {
+                sockService.addSocks(new SockRequest("blue", 50, 3));
+            } else {
+                sockService.removeSocks(new SockRequest("blue", 50, 1));
+            }
+            return true;
+        });
+
+        int operations = THREADS * OPERATIONS_PER_THREAD;
+        Sock sock = sockRepository.findByColorAndCottonPercentage("blue", 50).orElseThrow();
+        assertEquals(initialAmount + (operations / 2) * 3 - (operations / 2), sock.getAmount());
+    }
+
+    @Test
+    void testConcurrentOutcomeNeverGoesNegative() throws Exception {
+        int initialAmount = THREADS * OPERATIONS_PER_THREAD / 2;
+        sockService.addSocks(new SockRequest("green", 30, initialAmount));
+
+        List<Boolean> results = runConcurrently(() -> {
+            try {
+                sockService.removeSocks(new SockRequest("green", 30, 1));
+                return true;
+            } catch (IllegalAmountException | NoSuchSockException e) {
+                return false;
+            }
+        });
+
+        assertEquals(initialAmount, results.stream().filter(Boolean::booleanValue).count());
+        assertTrue(sockRepository.findByColorAndCottonPercentage("green", 30).isEmpty());
+    }
+
+    @Test
+    void testConcurrentUpdatesOntoOneKeyLoseNoSocks() throws Exception {
+        List<Sock> rows = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            rows.add(Sock.builder().color("color" + i).cottonPercentage(10).amount(i + 1).build());
+        }
+        List<Sock> saved = sockRepository.saveAll(rows);
+        AtomicInteger next = new AtomicInteger();
+
+        List<Boolean> results = runConcurrently(THREADS, () -> {
+            Sock sock = saved.get(next.getAndIncrement());
+            try {
+                sockService.updateSocks(sock.getId(), new SockRequest("white", null, null));
+                return true;
+            } catch (ConcurrentUpdateException e) {
+                return false;
+            }
+        });
+
+        long merged = results.stream().filter(Boolean::booleanValue).count();
+        assertEquals(THREADS * (THREADS + 1) / 2,
+                sockRepository.findAll().stream().mapToInt(Sock::getAmount).sum());
+        assertEquals(THREADS - merged + 1, sockRepository.count());
+    }
+
+    private List<Boolean> runConcurrently(Callable<Boolean> operation) throws Exception {
+        return runConcurrently(THREADS * OPERATIONS_PER_THREAD, operation);
+    }
+
+    private List<Boolean> runConcurrently(int operations, Callable<Boolean> operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return operation.call();
+            }));
+        }
+        start.countDown();
+
+        List<Boolean> results = new ArrayList<>();
+        for (Future<Boolean> future : futures) {
+            results.add(future.get(1, TimeUnit.MINUTES));
+        }
+        executor.shutdown();
+        return results;
+    }
+}
@@ -0,0 +1,91 @@
+package ru.vydrenkova.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.services.SockService;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class SockRepositoryQueryTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository sockRepository;
+
+    private List<Sock> socks;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository.deleteAll();
+        List<Sock> rows = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            rows.add(Sock.builder().color("color" + i % 7).cottonPercentage(i % 101).amount(i + 1).build());
+        }
+        socks = sockRepository.saveAll(rows);
+    }
+
+    @Test
+    void testKeysetPagesVisitEverySockOnceInOrder() {
+        for (String sortedBy : new String[]{null, "color", "cotton"}) {
+            List<Long> visited = new ArrayList<>();
+            String cursor = null;
+            do {
+                SocksList page = sockService.getSocksByFilterSorted(10, 90, sortedBy, 17, cursor);
+                assertTrue(page.getSockList().size() <= 17);
+                page.getSockList().forEach(sock -> visited.add(sock.getId()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(expectedIds(sortedBy), visited, "sortedBy=" + sortedBy);
+        }
+    }
+
+    @Test
+    void testStreamReturnsEverySockInOrder() {
+        List<Long> streamed = new ArrayList<>();
+
+        sockService.streamSocksByFilterSorted(10, 90, "color", sock -> streamed.add(sock.getId()));
+
+        assertEquals(expectedIds("color"), streamed);
+    }
+
+    private List<Long> expectedIds(String sortedBy) {
+        Comparator<Sock> order = sortedBy == null ? Comparator.comparing(Sock::getId)
+                : sortedBy.equals("color") ? Comparator.comparing(Sock::getColor).thenComparing(Sock::getId)
+                : Comparator.comparing(Sock::getCottonPercentage).thenComparing(Sock::getId);
+        return socks.stream()
+                .filter(sock -> sock.getCottonPercentage() >= 10 && sock.getCottonPercentage() <= 90)
+                .sorted(order)
+                .map(Sock::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vydrenkova.config.AmountCacheProperties;
+import ru.vydrenkova.services.cache.AmountCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountCacheTest {
+
+    private AmountCache amountCache;
+    private final AtomicLong stored = new AtomicLong(100);
+
+    @BeforeEach
+    void setUp() {
+        AmountCacheProperties properties = new AmountCacheProperties();
+        properties.setMaximumSize(2);
+        amountCache = new AmountCache(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testGet_HitAfterMiss() {
+        assertEquals(100, amountCache.get("red", "equal", 70, stored::get));
+        stored.set(200);
+
+        assertEquals(100, amountCache.get("red", "equal", 70, stored::get));
+        assertEquals(1, amountCache.stats().hits());
+        assertEquals(1, amountCache.stats().misses());
+    }
+
+    @Test
+    void testInvalidate_OnlyTheWrittenColor() {
+        amountCache.get("red", "equal", 70, stored::get);
+        amountCache.get("blue", "equal", 70, stored::get);
+        stored.set(200);
+
+        amountCache.invalidate("red");
+
+        assertEquals(200, amountCache.get("red", "equal", 70, stored::get));
+        assertEquals(100, amountCache.get("blue", "equal", 70, stored::get));
+    }
+
+    @Test
+    void testInvalidate_AfterTransactionCompletes() {
+        amountCache.get("red", "equal", 70, stored::get);
+        TransactionSynchronizationManager.initSynchronization();
+
+        amountCache.invalidate("red");
+        stored.set(200);
+
+        assertEquals(100, amountCache.get("red", "equal", 70, stored::get));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertEquals(200, amountCache.get("red", "equal", 70, stored::get));
+    }
+
+    @Test
+    void testGet_LoadOverlappingWriteIsNotServed() {
+        long loaded = amountCache.get("red", "equal", 70, () -> {
+            long amount = stored.get();
+            stored.set(200);
+            amountCache.invalidate("red");
+            return amount;
+        });
+
+        assertEquals(100, loaded);
+        assertEquals(200, amountCache.get("red", "equal", 70, stored::get));
+    }
+
+    @Test
+    void testGet_BoundedSize() {
+        for (int cotton = 0; cotton < 100; cotton++) {
+            amountCache.get("red", "equal", cotton, stored::get);
+        }
+
+        AmountCache.Stats stats = amountCache.stats();
+        assertEquals(98, stats.evictions());
+        assertEquals(2, stats.size());
+    }
+}
@@ -0,0 +1,138 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.RowError;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.InvalidCsvRowException;
+import ru.vydrenkova.exceptions.WrongHeadersException;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.impl.CopyFileServiceImpl;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "socks.import.loader=copy")
+@Testcontainers(disabledWithoutDocker = true)
+class CopyFileServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private SockRepository sockRepository;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository.deleteAll();
+    }
+
+    @Test
+    void testCopyLoaderIsPrimary() {
+        assertInstanceOf(CopyFileServiceImpl.class, fileService);
+    }
+
+    @Test
+    void testImportSocksBatch_MergesIntoExistingStock() {
+        sockRepository.save(Sock.builder().color("red").cottonPercentage(70).amount(10).build());
+
+        ImportSummary summary = fileService.importSocksBatch(csv("amount,color,cottonPercentage\n" +
+                "5,red,70\n7,blue,80\n3,blue,80\n"));
+
+        assertEquals(3, summary.getRowsRead());
+        assertEquals(2, summary.getPositionsWritten());
+        assertEquals(1, summary.getInserted());
+        assertEquals(2, summary.getMerged());
+        assertEquals(0, summary.getRejected());
+        assertEquals(15, sockRepository.findByColorAndCottonPercentage("red", 70).orElseThrow().getAmount());
+        assertEquals(10, sockRepository.findByColorAndCottonPercentage("blue", 80).orElseThrow().getAmount());
+    }
+
+    @Test
+    void testImportSocksBatch_RejectsInvalidRowsLikeBatchLoader() {
+        ImportSummary summary = fileService.importSocksBatch(csv("color,cottonPercentage,amount\n" +
+                "red,70,5\n" +
+                ",70,5\n" +
+                "red,abc,5\n" +
+                "red,101,5\n" +
+                "red,70,0\n" +
+                "red,70,99999999999\n" +
+                "  ,x,5\n" +
+                "red,70,1\n"));
+
+        assertEquals(8, summary.getRowsRead());
+        assertEquals(6, summary.getRejected());
+        assertEquals(1, summary.getPositionsWritten());
+        assertEquals(List.of(
+                new RowError(3L, SockRowValidator.EMPTY_COLOR),
+                new RowError(4L, SockRowValidator.INVALID_COTTON_PERCENTAGE),
+                new RowError(5L, SockRowValidator.INVALID_COTTON_PERCENTAGE),
+                new RowError(6L, SockRowValidator.INVALID_AMOUNT),
+                new RowError(7L, SockRowValidator.INVALID_AMOUNT),
+                new RowError(8L, SockRowValidator.INVALID_COTTON_PERCENTAGE)), summary.getErrors());
+        assertEquals(6, sockRepository.findByColorAndCottonPercentage("red", 70).orElseThrow().getAmount());
+    }
+
+    @Test
+    void testImportSocksBatch_AmountOverflowingStoredSocksAbortsImport() {
+        sockRepository.save(Sock.builder().color("red").cottonPercentage(70).amount(Integer.MAX_VALUE - 5).build());
+
+        assertThrows(IllegalAmountException.class, () ->
+                fileService.importSocksBatch(csv("color,cottonPercentage,amount\nblue,80,1\nred,70,3\nred,70,3\n")));
+
+        assertEquals(Integer.MAX_VALUE - 5, sockRepository.findByColorAndCottonPercentage("red", 70).orElseThrow().getAmount());
+        assertTrue(sockRepository.findByColorAndCottonPercentage("blue", 80).isEmpty());
+    }
+
+    @Test
+    void testImportSocksBatch_AmountOverflowingInFileAbortsImport() {
+        assertThrows(IllegalAmountException.class, () ->
+                fileService.importSocksBatch(csv("color,cottonPercentage,amount\nred,70,2147483647\nred,70,1\n")));
+
+        assertEquals(0, sockRepository.count());
+    }
+
+    @Test
+    void testImportSocksBatch_WrongColumnCountAbortsImport() {
+        InvalidCsvRowException exception = assertThrows(InvalidCsvRowException.class, () ->
+                fileService.importSocksBatch(csv("color,cottonPercentage,amount\nred,70,5\nblue,80\n")));
+
+        assertEquals(3, exception.getLine());
+        assertEquals(SockRowValidator.WRONG_COLUMNS, exception.getReason());
+        assertEquals(0, sockRepository.count());
+    }
+
+    @Test
+    void testImportSocksBatch_WrongHeaders() {
+        assertThrows(WrongHeadersException.class, () ->
+                fileService.importSocksBatch(csv("wrongHeader1,wrongHeader2,wrongHeader3\nred,70,5\n")));
+    }
+
+    private static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("socks.csv", "socks.csv", "text/csv", content.getBytes());
+    }
+}
@@ -0,0 +1,144 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vydrenkova.config.IndexProperties;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.index.CottonHistogramIndex;
+import ru.vydrenkova.services.ledger.SockKey;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CottonHistogramIndexTest {
+
+    private SockRepository sockRepository;
+    private CottonHistogramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository = mock(SockRepository.class);
+        when(sockRepository.streamAll(any(), any(), anyInt())).thenReturn(Stream.of(
+                Sock.builder().id(1L).color("red").cottonPercentage(0).amount(10).build(),
+                Sock.builder().id(2L).color("red").cottonPercentage(50).amount(20).build(),
+                Sock.builder().id(3L).color("red").cottonPercentage(100).amount(30).build(),
+                Sock.builder().id(4L).color("blue").cottonPercentage(50).amount(5).build()));
+        IndexProperties properties = new IndexProperties();
+        properties.setRefreshIntervalSeconds(0);
+        index = new CottonHistogramIndex(sockRepository, mock(PlatformTransactionManager.class), properties);
+        index.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testAmount_LoadedFromRepository() {
+        assertEquals(50, index.amount("red", "moreThan", 0));
+        assertEquals(30, index.amount("red", "lessThan", 100));
+        assertEquals(20, index.amount("red", "equal", 50));
+        assertEquals(30, index.amount("red", "moreThan", 50));
+        assertEquals(0, index.amount("red", "moreThan", 100));
+        assertEquals(0, index.amount("green", "equal", 50));
+    }
+
+    @Test
+    void testAmount_UnsupportedOperation() {
+        assertThrows(IllegalArgumentException.class, () -> index.amount("red", "between", 50));
+    }
+
+    @Test
+    void testAmountBetween_AllColors() {
+        assertEquals(25, index.amountBetween(50, 50));
+        assertEquals(65, index.amountBetween(0, 100));
+        assertEquals(55, index.amountBetween(1, 100));
+        assertEquals(0, index.amountBetween(60, 40));
+    }
+
+    @Test
+    void testAdd_OutOfRangeCottonPercentage() {
+        index.add("red", 150, 7);
+
+        assertEquals(37, index.amount("red", "moreThan", 50));
+        assertEquals(7, index.amount("red", "equal", 150));
+        assertEquals(60, index.amount("red", "lessThan", 101));
+        assertEquals(7, index.amountBetween(101, 200));
+    }
+
+    @Test
+    void testAdd_AppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.add("red", 50, -20);
+        assertEquals(20, index.amount("red", "equal", 50));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertEquals(0, index.amount("red", "equal", 50));
+    }
+
+    @Test
+    void testAddAll_CopiesDeltasUntilCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        Map<SockKey, Integer> deltas = new HashMap<>(Map.of(new SockKey("blue", 50), 5));
+
+        index.addAll(deltas);
+        deltas.clear();
+        assertEquals(5, index.amount("blue", "equal", 50));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertEquals(10, index.amount("blue", "equal", 50));
+    }
+
+    @Test
+    void testRebuild_PicksUpWritesOfOtherNodes() {
+        when(sockRepository.streamAll(any(), any(), anyInt())).thenReturn(Stream.of(
+                Sock.builder().id(1L).color("red").cottonPercentage(0).amount(10).build(),
+                Sock.builder().id(2L).color("red").cottonPercentage(50).amount(25).build(),
+                Sock.builder().id(5L).color("green").cottonPercentage(80).amount(4).build()));
+
+        index.rebuild();
+
+        assertEquals(25, index.amount("red", "equal", 50));
+        assertEquals(0, index.amount("red", "equal", 100));
+        assertEquals(0, index.amount("blue", "equal", 50));
+        assertEquals(4, index.amount("green", "moreThan", 50));
+        assertEquals(39, index.amountBetween(0, 100));
+    }
+
+    @Test
+    void testRebuild_ReplaysChangesCommittedDuringRebuild() {
+        when(sockRepository.streamAll(any(), any(), anyInt())).thenReturn(Stream.of(
+                        Sock.builder().id(1L).color("red").cottonPercentage(0).amount(10).build(),
+                        Sock.builder().id(2L).color("red").cottonPercentage(50).amount(20).build())
+                .peek(sock -> {
+                    if (sock.getId() == 2L) {
+                        index.add("red", 50, 3);
+                    }
+                }));
+
+        index.rebuild();
+
+        assertEquals(23, index.amount("red", "equal", 50));
+        assertEquals(33, index.amountBetween(0, 100));
+    }
+}
@@ -0,0 +1,97 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class ExportServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private SockRepository sockRepository;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository.deleteAll();
+        sockRepository.saveAll(List.of(
+                Sock.builder().color("red").cottonPercentage(70).amount(100).build(),
+                Sock.builder().color("blue").cottonPercentage(80).amount(5).build(),
+                Sock.builder().color("navy, \"dark\"").cottonPercentage(0).amount(1).build(),
+                Sock.builder().color("blue").cottonPercentage(10).amount(0).build()));
+    }
+
+    @Test
+    void testExportCsv_SortedWithImportHeaders() throws IOException {
+        String csv = export("csv");
+
+        assertTrue(csv.startsWith("color,cottonPercentage,amount\n"));
+        assertTrue(csv.contains("blue,80,5\n"));
+        assertTrue(csv.contains("\"navy, \"\"dark\"\"\",0,1\n"));
+        assertFalse(csv.contains("blue,10,"));
+        assertEquals(4, csv.lines().count());
+    }
+
+    @Test
+    void testExportCsv_RoundTripsThroughImport() throws IOException {
+        byte[] exported = export("csv").getBytes(StandardCharsets.UTF_8);
+
+        sockRepository.deleteAll();
+        ImportSummary summary = fileService.importSocksBatch(
+                new MockMultipartFile("socks.csv", "socks.csv", "text/csv", exported));
+
+        assertEquals(3, summary.getRowsRead());
+        assertEquals(0, summary.getRejected());
+        assertArrayEquals(exported, export("csv").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportNdjson() throws IOException {
+        List<String> lines = export("ndjson").lines().toList();
+
+        assertEquals(3, lines.size());
+        assertTrue(lines.contains("{\"color\":\"red\",\"cottonPercentage\":70,\"amount\":100}"));
+        assertTrue(lines.contains("{\"color\":\"navy, \\\"dark\\\"\",\"cottonPercentage\":0,\"amount\":1}"));
+    }
+
+    private String export(String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportService.exportSocks(format, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,169 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.config.ImportProperties;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.services.batch.ImportMetrics;
+import ru.vydrenkova.services.batch.ParallelCsvParser;
+import ru.vydrenkova.services.batch.SockAggregator;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.impl.FileServiceImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+/**
+ * Imports millions of generated rows. Run with {@code gradle largeImportTest}, which limits the heap to 64 MB.
+ */
+@Tag("large")
+class FileServiceLargeImportTest {
+
+    private static final int ROWS = 3_000_000;
+    private static final int REJECT_EVERY = 1000;
+
+    private static final int POSITIONS = 50 * 101;
+    private static final int CHUNK_SIZE = 1000;
+
+    @Test
+    void testImportSocksBatch_MillionsOfRows() throws IOException {
+        CountingBatchWriter writer = new CountingBatchWriter();
+        ImportProperties properties = new ImportProperties();
+        properties.setParallelism(1);
+        properties.setParallelThresholdBytes(Long.MAX_VALUE);
+
+        ImportSummary summary = importGeneratedFile(writer, properties);
+
+        assertImported(summary, writer);
+    }
+
+    @Test
+    void testImportSocksBatch_MillionsOfRowsInParallelChunks() throws IOException {
+        CountingBatchWriter writer = new CountingBatchWriter();
+        ImportProperties properties = new ImportProperties();
+        properties.setParallelism(2);
+        properties.setParallelThresholdBytes(1024 * 1024);
+        properties.setChunkSize(CHUNK_SIZE);
+
+        ImportSummary summary = importGeneratedFile(writer, properties);
+
+        assertImported(summary, writer);
+        assertEquals((POSITIONS + CHUNK_SIZE - 1) / CHUNK_SIZE, writer.chunks);
+    }
+
+    /**
+     * Imports the generated rows through a file whose size is that of the generated content, so that
+     * the import takes the route chosen by the parallel threshold of the properties.
+     */
+    private static ImportSummary importGeneratedFile(SockBatchWriter writer, ImportProperties properties)
+            throws IOException {
+        MultipartFile file = Mockito.mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn("large.csv");
+        when(file.isEmpty()).thenReturn(false);
+        when(file.getSize()).thenReturn(generatedSize());
+        when(file.getInputStream()).thenAnswer(invocation -> new GeneratedCsvInputStream(ROWS));
+        doAnswer(invocation -> Files.copy(new GeneratedCsvInputStream(ROWS), invocation.<Path>getArgument(0),
+                StandardCopyOption.REPLACE_EXISTING))
+                .when(file).transferTo(any(Path.class));
+
+        FileService fileService = new FileServiceImpl(writer, properties, new ParallelCsvParser(),
+                new ImportMetrics(new SimpleMeterRegistry()), Optional.empty());
+        return fileService.importSocksBatch(file);
+    }
+
+    private static void assertImported(ImportSummary summary, CountingBatchWriter writer) {
+        long rejected = ROWS / REJECT_EVERY;
+        assertEquals(ROWS, summary.getRowsRead());
+        assertEquals(rejected, summary.getRejected());
+        assertEquals(POSITIONS, summary.getPositionsWritten());
+        assertEquals(ROWS - rejected, summary.getInserted() + summary.getMerged());
+        assertEquals(ROWS - rejected, writer.rows);
+    }
+
+    private static long generatedSize() throws IOException {
+        try (InputStream inputStream = new GeneratedCsvInputStream(ROWS)) {
+            return inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static class CountingBatchWriter extends SockBatchWriter {
+        private long rows;
+        private int chunks;
+
+        CountingBatchWriter() {
+            super(null, null, Optional.empty());
+        }
+
+        @Override
+        public ChunkResult write(SockAggregator aggregator) {
+            rows += aggregator.rows();
+            chunks++;
+            return new ChunkResult(aggregator.positions(), aggregator.rows() - aggregator.positions());
+        }
+    }
+
+    /**
+     * Produces CSV rows on the fly, so the file itself never occupies the heap.
+     */
+    private static class GeneratedCsvInputStream extends InputStream {
+        private final int rows;
+        private int row = -1;
+        private byte[] line = new byte[0];
+        private int position;
+
+        GeneratedCsvInputStream(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length && !nextLine()) {
+                return -1;
+            }
+            return line[position++];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == line.length && !nextLine()) {
+                return -1;
+            }
+            int count = Math.min(length, line.length - position);
+            System.arraycopy(line, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean nextLine() {
+            if (row >= rows) {
+                return false;
+            }
+            String text;
+            if (row == -1) {
+                text = "color,cottonPercentage,amount\n";
+            } else if ((row + 1) % REJECT_EVERY == 0) {
+                text = "color" + (row % 50) + ",not-a-number," + (row % 10 + 1) + "\n";
+            } else {
+                text = "color" + (row % 50) + "," + (row % 101) + "," + (row % 10 + 1) + "\n";
+            }
+            row++;
+            line = text.getBytes(StandardCharsets.US_ASCII);
+            position = 0;
+            return true;
+        }
+    }
+}
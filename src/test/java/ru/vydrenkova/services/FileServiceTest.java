@@ -1,5 +1,6 @@
 package ru.vydrenkova.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -8,19 +9,31 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.dto.responses.RowError;
 import ru.vydrenkova.dto.responses.SocksList;
 import ru.vydrenkova.exceptions.EmptyFileException;
 import ru.vydrenkova.exceptions.FileReadingException;
+import ru.vydrenkova.exceptions.InvalidCsvRowException;
 import ru.vydrenkova.exceptions.WrongFormatException;
 import ru.vydrenkova.exceptions.WrongHeadersException;
 import ru.vydrenkova.models.Sock;
 import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.batch.SockAggregator;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.batch.SockRowValidator;
+import ru.vydrenkova.services.ledger.SockKey;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -29,9 +42,15 @@ class FileServiceTest {
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockBean
     private SockRepository sockRepository;
 
+    @MockBean
+    private SockBatchWriter sockBatchWriter;
+
     private MultipartFile validFile;
     private MultipartFile emptyFile;
     private MultipartFile wrongFormatFile;
@@ -53,9 +72,11 @@ class FileServiceTest {
 
     @Test
     void testProcessSocksBatch_ValidFile() {
-        when(sockRepository.saveAll(anyList())).thenReturn(List.of(
-                Sock.builder().id(1L).color("red").cottonPercentage(70).amount(100).build(),
-                Sock.builder().id(2L).color("blue").cottonPercentage(80).amount(50).build()
+        when(sockBatchWriter.upsert(anyMap())).thenReturn(Map.of(
+                new SockKey("red", 70), new SockBatchWriter.UpsertedRow(
+                        Sock.builder().id(1L).color("red").cottonPercentage(70).amount(100).build(), true),
+                new SockKey("blue", 80), new SockBatchWriter.UpsertedRow(
+                        Sock.builder().id(2L).color("blue").cottonPercentage(80).amount(50).build(), true)
         ));
 
         SocksList result = fileService.processSocksBatch(validFile);
@@ -65,6 +86,145 @@ class FileServiceTest {
         assertEquals("blue", result.getSockList().get(1).getColor());
     }
 
+    @Test
+    void testProcessSocksBatch_DuplicateRowsAreMerged() {
+        String content = "color,cottonPercentage,amount\nred,70,100\nred,70,50";
+        MultipartFile file = new MockMultipartFile("duplicates.csv", "duplicates.csv", "text/csv", content.getBytes());
+        when(sockBatchWriter.upsert(Map.of(new SockKey("red", 70), 150))).thenReturn(Map.of(
+                new SockKey("red", 70), new SockBatchWriter.UpsertedRow(
+                        Sock.builder().id(1L).color("red").cottonPercentage(70).amount(170).build(), false)));
+
+        SocksList result = fileService.processSocksBatch(file);
+
+        assertEquals(1, result.getSockList().size());
+        assertEquals(170, result.getSockList().get(0).getAmount());
+    }
+
+    @Test
+    void testImportSocksBatch_ValidFile() {
+        when(sockBatchWriter.write(any(SockAggregator.class))).thenReturn(new SockBatchWriter.ChunkResult(2, 0));
+
+        ImportSummary summary = fileService.importSocksBatch(validFile);
+
+        assertEquals(2, summary.getRowsRead());
+        assertEquals(2, summary.getPositionsWritten());
+        assertEquals(2, summary.getInserted());
+        assertEquals(0, summary.getMerged());
+        assertEquals(0, summary.getRejected());
+    }
+
+    @Test
+    void testImportSocksBatch_AggregatesDuplicatesAndRejectsInvalidRows() {
+        Map<SockKey, Long> written = new HashMap<>();
+        when(sockBatchWriter.write(any(SockAggregator.class))).thenAnswer(invocation -> {
+            SockAggregator aggregator = invocation.getArgument(0);
+            aggregator.forEachSorted((color, cotton, amount, rows) -> written.put(new SockKey(color, cotton), amount));
+            return new SockBatchWriter.ChunkResult(aggregator.positions(), aggregator.rows() - aggregator.positions());
+        });
+        String content = "color,cottonPercentage,amount\nred,70,100\nblue,80,abc\ngreen,101,5\nblue,80,0\n" +
+                "blue,80,50\nred,70\nred,70,20\nblue,80,1";
+        MultipartFile file = new MockMultipartFile("mixed.csv", "mixed.csv", "text/csv", content.getBytes());
+
+        ImportSummary summary = fileService.importSocksBatch(file);
+
+        assertEquals(8, summary.getRowsRead());
+        assertEquals(2, summary.getPositionsWritten());
+        assertEquals(2, summary.getInserted());
+        assertEquals(2, summary.getMerged());
+        assertEquals(4, summary.getRejected());
+        assertEquals(Map.of(new SockKey("red", 70), 120L, new SockKey("blue", 80), 51L), written);
+        assertEquals(List.of(
+                new RowError(3L, SockRowValidator.INVALID_AMOUNT),
+                new RowError(4L, SockRowValidator.INVALID_COTTON_PERCENTAGE),
+                new RowError(5L, SockRowValidator.INVALID_AMOUNT),
+                new RowError(7L, SockRowValidator.WRONG_COLUMNS)), summary.getErrors());
+        assertFalse(summary.getErrorsTruncated());
+    }
+
+    @Test
+    void testImportSocksBatch_RejectsRowsOverflowingPositionAmount() {
+        Map<SockKey, Long> written = new HashMap<>();
+        when(sockBatchWriter.write(any(SockAggregator.class))).thenAnswer(invocation -> {
+            SockAggregator aggregator = invocation.getArgument(0);
+            aggregator.forEachSorted((color, cotton, amount, rows) -> written.put(new SockKey(color, cotton), amount));
+            return new SockBatchWriter.ChunkResult(aggregator.positions(), aggregator.rows() - aggregator.positions());
+        });
+        String content = "color,cottonPercentage,amount\nred,70,2147483000\nred,70,1000\nred,70,647\nblue,80,1";
+        MultipartFile file = new MockMultipartFile("overflow.csv", "overflow.csv", "text/csv", content.getBytes());
+
+        ImportSummary summary = fileService.importSocksBatch(file);
+
+        assertEquals(1, summary.getRejected());
+        assertEquals(List.of(new RowError(3L, SockRowValidator.AMOUNT_OVERFLOW)), summary.getErrors());
+        assertEquals(Map.of(new SockKey("red", 70), (long) Integer.MAX_VALUE, new SockKey("blue", 80), 1L), written);
+    }
+
+    @Test
+    void testImportSocksBatch_RecordsMetrics() {
+        when(sockBatchWriter.write(any(SockAggregator.class))).thenReturn(new SockBatchWriter.ChunkResult(1, 1));
+        double accepted = meterRegistry.counter("socks.import.rows", "result", "accepted").count();
+        double rejected = meterRegistry.counter("socks.import.rows", "result", "rejected").count();
+        long chunks = meterRegistry.timer("socks.import.chunk").count();
+        MultipartFile file = new MockMultipartFile("metrics.csv", "metrics.csv", "text/csv",
+                "color,cottonPercentage,amount\nred,70,1\nred,70,2\nred,70,x".getBytes());
+
+        fileService.importSocksBatch(file);
+
+        assertEquals(accepted + 2, meterRegistry.counter("socks.import.rows", "result", "accepted").count());
+        assertEquals(rejected + 1, meterRegistry.counter("socks.import.rows", "result", "rejected").count());
+        assertEquals(chunks + 1, meterRegistry.timer("socks.import.chunk").count());
+    }
+
+    @Test
+    void testImportSocksBatch_ErrorReportIsCapped() {
+        when(sockBatchWriter.write(any(SockAggregator.class))).thenReturn(new SockBatchWriter.ChunkResult(1, 0));
+        StringBuilder content = new StringBuilder("color,cottonPercentage,amount\n");
+        for (int i = 0; i < 500; i++) {
+            content.append("red,70,x\n");
+        }
+        content.append("red,70,1\n");
+        MultipartFile file = new MockMultipartFile("bad.csv", "bad.csv", "text/csv", content.toString().getBytes());
+
+        ImportSummary summary = fileService.importSocksBatch(file);
+
+        assertEquals(500, summary.getRejected());
+        assertEquals(1, summary.getInserted());
+        assertEquals(100, summary.getErrors().size());
+        assertEquals(101L, summary.getErrors().get(99).getLine());
+        assertTrue(summary.getErrorsTruncated());
+    }
+
+    @Test
+    void testProcessSocksBatch_InvalidRow() {
+        String content = "color,cottonPercentage,amount\nred,70,100\nblue,eighty,50";
+        MultipartFile file = new MockMultipartFile("invalid.csv", "invalid.csv", "text/csv", content.getBytes());
+
+        InvalidCsvRowException exception = assertThrows(InvalidCsvRowException.class,
+                () -> fileService.processSocksBatch(file));
+
+        assertEquals(3, exception.getLine());
+        assertEquals(SockRowValidator.INVALID_COTTON_PERCENTAGE, exception.getReason());
+        verify(sockBatchWriter, never()).upsert(anyMap());
+    }
+
+    @Test
+    void testProcessSocksBatch_AmountOverflow() {
+        String content = "color,cottonPercentage,amount\nred,70,2147483647\nred,70,1";
+        MultipartFile file = new MockMultipartFile("overflow.csv", "overflow.csv", "text/csv", content.getBytes());
+
+        InvalidCsvRowException exception = assertThrows(InvalidCsvRowException.class,
+                () -> fileService.processSocksBatch(file));
+
+        assertEquals(3, exception.getLine());
+        assertEquals(SockRowValidator.AMOUNT_OVERFLOW, exception.getReason());
+        verify(sockBatchWriter, never()).upsert(anyMap());
+    }
+
+    @Test
+    void testImportSocksBatch_WrongHeadersFile() {
+        assertThrows(WrongHeadersException.class, () -> fileService.importSocksBatch(wrongHeadersFile));
+    }
+
     @Test
     void testProcessSocksBatch_EmptyFile() {
         assertThrows(EmptyFileException.class, () -> fileService.processSocksBatch(emptyFile));
@@ -0,0 +1,124 @@
+package ru.vydrenkova.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.config.IdempotencyProperties;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.exceptions.IdempotencyKeyInProgressException;
+import ru.vydrenkova.exceptions.IdempotencyKeyMismatchException;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.services.idempotency.IdempotencyStore;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class IdempotencyStoreTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final SockRequest request = new SockRequest("red", 70, 5);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM idempotency_keys");
+    }
+
+    @Test
+    void testRetryReplaysFirstResponse() {
+        IdempotencyStore store = newStore(60);
+
+        SockResponse first = store.execute("key-1", "income", request, SockResponse.class, this::addSocks);
+        SockResponse retry = store.execute("key-1", "income", request, SockResponse.class, this::addSocks);
+        SockResponse fromOtherNode = newStore(60).execute("key-1", "income", request, SockResponse.class, this::addSocks);
+
+        assertEquals(1, executions.get());
+        assertEquals(first, retry);
+        assertEquals(first, fromOtherNode);
+    }
+
+    @Test
+    void testKeyReusedForDifferentRequest() {
+        IdempotencyStore store = newStore(60);
+        store.execute("key-1", "income", request, SockResponse.class, this::addSocks);
+
+        assertThrows(IdempotencyKeyMismatchException.class, () ->
+                store.execute("key-1", "outcome", request, SockResponse.class, this::addSocks));
+        assertThrows(IdempotencyKeyMismatchException.class, () ->
+                newStore(60).execute("key-1", "income", new SockRequest("red", 70, 6), SockResponse.class, this::addSocks));
+    }
+
+    @Test
+    void testFailedRequestReleasesKey() {
+        IdempotencyStore store = newStore(60);
+
+        assertThrows(IllegalAmountException.class, () -> store.execute("key-1", "outcome", request, SockResponse.class,
+                () -> {
+                    throw new IllegalAmountException("Носков на складе меньше.");
+                }));
+        store.execute("key-1", "outcome", request, SockResponse.class, this::addSocks);
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testRequestInProgressIsRefused() {
+        IdempotencyStore store = newStore(60);
+        store.execute("key-1", "income", request, SockResponse.class, this::addSocks);
+        jdbcTemplate.update("INSERT INTO idempotency_keys (idempotency_key, fingerprint, created_at) " +
+                "SELECT 'key-2', fingerprint, created_at FROM idempotency_keys WHERE idempotency_key = 'key-1'");
+
+        assertThrows(IdempotencyKeyInProgressException.class, () ->
+                store.execute("key-2", "income", request, SockResponse.class, this::addSocks));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testExpiredKeyIsClaimedAgain() {
+        IdempotencyStore store = newStore(0);
+
+        store.execute("key-1", "income", request, SockResponse.class, this::addSocks);
+        store.execute("key-1", "income", request, SockResponse.class, this::addSocks);
+
+        assertEquals(2, executions.get());
+    }
+
+    private SockResponse addSocks() {
+        return new SockResponse(1L, "red", 70, 5 * executions.incrementAndGet());
+    }
+
+    private IdempotencyStore newStore(long ttlMinutes) {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setTtlMinutes(ttlMinutes);
+        return new IdempotencyStore(jdbcTemplate, objectMapper, properties);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+import ru.vydrenkova.config.ImportProperties;
+import ru.vydrenkova.dto.responses.ImportJobResponse;
+import ru.vydrenkova.dto.responses.ImportSummary;
+import ru.vydrenkova.exceptions.NoSuchImportJobException;
+import ru.vydrenkova.exceptions.TooManyImportJobsException;
+import ru.vydrenkova.services.batch.ImportProgress;
+import ru.vydrenkova.services.impl.ImportJobServiceImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ImportJobServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileService fileService;
+    private ImportProperties properties;
+    private ImportJobServiceImpl importJobService;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final MultipartFile file = new MockMultipartFile("file", "socks.csv", "text/csv",
+            "color,cottonPercentage,amount\nred,70,100".getBytes());
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileService = mock(FileService.class);
+        when(fileService.spoolSocksBatch(any(MultipartFile.class)))
+                .thenAnswer(invocation -> Files.createTempFile(tempDir, "spooled", ".csv"));
+
+        properties = new ImportProperties();
+        properties.getJobs().setMaxConcurrent(1);
+        properties.getJobs().setQueueCapacity(1);
+        importJobService = new ImportJobServiceImpl(fileService, properties, new MockEnvironment());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        importJobService.shutdown();
+    }
+
+    @Test
+    void testSubmit_CompletesWithSummary() throws Exception {
+        ImportSummary summary = ImportSummary.builder().rowsRead(1L).inserted(1L).build();
+        when(fileService.importSocksFile(any(Path.class), any(ImportProgress.class))).thenAnswer(invocation -> {
+            invocation.<ImportProgress>getArgument(1).rangeParsed(10, 1, 0);
+            return summary;
+        });
+
+        ImportJobResponse submitted = importJobService.submit(file);
+        ImportJobResponse finished = awaitFinished(submitted.getId());
+
+        assertEquals("COMPLETED", finished.getStatus());
+        assertEquals(summary, finished.getResult());
+        assertEquals(1, finished.getRowsProcessed());
+    }
+
+    @Test
+    void testSubmit_RunsOnVirtualThreadWhenEnabled() throws Exception {
+        importJobService.shutdown();
+        importJobService = new ImportJobServiceImpl(fileService, properties,
+                new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true"));
+        AtomicBoolean virtual = new AtomicBoolean();
+        when(fileService.importSocksFile(any(Path.class), any(ImportProgress.class))).thenAnswer(invocation -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            return new ImportSummary();
+        });
+
+        assertEquals("COMPLETED", awaitFinished(importJobService.submit(file).getId()).getStatus());
+        assertTrue(virtual.get());
+    }
+
+    @Test
+    void testSubmit_FailedImport() throws Exception {
+        when(fileService.importSocksFile(any(Path.class), any(ImportProgress.class)))
+                .thenThrow(new IllegalStateException("broken"));
+
+        ImportJobResponse finished = awaitFinished(importJobService.submit(file).getId());
+
+        assertEquals("FAILED", finished.getStatus());
+        assertEquals("broken", finished.getError());
+    }
+
+    @Test
+    void testSubmit_QueueIsBounded() throws Exception {
+        blockImports();
+
+        importJobService.submit(file);
+        importJobService.submit(file);
+
+        assertThrows(TooManyImportJobsException.class, () -> importJobService.submit(file));
+        verify(fileService, times(2)).spoolSocksBatch(any(MultipartFile.class));
+    }
+
+    @Test
+    void testCancel_QueuedAndRunningJobs() throws Exception {
+        blockImports();
+        String running = importJobService.submit(file).getId();
+        String queued = importJobService.submit(file).getId();
+
+        ImportJobResponse cancelled = importJobService.cancel(queued);
+        assertEquals("CANCELLED", cancelled.getStatus());
+        assertNull(cancelled.getRowsPerSecond());
+        importJobService.cancel(running);
+        release.countDown();
+
+        assertEquals("CANCELLED", awaitFinished(running).getStatus());
+    }
+
+    @Test
+    void testGetJob_NotFound() {
+        assertThrows(NoSuchImportJobException.class, () -> importJobService.getJob("missing"));
+    }
+
+    private void blockImports() {
+        when(fileService.importSocksFile(any(Path.class), any(ImportProgress.class))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            if (invocation.<ImportProgress>getArgument(1).isCancelled()) {
+                throw new CancellationException();
+            }
+            return new ImportSummary();
+        });
+    }
+
+    private ImportJobResponse awaitFinished(String id) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            ImportJobResponse response = importJobService.getJob(id);
+            if (!response.getStatus().equals("QUEUED") && !response.getStatus().equals("RUNNING")) {
+                return response;
+            }
+            Thread.sleep(50);
+        }
+        fail("Import job " + id + " did not finish");
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.Test;
+import ru.vydrenkova.dto.responses.RowError;
+import ru.vydrenkova.services.batch.MappedCsvRangeParser;
+import ru.vydrenkova.services.batch.ParallelCsvParser;
+import ru.vydrenkova.services.batch.SockRowValidator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCsvRangeParserTest {
+
+    private static final int[] ROLES = {
+            MappedCsvRangeParser.COLOR, MappedCsvRangeParser.COTTON_PERCENTAGE, MappedCsvRangeParser.AMOUNT
+    };
+
+    @Test
+    void testParse_ValidRows() {
+        ParallelCsvParser.ParseResult result = parse("red,70,100\r\nblue,80,+5\n\nred,70,1\nсиний,0,2147483647");
+
+        assertEquals(4, result.rowsRead());
+        assertEquals(0, result.rejected());
+        assertEquals(Map.of("red:70", 101L, "blue:80", 5L, "синий:0", 2147483647L), positions(result));
+    }
+
+    @Test
+    void testParse_RejectsInvalidRows() {
+        ParallelCsvParser.ParseResult result = parse("red,70\nred,70,1,2\nred,,5\nred,7a,5\nred,70,-1\n" +
+                "red,101,1\nred,70,2147483648\n ,70,1\nred,-,1\nred,70,0\nred,70,3");
+
+        assertEquals(11, result.rowsRead());
+        assertEquals(10, result.rejected());
+        assertEquals(Map.of("red:70", 3L), positions(result));
+    }
+
+    @Test
+    void testParse_ReportsLinesAndReasons() {
+        ParallelCsvParser.ParseResult result = new MappedCsvRangeParser(ROLES, 2).parse(ByteBuffer.wrap(
+                "red,70,1\n\nred,70\r\nred,170,1\nred,70,0\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(5, result.lines());
+        assertEquals(3, result.rejected());
+        assertEquals(List.of(new RowError(3L, SockRowValidator.WRONG_COLUMNS),
+                new RowError(4L, SockRowValidator.INVALID_COTTON_PERCENTAGE)), result.rejectedRows().errors());
+        assertTrue(result.rejectedRows().isTruncated());
+    }
+
+    @Test
+    void testParse_ColumnsInAnyOrder() {
+        MappedCsvRangeParser parser = new MappedCsvRangeParser(new int[]{
+                MappedCsvRangeParser.AMOUNT, MappedCsvRangeParser.COLOR, MappedCsvRangeParser.COTTON_PERCENTAGE});
+
+        ParallelCsvParser.ParseResult result = parser.parse(ByteBuffer.wrap("5,red,70\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Map.of("red:70", 5L), positions(result));
+    }
+
+    @Test
+    void testParse_ManyColors() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("color").append(i % 1000).append(",50,1\n");
+        }
+
+        ParallelCsvParser.ParseResult result = parse(content.toString());
+
+        assertEquals(1000, result.aggregator().positions());
+        assertTrue(positions(result).values().stream().allMatch(amount -> amount == 5L));
+    }
+
+    private ParallelCsvParser.ParseResult parse(String content) {
+        return new MappedCsvRangeParser(ROLES).parse(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Map<String, Long> positions(ParallelCsvParser.ParseResult result) {
+        Map<String, Long> positions = new HashMap<>();
+        result.aggregator().forEachSorted((color, cotton, amount, rows) -> positions.put(color + ":" + cotton, amount));
+        return positions;
+    }
+}
@@ -0,0 +1,179 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.vydrenkova.dto.responses.RowError;
+import ru.vydrenkova.services.batch.ImportProgress;
+import ru.vydrenkova.services.batch.ParallelCsvParser;
+import ru.vydrenkova.services.batch.SockRowValidator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelCsvParserTest {
+
+    private static final int ROWS = 20_000;
+
+    @TempDir
+    Path tempDir;
+
+    private final ParallelCsvParser parser = new ParallelCsvParser();
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8})
+    void testParse_SameResultForAnyNumberOfWorkers(int workers) throws IOException {
+        Path file = tempDir.resolve("socks.csv");
+        StringBuilder content = new StringBuilder("amount,color,cottonPercentage\n");
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 100 == 99) {
+                content.append("x,red,10\n");
+                continue;
+            }
+            String color = "color" + (i % 7);
+            int cotton = i % 101;
+            int amount = i % 5 + 1;
+            content.append(amount).append(',').append(color).append(',').append(cotton).append('\n');
+            expected.merge(color + ":" + cotton, (long) amount, Long::sum);
+        }
+        Files.writeString(file, content);
+
+        ParallelCsvParser.ParseResult result = parser.parse(file, workers);
+
+        Map<String, Long> actual = new HashMap<>();
+        result.aggregator().forEachSorted((color, cotton, amount, rows) -> actual.put(color + ":" + cotton, amount));
+        assertEquals(ROWS, result.rowsRead());
+        assertEquals(ROWS / 100, result.rejected());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testParse_QuotedValuesSpanningLines() throws IOException {
+        Path file = tempDir.resolve("quoted.csv");
+        Files.writeString(file, "color,cottonPercentage,amount\n\"dark\nblue\",50,3\nred,70,1\n\"red\",70,2\n");
+
+        ParallelCsvParser.ParseResult result = parser.parse(file, 4);
+
+        Map<String, Long> actual = new HashMap<>();
+        result.aggregator().forEachSorted((color, cotton, amount, rows) -> actual.put(color + ":" + cotton, amount));
+        assertEquals(3, result.rowsRead());
+        assertEquals(Map.of("dark\nblue:50", 3L, "red:70", 3L), actual);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8})
+    void testParse_QuotedFileSplitOutsideQuotedValues(int workers) throws IOException {
+        Path file = tempDir.resolve("quoted-large.csv");
+        StringBuilder content = new StringBuilder("color,cottonPercentage,amount\n");
+        Map<String, Long> expected = new HashMap<>();
+        List<RowError> errors = new ArrayList<>();
+        long line = 1;
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 1000 == 999) {
+                content.append("\"red\",170,1\n");
+                errors.add(new RowError(++line, SockRowValidator.INVALID_COTTON_PERCENTAGE));
+                continue;
+            }
+            if (i % 1000 == 500) {
+                content.append("\n\n");
+                line += 2;
+            }
+            String color = i % 3 == 0 ? "dark\n\"navy\", " + i % 7 : "color" + i % 7;
+            int cotton = i % 101;
+            int amount = i % 5 + 1;
+            content.append('"').append(color.replace("\"", "\"\"")).append("\",")
+                    .append(cotton).append(',').append(amount).append('\n');
+            line += color.lines().count();
+            expected.merge(color + ":" + cotton, (long) amount, Long::sum);
+        }
+        Files.writeString(file, content);
+
+        ParallelCsvParser.ParseResult result = parser.parse(file, workers, ROWS, ImportProgress.NONE);
+
+        Map<String, Long> actual = new HashMap<>();
+        result.aggregator().forEachSorted((color, cotton, amount, rows) -> actual.put(color + ":" + cotton, amount));
+        assertEquals(ROWS, result.rowsRead());
+        assertEquals(expected, actual);
+        assertEquals(errors, result.rejectedRows().errors());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8})
+    void testParse_RejectsRowsOverflowingPositionAcrossRanges(int workers) throws IOException {
+        Path file = tempDir.resolve("overflow.csv");
+        StringBuilder content = new StringBuilder("color,cottonPercentage,amount\n");
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 5000 == 0) {
+                content.append("red,70,1000000000\n");
+            } else if (i == ROWS - 1) {
+                content.append("red,70,147483647\n");
+            } else {
+                content.append("blue,10,1\n");
+            }
+        }
+        Files.writeString(file, content);
+
+        ParallelCsvParser.ParseResult result = parser.parse(file, workers);
+
+        Map<String, Long> actual = new HashMap<>();
+        result.aggregator().forEachSorted((color, cotton, amount, rows) -> actual.put(color + ":" + cotton, amount));
+        assertEquals(Map.of("red:70", (long) Integer.MAX_VALUE, "blue:10", (long) ROWS - 5), actual);
+        assertEquals(ROWS, result.rowsRead());
+        assertEquals(List.of(new RowError(10002L, SockRowValidator.AMOUNT_OVERFLOW),
+                new RowError(15002L, SockRowValidator.AMOUNT_OVERFLOW)), result.rejectedRows().errors());
+    }
+
+    @Test
+    void testParse_ReportsLineNumbersAcrossRanges() throws IOException {
+        Path file = tempDir.resolve("errors.csv");
+        StringBuilder content = new StringBuilder("color,cottonPercentage,amount\n");
+        List<RowError> expected = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            long line = i + 2;
+            if (i % 1000 == 999) {
+                content.append("red,70,0\n");
+                expected.add(new RowError(line, SockRowValidator.INVALID_AMOUNT));
+            } else if (i % 1000 == 500) {
+                content.append('\n');
+            } else {
+                content.append("red,70,1\n");
+            }
+        }
+        Files.writeString(file, content);
+
+        ParallelCsvParser.ParseResult result = parser.parse(file, 4, 5, ImportProgress.NONE);
+
+        assertEquals(ROWS / 1000, result.rejected());
+        assertEquals(expected.subList(0, 5), result.rejectedRows().errors());
+        assertTrue(result.rejectedRows().isTruncated());
+    }
+
+    @Test
+    void testParse_ReportsLineNumbersOfQuotedFile() throws IOException {
+        Path file = tempDir.resolve("quoted-errors.csv");
+        Files.writeString(file, "color,cottonPercentage,amount\n\"dark\nblue\",50,x\nred,170,1\n\"red\",70");
+
+        ParallelCsvParser.ParseResult result = parser.parse(file, 4);
+
+        assertEquals(List.of(new RowError(3L, SockRowValidator.INVALID_AMOUNT),
+                new RowError(4L, SockRowValidator.INVALID_COTTON_PERCENTAGE),
+                new RowError(5L, SockRowValidator.WRONG_COLUMNS)), result.rejectedRows().errors());
+    }
+
+    @Test
+    void testReadHeaders() throws IOException {
+        Path file = tempDir.resolve("headers.csv");
+        Files.writeString(file, "color,cottonPercentage,amount\nred,70,1\n");
+
+        assertEquals(List.of("color", "cottonPercentage", "amount"), parser.readHeaders(file));
+    }
+}
@@ -0,0 +1,97 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.SockResponse;
+import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.NoSuchSockException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+@Testcontainers(disabledWithoutDocker = true)
+class ReactiveSockServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void connectionProperties(DynamicPropertyRegistry registry) {
+        registry.add("socks.reactive.url", () -> "r2dbc:postgresql://" + POSTGRES.getHost() + ":"
+                + POSTGRES.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + POSTGRES.getDatabaseName());
+        registry.add("socks.reactive.username", POSTGRES::getUsername);
+        registry.add("socks.reactive.password", POSTGRES::getPassword);
+        registry.add("spring.flyway.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.flyway.user", POSTGRES::getUsername);
+        registry.add("spring.flyway.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private ReactiveSockService sockService;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient.sql("DELETE FROM socks").then().block();
+        databaseClient.sql("INSERT INTO socks (color, cotton_percentage, amount) VALUES ('red', 70, 10), ('blue', 80, 5)")
+                .then().block();
+    }
+
+    @Test
+    void testAddSocks_MergesIntoExistingPosition() {
+        SockResponse response = sockService.addSocks(new SockRequest("red", 70, 5)).block();
+
+        assertEquals(15, response.getAmount());
+        assertEquals(3, sockService.addSocks(new SockRequest("green", 50, 3)).block().getAmount());
+    }
+
+    @Test
+    void testRemoveSocks() {
+        assertEquals(4, sockService.removeSocks(new SockRequest("red", 70, 6)).block().getAmount());
+        assertEquals(new SockResponse(), sockService.removeSocks(new SockRequest("blue", 80, 5)).block());
+
+        assertThrows(IllegalAmountException.class, () -> sockService.removeSocks(new SockRequest("red", 70, 5)).block());
+        assertThrows(NoSuchSockException.class, () -> sockService.removeSocks(new SockRequest("blue", 80, 1)).block());
+        assertEquals(0L, sockService.getSocksAmount("blue", "equal", 80).block().getAmount());
+    }
+
+    @Test
+    void testUpdateSocks_MergesIntoExistingPosition() {
+        Long redId = databaseClient.sql("SELECT id FROM socks WHERE color = 'red'")
+                .map(row -> row.get("id", Long.class)).one().block();
+
+        SockResponse merged = sockService.updateSocks(redId, new SockRequest("blue", 80, null)).block();
+
+        assertEquals(15, merged.getAmount());
+        assertEquals(0L, sockService.getSocksAmount("red", "equal", 70).block().getAmount());
+        assertThrows(NoSuchSockException.class, () -> sockService.updateSocks(redId, new SockRequest()).block());
+    }
+
+    @Test
+    void testGetSocksByFilterSorted_PagesWithCursor() {
+        SocksList first = sockService.getSocksByFilterSorted(0, 100, "cotton", 1, null).block();
+        SocksList second = sockService.getSocksByFilterSorted(0, 100, "cotton", 1, first.getNextCursor()).block();
+
+        assertEquals("red", first.getSockList().get(0).getColor());
+        assertEquals("blue", second.getSockList().get(0).getColor());
+        assertNull(second.getNextCursor());
+        assertEquals(List.of("blue", "red"), sockService.streamSocksByFilterSorted(0, 100, "color")
+                .map(SockResponse::getColor).collectList().block());
+    }
+}
@@ -0,0 +1,83 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.Test;
+import ru.vydrenkova.services.batch.SockAggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SockAggregatorTest {
+
+    @Test
+    void testAdd_SumsRowsByPosition() {
+        SockAggregator aggregator = new SockAggregator();
+        aggregator.add("red", 70, 10);
+        aggregator.add("blue", 0, 1);
+        aggregator.add("red", 70, 5);
+        aggregator.add("red", 100, 2);
+
+        List<String> positions = new ArrayList<>();
+        aggregator.forEachSorted((color, cotton, amount, rows) ->
+                positions.add(color + ":" + cotton + ":" + amount + ":" + rows));
+
+        assertEquals(3, aggregator.positions());
+        assertEquals(4, aggregator.rows());
+        assertEquals(List.of("blue:0:1:1", "red:70:15:2", "red:100:2:1"), positions);
+    }
+
+    @Test
+    void testAdd_GrowsBeyondInitialColors() {
+        SockAggregator aggregator = new SockAggregator();
+        for (int i = 0; i < 1000; i++) {
+            aggregator.add("color" + i, i % 101, 1);
+        }
+
+        assertEquals(1000, aggregator.positions());
+    }
+
+    @Test
+    void testAdd_RejectsRowOverflowingPositionAmount() {
+        SockAggregator aggregator = new SockAggregator();
+
+        assertTrue(aggregator.add("red", 70, Integer.MAX_VALUE - 1));
+        assertFalse(aggregator.add("red", 70, 2));
+        assertTrue(aggregator.add("red", 70, 1));
+
+        List<String> positions = new ArrayList<>();
+        aggregator.forEachSorted((color, cotton, amount, rows) -> positions.add(color + ":" + amount + ":" + rows));
+
+        assertEquals(2, aggregator.rows());
+        assertEquals(List.of("red:" + Integer.MAX_VALUE + ":2"), positions);
+    }
+
+    @Test
+    void testCanMerge_FalseIfPositionAmountWouldOverflow() {
+        SockAggregator aggregator = new SockAggregator();
+        aggregator.add("red", 70, Integer.MAX_VALUE - 1);
+        SockAggregator fits = new SockAggregator();
+        fits.add("red", 70, 1);
+        fits.add("blue", 70, Integer.MAX_VALUE);
+        SockAggregator overflows = new SockAggregator();
+        overflows.add("red", 70, 2);
+
+        assertTrue(aggregator.canMerge(fits));
+        assertFalse(aggregator.canMerge(overflows));
+        assertThrows(IllegalArgumentException.class, () -> aggregator.merge(overflows));
+    }
+
+    @Test
+    void testClear_RemovesAllPositions() {
+        SockAggregator aggregator = new SockAggregator();
+        aggregator.add("red", 70, 10);
+        aggregator.clear();
+        aggregator.add("blue", 70, 3);
+
+        List<String> positions = new ArrayList<>();
+        aggregator.forEachSorted((color, cotton, amount, rows) -> positions.add(color + ":" + amount));
+
+        assertEquals(1, aggregator.positions());
+        assertEquals(List.of("blue:3"), positions);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.batch.SockAggregator;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class SockBatchWriterTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private SockBatchWriter sockBatchWriter;
+
+    @Autowired
+    private SockRepository sockRepository;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository.deleteAll();
+    }
+
+    @Test
+    void testWrite_MergesIntoExistingStock() {
+        sockRepository.save(Sock.builder().color("red").cottonPercentage(70).amount(10).build());
+
+        SockAggregator aggregator = new SockAggregator();
+        aggregator.add("red", 70, 5);
+        aggregator.add("blue", 80, 7);
+        aggregator.add("blue", 80, 3);
+
+        SockBatchWriter.ChunkResult result = sockBatchWriter.write(aggregator);
+
+        assertEquals(1, result.inserted());
+        assertEquals(2, result.merged());
+        assertEquals(15, sockRepository.findByColorAndCottonPercentage("red", 70).orElseThrow().getAmount());
+        assertEquals(10, sockRepository.findByColorAndCottonPercentage("blue", 80).orElseThrow().getAmount());
+    }
+
+    @Test
+    void testWrite_SpansSeveralStatements() {
+        SockAggregator aggregator = new SockAggregator();
+        for (int i = 0; i < 2500; i++) {
+            aggregator.add("color" + i / 101, i % 101, 1);
+        }
+
+        SockBatchWriter.ChunkResult result = sockBatchWriter.write(aggregator);
+
+        assertEquals(2500, result.inserted());
+        assertEquals(2500, sockRepository.count());
+    }
+}
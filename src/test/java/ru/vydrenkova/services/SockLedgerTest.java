@@ -0,0 +1,244 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.NoSuchSockException;
+import ru.vydrenkova.models.LedgerCheckpoint;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.LedgerCheckpointRepository;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.ledger.LedgerJournal;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.services.ledger.SockLedger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SockLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SockRepository sockRepository;
+    private LedgerCheckpointRepository checkpointRepository;
+    private TransactionTemplate transactionTemplate;
+    private Path journalPath;
+
+    private final SockKey red = new SockKey("red", 70);
+
+    @BeforeEach
+    void setUp() {
+        sockRepository = mock(SockRepository.class);
+        checkpointRepository = mock(LedgerCheckpointRepository.class);
+        transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        journalPath = tempDir.resolve("ledger.journal");
+
+        when(sockRepository.findByColorAndCottonPercentage("red", 70))
+                .thenReturn(Optional.of(Sock.builder().id(1L).color("red").cottonPercentage(70).amount(100).build()));
+        when(sockRepository.increaseAmount(eq("red"), eq(70), any())).thenReturn(1L);
+        when(checkpointRepository.findById(LedgerCheckpoint.SINGLETON_ID)).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void testMovementsAreCoalescedOnFlush() {
+        SockLedger ledger = newLedger();
+
+        ledger.income(red, 30);
+        ledger.outcome(red, 50);
+        SockLedger.Snapshot snapshot = ledger.income(red, 5);
+
+        assertEquals(85, snapshot.amount());
+        assertEquals(1L, snapshot.id());
+        verify(sockRepository, never()).increaseAmount(any(), any(), any());
+
+        ledger.flush();
+
+        verify(sockRepository).increaseAmount("red", 70, -15);
+        verify(checkpointRepository).save(new LedgerCheckpoint(LedgerCheckpoint.SINGLETON_ID, 3L));
+    }
+
+    @Test
+    void testBalancesStayInMemoryAfterFlush() {
+        SockLedger ledger = newLedger();
+        ledger.income(red, 30);
+
+        ledger.flush();
+        SockLedger.Snapshot snapshot = ledger.outcome(red, 10);
+
+        assertEquals(120, snapshot.amount());
+        verify(sockRepository, times(1)).findByColorAndCottonPercentage("red", 70);
+    }
+
+    @Test
+    void testNewPositionGetsIdOnFlush() {
+        SockLedger ledger = newLedger();
+        SockKey blue = new SockKey("blue", 10);
+
+        assertNull(ledger.income(blue, 7).id());
+        when(sockRepository.increaseAmount("blue", 10, 7)).thenReturn(2L);
+        ledger.flush();
+
+        SockLedger.Snapshot snapshot = ledger.income(blue, 1);
+
+        assertEquals(2L, snapshot.id());
+        assertEquals(8, snapshot.amount());
+        verify(sockRepository, times(1)).findByColorAndCottonPercentage("blue", 10);
+    }
+
+    @Test
+    void testPendingDeltasAreAddedToReadsWithoutFlush() {
+        SockLedger ledger = newLedger();
+        ledger.income(red, 30);
+        ledger.outcome(red, 5);
+        ledger.income(new SockKey("red", 10), 4);
+
+        try (SockLedger.PendingDeltas pending = ledger.holdFlushes()) {
+            assertEquals(25, pending.delta(red));
+            assertEquals(25, pending.sum("red", cotton -> cotton > 50));
+            assertEquals(29, pending.sum("red", cotton -> true));
+            assertEquals(0, pending.sum("blue", cotton -> true));
+        }
+        verify(sockRepository, never()).increaseAmount(any(), any(), any());
+
+        ledger.flush();
+
+        try (SockLedger.PendingDeltas pending = ledger.holdFlushes()) {
+            assertEquals(0, pending.delta(red));
+        }
+    }
+
+    @Test
+    void testDetachedPendingDeltasSurviveFlush() throws Exception {
+        SockLedger ledger = newLedger();
+        ledger.income(red, 30);
+
+        try (SockLedger.PendingDeltas pending = ledger.holdFlushes()) {
+            pending.detach();
+            CompletableFuture.runAsync(ledger::flush).get(5, TimeUnit.SECONDS);
+
+            assertEquals(30, pending.delta(red));
+        }
+        verify(sockRepository).increaseAmount("red", 70, 30);
+    }
+
+    @Test
+    void testExclusiveWriteDropsOnlyWrittenPositions() {
+        SockLedger ledger = newLedger();
+        SockKey blue = new SockKey("blue", 10);
+        ledger.income(red, 1);
+        ledger.income(blue, 1);
+
+        ledger.exclusively(() -> null, List.of(red));
+        ledger.income(red, 1);
+        ledger.income(blue, 1);
+
+        verify(sockRepository).increaseAmount("red", 70, 1);
+        verify(sockRepository, times(2)).findByColorAndCottonPercentage("red", 70);
+        verify(sockRepository, times(1)).findByColorAndCottonPercentage("blue", 10);
+    }
+
+    @Test
+    void testConcurrentMovementsAreSyncedAndReplayed() throws Exception {
+        SockLedger ledger = newLedger(true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        ledger.income(red, 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        newLedger(true);
+
+        verify(sockRepository).increaseAmount("red", 70, 400);
+        verify(checkpointRepository).save(new LedgerCheckpoint(LedgerCheckpoint.SINGLETON_ID, 400L));
+    }
+
+    @Test
+    void testOutcomeIsValidatedAgainstLiveBalance() {
+        SockLedger ledger = newLedger();
+
+        ledger.outcome(red, 60);
+
+        assertThrows(IllegalAmountException.class, () -> ledger.outcome(red, 41));
+        assertThrows(NoSuchSockException.class, () -> ledger.outcome(new SockKey("blue", 10), 1));
+        assertEquals(0, ledger.outcome(red, 40).amount());
+    }
+
+    @Test
+    void testIncomeOverflowingBalanceIsRejectedBeforeJournal() {
+        SockLedger ledger = newLedger();
+
+        assertThrows(IllegalAmountException.class, () -> ledger.income(red, Integer.MAX_VALUE));
+        ledger.flush();
+
+        assertEquals(Integer.MAX_VALUE, ledger.income(red, Integer.MAX_VALUE - 100).amount());
+        verify(sockRepository, never()).increaseAmount(any(), any(), any());
+    }
+
+    @Test
+    void testUnflushedMovementsAreReplayedAfterRestart() throws Exception {
+        SockLedger ledger = newLedger();
+        ledger.income(red, 10);
+        ledger.income(new SockKey("blue", 10), 7);
+        ledger.income(red, 2);
+
+        SockLedger restarted = newLedger();
+
+        verify(sockRepository).increaseAmount("blue", 10, 7);
+        verify(sockRepository).increaseAmount("red", 70, 12);
+        verify(checkpointRepository).save(new LedgerCheckpoint(LedgerCheckpoint.SINGLETON_ID, 3L));
+        restarted.stop();
+    }
+
+    @Test
+    void testCommittedMovementsAreNotReplayed() {
+        SockLedger ledger = newLedger();
+        ledger.income(red, 10);
+        ledger.income(red, 20);
+        when(checkpointRepository.findById(LedgerCheckpoint.SINGLETON_ID))
+                .thenReturn(Optional.of(new LedgerCheckpoint(LedgerCheckpoint.SINGLETON_ID, 1L)));
+
+        newLedger();
+
+        verify(sockRepository).increaseAmount("red", 70, 20);
+        verify(sockRepository, never()).increaseAmount("red", 70, 30);
+    }
+
+    private SockLedger newLedger() {
+        return newLedger(false);
+    }
+
+    private SockLedger newLedger(boolean fsync) {
+        SockLedger ledger = new SockLedger(sockRepository, checkpointRepository, transactionTemplate,
+                new LedgerJournal(journalPath, fsync), mock(AmountCache.class), Optional.empty(), 4, Integer.MAX_VALUE);
+        ledger.start(60_000);
+        return ledger;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.vydrenkova.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.vydrenkova.dto.requests.SockRequest;
+import ru.vydrenkova.dto.responses.MovementBatchResult;
+import ru.vydrenkova.dto.responses.MovementResult;
+import ru.vydrenkova.models.Sock;
+import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.batch.SockRowValidator;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class SockMovementBatchTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository sockRepository;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository.deleteAll();
+        sockRepository.save(Sock.builder().color("red").cottonPercentage(70).amount(10).build());
+        sockRepository.save(Sock.builder().color("blue").cottonPercentage(80).amount(5).build());
+    }
+
+    @Test
+    void testIncome_CombinesMovementsOfPosition() {
+        MovementBatchResult result = sockService.applyMovements("income", "all-or-nothing", List.of(
+                new SockRequest("red", 70, 5),
+                new SockRequest("green", 50, 3),
+                new SockRequest("red", 70, 1)));
+
+        assertEquals(3, result.getApplied());
+        assertFalse(result.getRolledBack());
+        assertEquals(16, result.getResults().get(0).getSock().getAmount());
+        assertEquals(16, result.getResults().get(2).getSock().getAmount());
+        assertEquals(3, sockRepository.findByColorAndCottonPercentage("green", 50).orElseThrow().getAmount());
+    }
+
+    @Test
+    void testOutcome_BestEffortChecksRunningBalance() {
+        MovementBatchResult result = sockService.applyMovements("outcome", "best-effort", List.of(
+                new SockRequest("red", 70, 6),
+                new SockRequest("red", 70, 6),
+                new SockRequest("blue", 80, 5),
+                new SockRequest("white", 10, 1),
+                new SockRequest("red", 70, -1)));
+
+        assertEquals(2, result.getApplied());
+        assertEquals(3, result.getRejected());
+        assertEquals(List.of(MovementResult.APPLIED, MovementResult.REJECTED, MovementResult.APPLIED,
+                        MovementResult.REJECTED, MovementResult.REJECTED),
+                result.getResults().stream().map(MovementResult::getStatus).toList());
+        assertEquals("Носков на складе меньше.", result.getResults().get(1).getError());
+        assertEquals("На складе нет таких носков.", result.getResults().get(3).getError());
+        assertEquals(SockRowValidator.INVALID_AMOUNT, result.getResults().get(4).getError());
+        assertEquals(4, sockRepository.findByColorAndCottonPercentage("red", 70).orElseThrow().getAmount());
+        assertTrue(sockRepository.findByColorAndCottonPercentage("blue", 80).isEmpty());
+    }
+
+    @Test
+    void testOutcome_AllOrNothingAppliesNothingOnRejection() {
+        MovementBatchResult result = sockService.applyMovements("outcome", "all-or-nothing", List.of(
+                new SockRequest("blue", 80, 5),
+                new SockRequest("red", 70, 11)));
+
+        assertTrue(result.getRolledBack());
+        assertEquals(0, result.getApplied());
+        assertEquals(MovementResult.SKIPPED, result.getResults().get(0).getStatus());
+        assertEquals(5, sockRepository.findByColorAndCottonPercentage("blue", 80).orElseThrow().getAmount());
+        assertEquals(10, sockRepository.findByColorAndCottonPercentage("red", 70).orElseThrow().getAmount());
+    }
+}
@@ -7,20 +7,33 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import ru.vydrenkova.dto.requests.SockRequest;
 import ru.vydrenkova.dto.responses.AmountResponse;
 import ru.vydrenkova.dto.responses.SockResponse;
 import ru.vydrenkova.dto.responses.SocksList;
+import ru.vydrenkova.exceptions.ConcurrentUpdateException;
 import ru.vydrenkova.exceptions.IllegalAmountException;
+import ru.vydrenkova.exceptions.InvalidCursorException;
 import ru.vydrenkova.exceptions.NoSuchSockException;
 import ru.vydrenkova.models.Sock;
 import ru.vydrenkova.repositories.SockRepository;
+import ru.vydrenkova.services.batch.SockBatchWriter;
+import ru.vydrenkova.services.batch.SockMovementWriter;
+import ru.vydrenkova.services.cache.AmountCache;
+import ru.vydrenkova.services.ledger.SockKey;
+import ru.vydrenkova.utils.constraints.Constraints;
+import ru.vydrenkova.utils.sorts.SockCursor;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest
@@ -32,11 +45,21 @@ class SockServiceTest {
     @MockBean
     private SockRepository sockRepository;
 
+    @MockBean
+    private SockBatchWriter sockBatchWriter;
+
+    @MockBean
+    private SockMovementWriter sockMovementWriter;
+
+    @Autowired
+    private AmountCache amountCache;
+
     private SockRequest sockRequest;
     private Sock sock;
 
     @BeforeEach
     void setUp() {
+        amountCache.invalidateAll();
         sockRequest = new SockRequest("red", 70, 100);
         sock = Sock.builder()
                 .id(1L)
@@ -48,53 +71,85 @@ class SockServiceTest {
 
     @Test
     void testGetSocksAmount() {
-        when(sockRepository.findAll(any(Specification.class)))
-                .thenReturn(List.of(sock));
+        when(sockRepository.sumAmount(any(Specification.class)))
+                .thenReturn(100L);
 
         AmountResponse response = sockService.getSocksAmount("red", "equal", 70);
 
-        assertEquals(100, response.getAmount());
+        assertEquals(100L, response.getAmount());
+        verify(sockRepository, never()).findAll(any(Specification.class));
     }
 
     @Test
-    void testAddSocks() {
-        when(sockRepository.findByColorAndCottonPercentage("red", 70))
-                .thenReturn(Optional.empty());
+    void testGetSocksAmount_CachedUntilColorIsWritten() {
+        when(sockRepository.sumAmount(any(Specification.class)))
+                .thenReturn(100L, 130L);
+        when(sockRepository.findById(1L))
+                .thenReturn(Optional.of(sock));
         when(sockRepository.save(any(Sock.class)))
                 .thenReturn(sock);
 
+        assertEquals(100L, sockService.getSocksAmount("red", "moreThan", 10).getAmount());
+        assertEquals(100L, sockService.getSocksAmount("red", "moreThan", 10).getAmount());
+        verify(sockRepository, times(1)).sumAmount(any(Specification.class));
+
+        sockService.updateSocks(1L, new SockRequest(null, null, 130));
+
+        assertEquals(130L, sockService.getSocksAmount("red", "moreThan", 10).getAmount());
+        verify(sockRepository, times(2)).sumAmount(any(Specification.class));
+    }
+
+    @Test
+    void testAddSocks() {
+        SockKey key = new SockKey("red", 70);
+        when(sockBatchWriter.upsert(Map.of(key, 100)))
+                .thenReturn(Map.of(key, new SockBatchWriter.UpsertedRow(sock, false)));
+
         SockResponse response = sockService.addSocks(sockRequest);
 
+        assertEquals(1L, response.getId());
         assertEquals("red", response.getColor());
         assertEquals(70, response.getCottonPercentage());
         assertEquals(100, response.getAmount());
+        verify(sockRepository, never()).findByColorAndCottonPercentage(any(), any());
     }
 
     @Test
     void testRemoveSocks_Success() {
-        sock.setAmount(150);
-        when(sockRepository.findByColorAndCottonPercentage("red", 70))
-                .thenReturn(Optional.of(sock));
-        when(sockRepository.save(any(Sock.class)))
-                .thenReturn(sock);
+        sock.setAmount(50);
+        when(sockMovementWriter.release(new SockKey("red", 70), 100))
+                .thenReturn(Optional.of(new SockMovementWriter.Release(sock, true)));
 
         SockResponse response = sockService.removeSocks(sockRequest);
 
         assertEquals(50, response.getAmount());
+        verify(sockRepository, never()).findByColorAndCottonPercentage(any(), any());
+    }
+
+    @Test
+    void testRemoveSocks_LastSocks() {
+        sock.setAmount(0);
+        when(sockMovementWriter.release(new SockKey("red", 70), 100))
+                .thenReturn(Optional.of(new SockMovementWriter.Release(sock, true)));
+
+        SockResponse response = sockService.removeSocks(sockRequest);
+
+        assertNull(response.getId());
+        verify(sockRepository, never()).delete(any(Sock.class));
     }
 
     @Test
     void testRemoveSocks_IllegalAmount() {
         sock.setAmount(50);
-        when(sockRepository.findByColorAndCottonPercentage("red", 70))
-                .thenReturn(Optional.of(sock));
+        when(sockMovementWriter.release(new SockKey("red", 70), 100))
+                .thenReturn(Optional.of(new SockMovementWriter.Release(sock, false)));
 
         assertThrows(IllegalAmountException.class, () -> sockService.removeSocks(sockRequest));
     }
 
     @Test
     void testRemoveSocks_NoSuchSock() {
-        when(sockRepository.findByColorAndCottonPercentage("red", 70))
+        when(sockMovementWriter.release(new SockKey("red", 70), 100))
                 .thenReturn(Optional.empty());
 
         assertThrows(NoSuchSockException.class, () -> sockService.removeSocks(sockRequest));
@@ -114,14 +169,108 @@ class SockServiceTest {
         assertEquals(100, response.getAmount());
     }
 
+    @Test
+    void testUpdateSocks_RetriedAfterConcurrentWrite() {
+        when(sockRepository.findById(1L))
+                .thenReturn(Optional.of(sock));
+        when(sockRepository.save(any(Sock.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Sock.class, 1L))
+                .thenReturn(sock);
+
+        SockResponse response = sockService.updateSocks(1L, sockRequest);
+
+        assertEquals(100, response.getAmount());
+        verify(sockRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testUpdateSocks_GivesUpAfterMaxAttempts() {
+        when(sockRepository.findById(1L))
+                .thenReturn(Optional.of(sock));
+        when(sockRepository.save(any(Sock.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Sock.class, 1L));
+
+        assertThrows(ConcurrentUpdateException.class, () -> sockService.updateSocks(1L, sockRequest));
+        verify(sockRepository, times(5)).findById(1L);
+    }
+
+    @Test
+    void testUpdateSocks_MergesIntoExistingSocks() {
+        Sock existing = Sock.builder().id(2L).color("blue").cottonPercentage(70).amount(30).build();
+        when(sockRepository.findById(1L))
+                .thenReturn(Optional.of(sock));
+        when(sockRepository.findByColorAndCottonPercentage("blue", 70))
+                .thenReturn(Optional.of(existing));
+        when(sockRepository.save(existing))
+                .thenReturn(existing);
+
+        SockResponse response = sockService.updateSocks(1L, new SockRequest("blue", null, null));
+
+        assertEquals(2L, response.getId());
+        assertEquals(130, response.getAmount());
+        verify(sockRepository).delete(sock);
+    }
+
+    @Test
+    void testUpdateSocks_MergeOverflowingAmountIsRejected() {
+        Sock existing = Sock.builder().id(2L).color("blue").cottonPercentage(70).amount(Integer.MAX_VALUE - 99).build();
+        when(sockRepository.findById(1L))
+                .thenReturn(Optional.of(sock));
+        when(sockRepository.findByColorAndCottonPercentage("blue", 70))
+                .thenReturn(Optional.of(existing));
+
+        assertThrows(IllegalAmountException.class,
+                () -> sockService.updateSocks(1L, new SockRequest("blue", null, null)));
+        assertEquals(Integer.MAX_VALUE - 99, existing.getAmount());
+        verify(sockRepository, never()).delete(any(Sock.class));
+        verify(sockRepository, never()).save(any(Sock.class));
+    }
+
     @Test
     void testGetSocksByFilterSorted() {
-        when(sockRepository.findAll(any(Specification.class),any(Sort.class)))
+        when(sockRepository.findSlice(any(Specification.class), eq(Sort.by("color", "id")), eq(Constraints.MAX_PAGE_SIZE + 1)))
                 .thenReturn(List.of(sock));
 
-        SocksList response = sockService.getSocksByFilterSorted(50, 80, "color");
+        SocksList response = sockService.getSocksByFilterSorted(50, 80, "color", null, null);
 
         assertEquals(1, response.getSockList().size());
         assertEquals("red", response.getSockList().get(0).getColor());
+        assertNull(response.getNextCursor());
+    }
+
+    @Test
+    void testGetSocksByFilterSorted_NextCursor() {
+        Sock next = Sock.builder().id(2L).color("red").cottonPercentage(80).amount(5).build();
+        when(sockRepository.findSlice(any(Specification.class), eq(Sort.by("cottonPercentage", "id")), eq(2)))
+                .thenReturn(List.of(sock, next));
+
+        SocksList response = sockService.getSocksByFilterSorted(50, 80, "cotton", 1, null);
+
+        assertEquals(1, response.getSockList().size());
+        assertEquals(new SockCursor(1L, 70, "red"), SockCursor.decode(response.getNextCursor()));
+    }
+
+    @Test
+    void testGetSocksByFilterSorted_InvalidCursor() {
+        assertThrows(InvalidCursorException.class,
+                () -> sockService.getSocksByFilterSorted(50, 80, null, 10, "not a cursor"));
+    }
+
+    @Test
+    void testSockCursor_RoundTrip() {
+        SockCursor cursor = new SockCursor(42L, 0, "тёмно-синий: в полоску");
+
+        assertEquals(cursor, SockCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void testStreamSocksByFilterSorted() {
+        when(sockRepository.streamAll(any(Specification.class), eq(Sort.by("id")), eq(Constraints.STREAM_FETCH_SIZE)))
+                .thenReturn(Stream.of(sock));
+        List<SockResponse> streamed = new ArrayList<>();
+
+        sockService.streamSocksByFilterSorted(0, 100, null, streamed::add);
+
+        assertEquals(List.of(SockResponse.toResponse(sock)), streamed);
     }
 }